@@ -0,0 +1,56 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full roll, from the expression string to a result, the way /roll does it.
+ * The cached variant uses the default plan cache, as in production. The uncached variant parses every time,
+ * which is the worst case for an expression seen for the first time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceEndToEndBenchmark {
+    @Param({
+            DiceExpressions.SIMPLE,
+            DiceExpressions.SIMPLE_MODIFIER,
+            DiceExpressions.MANY_DICE,
+            DiceExpressions.DEEP_PARENTHESES,
+            DiceExpressions.KEEP_AND_DROP,
+            DiceExpressions.REROLL_AND_EXPLODE,
+            DiceExpressions.SUCCESS_COUNTING
+    })
+    public String expression;
+
+    @Param({"PLAIN", "ANSI"})
+    public DiceEvaluatorOptions.OutputType outputType;
+
+    private StringDiceExpressionEvaluator cached;
+    private StringDiceExpressionEvaluator uncached;
+    private DiceEvaluatorOptions options;
+
+    @Setup
+    public void setup() {
+        cached = new StringDiceExpressionEvaluator();
+        uncached = new StringDiceExpressionEvaluator(0);
+        options = DiceEvaluatorOptions.builder()
+                .outputType(outputType)
+                .build();
+    }
+
+    @Benchmark
+    public TermEvaluationResult cached() {
+        return cached.evaluate(expression, options);
+    }
+
+    @Benchmark
+    public TermEvaluationResult uncached() {
+        return uncached.evaluate(expression, options);
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rolling an already compiled plan, including totaling and building the representation.
+ * This is where DiceExpression.evaluate and the totaling strategies spend their time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceEvaluateBenchmark {
+    @Param({
+            DiceExpressions.SIMPLE,
+            DiceExpressions.SIMPLE_MODIFIER,
+            DiceExpressions.MANY_DICE,
+            DiceExpressions.DEEP_PARENTHESES,
+            DiceExpressions.KEEP_AND_DROP,
+            DiceExpressions.REROLL_AND_EXPLODE,
+            DiceExpressions.SUCCESS_COUNTING
+    })
+    public String expression;
+
+    @Param({"PLAIN", "ANSI"})
+    public DiceEvaluatorOptions.OutputType outputType;
+
+    private CompiledDiceExpression plan;
+    private DiceEvaluatorOptions options;
+
+    @Setup
+    public void setup() {
+        plan = new StringDiceExpressionEvaluator().compile(expression);
+        options = DiceEvaluatorOptions.builder()
+                .outputType(outputType)
+                .build();
+    }
+
+    @Benchmark
+    public TermEvaluationResult evaluate() {
+        return plan.evaluate(options);
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+/**
+ * The expressions every dice benchmark runs against.
+ * Kept in one place, so results for the same expression can be compared across benchmarks.
+ */
+final class DiceExpressions {
+    static final String SIMPLE = "d20";
+    static final String SIMPLE_MODIFIER = "1d20 + 5";
+    static final String MANY_DICE = "32d1000";
+    static final String DEEP_PARENTHESES = "((((1d6 + 2) * 3) - (2d4 / 2)) + ((1d8 + 1) * ((1d4 + 1) - (1d2 - 3))))";
+    static final String KEEP_AND_DROP = "4d6k3 + 8d10x2l4";
+    static final String REROLL_AND_EXPLODE = "20d6R2e5";
+    static final String SUCCESS_COUNTING = "20d10s7f1";
+
+    private DiceExpressions() {}
+}
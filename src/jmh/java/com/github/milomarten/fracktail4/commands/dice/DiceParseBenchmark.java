@@ -0,0 +1,40 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning an expression string into a compiled plan, without rolling anything.
+ * The plan cache is disabled, so every invocation does the full lex and compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiceParseBenchmark {
+    @Param({
+            DiceExpressions.SIMPLE,
+            DiceExpressions.SIMPLE_MODIFIER,
+            DiceExpressions.MANY_DICE,
+            DiceExpressions.DEEP_PARENTHESES,
+            DiceExpressions.KEEP_AND_DROP,
+            DiceExpressions.REROLL_AND_EXPLODE,
+            DiceExpressions.SUCCESS_COUNTING
+    })
+    public String expression;
+
+    private StringDiceExpressionEvaluator evaluator;
+
+    @Setup
+    public void setup() {
+        evaluator = new StringDiceExpressionEvaluator(0);
+    }
+
+    @Benchmark
+    public CompiledDiceExpression parse() {
+        return evaluator.compile(expression);
+    }
+}
@@ -1,25 +1,72 @@
 package com.github.milomarten.fracktail4.birthday;
 
 import com.github.milomarten.fracktail4.birthday.v2.BirthdayEventInstance;
-import org.apache.commons.collections4.CollectionUtils;
 
 import java.time.LocalDate;
 import java.time.Month;
 import java.time.MonthDay;
 import java.util.*;
-import java.util.stream.IntStream;
 
+/**
+ * A calendar of birthdays, arranged by day of the year.
+ * Each day's birthdays are kept as an immutable list, which is replaced whenever that day changes, so lists
+ * handed out by this calendar can be used freely without copying, and never change underneath their user.
+ * Which days have birthdays is tracked in a BitSet, along with tables of the next and previous day with
+ * a birthday from any day, which are kept up to date as days gain or lose their birthdays.
+ * This makes finding the next or previous birthdays a single lookup.
+ * A running count of birthdays up to each day is kept as well, so the number of birthdays in any range
+ * of days is known without looking at them, and listing them only visits days which have birthdays.
+ */
 public class BirthdayCalendar<T extends BirthdayEventInstance> {
-    private final List[] holder;
+    // 1 = Jan 1, 366 = Dec 31st. 0 is unused.
+    private static final int FIRST_DAY = 1;
+    private static final int LAST_DAY = 366;
+    private static final int NONE = -1;
+
+    private final List<T>[] holder;
+    private final BitSet occupied;
+    /**
+     * For each day, the next day with a birthday, wrapping around at the end of the year.
+     * A day with the only birthdays in the calendar is its own next day.
+     */
+    private final int[] nextOccupied;
+    /**
+     * For each day, the previous day with a birthday, wrapping around at the start of the year.
+     */
+    private final int[] previousOccupied;
+    /**
+     * For each day, the number of birthdays on or before it.
+     */
+    private final int[] prefixCount;
     private int size = 0;
 
+    @SuppressWarnings("unchecked")
     public BirthdayCalendar() {
-        // 1 = Jan 1, 366 = Dec 31st. 0 is sentinel for rollover.
-        this.holder = new List[367]; // Sure hope they don't add a new day to the calendar
+        this.holder = new List[LAST_DAY + 1]; // Sure hope they don't add a new day to the calendar
+        this.occupied = new BitSet(LAST_DAY + 1);
+        this.nextOccupied = new int[LAST_DAY + 1];
+        this.previousOccupied = new int[LAST_DAY + 1];
+        this.prefixCount = new int[LAST_DAY + 1];
+        Arrays.fill(nextOccupied, NONE);
+        Arrays.fill(previousOccupied, NONE);
+    }
+
+    /**
+     * Create a copy of another calendar.
+     * Since each day's list is immutable, this only copies the tables, regardless of how many birthdays there are.
+     * @param other The calendar to copy.
+     */
+    public BirthdayCalendar(BirthdayCalendar<T> other) {
+        this.holder = other.holder.clone();
+        this.occupied = (BitSet) other.occupied.clone();
+        this.nextOccupied = other.nextOccupied.clone();
+        this.previousOccupied = other.previousOccupied.clone();
+        this.prefixCount = other.prefixCount.clone();
+        this.size = other.size;
     }
 
     private int getIndexForMonthDay(Month month, int day) {
-        return month.firstDayOfYear(true) + day;
+        return month.firstDayOfYear(true) + day - 1;
     }
 
     private int getIndexForMonthDay(MonthDay monthDay) {
@@ -45,13 +92,16 @@ public class BirthdayCalendar<T extends BirthdayEventInstance> {
         var idx = getIndexForMonthDay(critter.getDayOfCelebration());
         var ctr = this.holder[idx];
         if (ctr == null) {
-            var newArray = new ArrayList<>();
-            newArray.add(critter);
-            this.holder[idx] = newArray;
+            this.holder[idx] = List.of(critter);
+            setOccupied(idx, true);
         } else {
-            ctr.add(critter);
+            var newList = new ArrayList<T>(ctr.size() + 1);
+            newList.addAll(ctr);
+            newList.add(critter);
+            this.holder[idx] = Collections.unmodifiableList(newList);
         }
         size++;
+        adjustCount(idx, 1);
     }
 
     public boolean removeBirthday(T critter) {
@@ -59,103 +109,204 @@ public class BirthdayCalendar<T extends BirthdayEventInstance> {
         var ctr = this.holder[idx];
         if (ctr == null) {
             return false;
+        }
+        var newList = new ArrayList<>(ctr);
+        if (!newList.remove(critter)) {
+            return false;
+        }
+        this.size -= ctr.size() - newList.size();
+        adjustCount(idx, newList.size() - ctr.size());
+        if (newList.isEmpty()) {
+            this.holder[idx] = null;
+            setOccupied(idx, false);
         } else {
-            int currentCtrSize = ctr.size();
-            var found = ctr.remove(critter);
-            if (found) {
-                this.size -= (currentCtrSize - ctr.size());
-            }
-            return found;
+            this.holder[idx] = Collections.unmodifiableList(newList);
         }
+        return true;
     }
 
-    public List<T> getBirthdaysOn(LocalDate origin) {
-        var idx = getIndexForLocalDate(origin);
-        var ctr = this.holder[idx];
-        if (CollectionUtils.isEmpty(ctr)) {
-            return List.of();
-        } else {
-            return new ArrayList<>(ctr);
+    /**
+     * Mark a day as having birthdays or not, and update the next and previous tables to match.
+     * Only the days between this one and its closest days with birthdays can have changed, so only those are touched.
+     */
+    private void setOccupied(int idx, boolean value) {
+        occupied.set(idx, value);
+
+        // Every day from here back to the previous birthday now has this day, or this day's next, as its next.
+        int next = value ? idx : findNext(idx);
+        int i = idx;
+        do {
+            i = i == FIRST_DAY ? LAST_DAY : i - 1;
+            nextOccupied[i] = next;
+        } while (!occupied.get(i) && i != idx);
+
+        int previous = value ? idx : findPrevious(idx);
+        i = idx;
+        do {
+            i = i == LAST_DAY ? FIRST_DAY : i + 1;
+            previousOccupied[i] = previous;
+        } while (!occupied.get(i) && i != idx);
+    }
+
+    private void adjustCount(int idx, int delta) {
+        for (int i = idx; i <= LAST_DAY; i++) {
+            prefixCount[i] += delta;
         }
     }
 
+    private int findNext(int idx) {
+        var next = occupied.nextSetBit(idx + 1);
+        return next < 0 ? occupied.nextSetBit(FIRST_DAY) : next;
+    }
+
+    private int findPrevious(int idx) {
+        var previous = occupied.previousSetBit(idx - 1);
+        return previous < FIRST_DAY ? occupied.previousSetBit(LAST_DAY) : previous;
+    }
+
+    public List<T> getBirthdaysOn(LocalDate origin) {
+        return getBirthdaysOnIndex(getIndexForLocalDate(origin));
+    }
+
     public List<T> getBirthdaysOn(MonthDay origin) {
-        var idx = getIndexForMonthDay(origin);
+        return getBirthdaysOnIndex(getIndexForMonthDay(origin));
+    }
+
+    private List<T> getBirthdaysOnIndex(int idx) {
         var ctr = this.holder[idx];
-        if (CollectionUtils.isEmpty(ctr)) {
-            return List.of();
-        } else {
-            return new ArrayList<>(ctr);
-        }
+        return ctr == null ? List.of() : ctr;
     }
 
     public List<T> getBirthdaysOn(Month month) {
         int lowerEnd = getIndexForMonthDay(month, 1);
         int upperEnd = getIndexForMonthDay(month, month.length(true));
 
-        return IntStream.rangeClosed(lowerEnd, upperEnd)
-                .mapToObj(idx -> this.holder[idx])
-                .filter(Objects::nonNull)
-                .flatMap(l -> l.stream())
-                .toList();
+        var birthdays = new ArrayList<T>();
+        for (int idx = occupied.nextSetBit(lowerEnd); idx >= 0 && idx <= upperEnd; idx = occupied.nextSetBit(idx + 1)) {
+            birthdays.addAll(this.holder[idx]);
+        }
+        return Collections.unmodifiableList(birthdays);
     }
 
-    public Optional<NotNowBirthdayCritters> getNextBirthday(LocalDate origin) {
-        if (this.size == 0) {
-            // No amount of looping will help...
-            return Optional.empty();
+    /**
+     * Count the birthdays between two days, inclusive.
+     * If the end is before the start, the range wraps around the end of the year.
+     * @param start The first day to count.
+     * @param end The last day to count.
+     * @return The number of birthdays in the range.
+     */
+    public int countBirthdaysBetween(MonthDay start, MonthDay end) {
+        int from = getIndexForMonthDay(start);
+        int to = getIndexForMonthDay(end);
+        if (from <= to) {
+            return countBetweenIndices(from, to);
         }
+        return countBetweenIndices(from, LAST_DAY) + countBetweenIndices(FIRST_DAY, to);
+    }
 
-        var year = origin.getYear();
-        for (var idx = getIndexForLocalDate(origin) + 1 ;; idx = (idx + 1) % this.holder.length) {
-            if (idx == 0) {
-                year++;
-            } else {
-                var ctr = this.holder[idx];
-                if (CollectionUtils.isNotEmpty(ctr)) {
-                    return Optional.of(NotNowBirthdayCritters.from(ctr, year));
-                }
-            }
+    private int countBetweenIndices(int from, int to) {
+        return prefixCount[to] - prefixCount[from - 1];
+    }
+
+    /**
+     * Get the birthdays between two days, inclusive, in calendar order.
+     * If the end is before the start, the range wraps around the end of the year, so December 28th
+     * to January 3rd is the week around New Year.
+     * @param start The first day to include.
+     * @param end The last day to include.
+     * @return The birthdays in the range.
+     */
+    public List<T> getBirthdaysBetween(MonthDay start, MonthDay end) {
+        int from = getIndexForMonthDay(start);
+        int to = getIndexForMonthDay(end);
+        var birthdays = new ArrayList<T>(countBirthdaysBetween(start, end));
+        if (from <= to) {
+            addBirthdaysBetween(birthdays, from, to);
+        } else {
+            addBirthdaysBetween(birthdays, from, LAST_DAY);
+            addBirthdaysBetween(birthdays, FIRST_DAY, to);
         }
+        return Collections.unmodifiableList(birthdays);
     }
 
-    public Optional<NotNowBirthdayCritters> getPreviousBirthday(LocalDate origin) {
-        if (this.size == 0) {
-            // No amount of looping will help...
-            return Optional.empty();
+    private void addBirthdaysBetween(List<T> birthdays, int from, int to) {
+        if (countBetweenIndices(from, to) == 0) {
+            return;
+        }
+        for (int idx = occupied.nextSetBit(from); idx >= 0 && idx <= to; idx = occupied.nextSetBit(idx + 1)) {
+            birthdays.addAll(this.holder[idx]);
         }
+    }
 
-        var year = origin.getYear();
-        for (var idx = getIndexForLocalDate(origin) - 1 ;; idx = rollingDecrement(idx)) {
-            if (idx == 0) {
+    /**
+     * Get the next several birthdays after a day, grouped by the day they are on.
+     * Days are included until at least k birthdays are found, so if several birthdays share the
+     * last day, more than k may be returned. No more than a year ahead is searched.
+     * @param origin The day to start after.
+     * @param k The number of birthdays to find.
+     * @return The days with birthdays, in order, along with when they next occur.
+     */
+    public List<NotNowBirthdayCritters> getNextK(LocalDate origin, int k) {
+        var days = new ArrayList<NotNowBirthdayCritters>();
+        int current = getIndexForLocalDate(origin);
+        int year = origin.getYear();
+        int travelled = 0;
+        int found = 0;
+        while (found < k) {
+            int next = nextOccupied[current];
+            if (next == NONE) {
+                break;
+            }
+            int distance = next > current ? next - current : next - current + LAST_DAY;
+            travelled += distance;
+            if (travelled > LAST_DAY) {
+                break;
+            }
+            if (next <= current) {
                 year++;
-            } else {
-                var ctr = this.holder[idx];
-                if (CollectionUtils.isNotEmpty(ctr)) {
-                    return Optional.of(NotNowBirthdayCritters.from(ctr, year));
-                }
             }
+            var ctr = this.holder[next];
+            days.add(NotNowBirthdayCritters.from(ctr, year));
+            found += ctr.size();
+            current = next;
         }
+        return Collections.unmodifiableList(days);
     }
 
-    private int rollingDecrement(int i) {
-        i -= 1;
-        if (i < 0) { i += this.holder.length; }
-        return i;
+    public Optional<NotNowBirthdayCritters> getNextBirthday(LocalDate origin) {
+        var idx = getIndexForLocalDate(origin);
+        var next = nextOccupied[idx];
+        if (next == NONE) {
+            return Optional.empty();
+        }
+        // If we had to wrap around, the next birthday is next year.
+        var year = next <= idx ? origin.getYear() + 1 : origin.getYear();
+        return Optional.of(NotNowBirthdayCritters.from(this.holder[next], year));
+    }
+
+    public Optional<NotNowBirthdayCritters> getPreviousBirthday(LocalDate origin) {
+        var idx = getIndexForLocalDate(origin);
+        var previous = previousOccupied[idx];
+        if (previous == NONE) {
+            return Optional.empty();
+        }
+        // If we had to wrap around, the previous birthday was last year.
+        var year = previous >= idx ? origin.getYear() - 1 : origin.getYear();
+        return Optional.of(NotNowBirthdayCritters.from(this.holder[previous], year));
     }
 
     public List<BirthdayEventInstance> getBirthdays() {
-        return Arrays.stream(this.holder)
-                .filter(Objects::nonNull)
-                .flatMap(l -> l.stream())
-                .toList();
+        var birthdays = new ArrayList<BirthdayEventInstance>(size);
+        for (int idx = occupied.nextSetBit(FIRST_DAY); idx >= 0; idx = occupied.nextSetBit(idx + 1)) {
+            birthdays.addAll(this.holder[idx]);
+        }
+        return Collections.unmodifiableList(birthdays);
     }
 
     public record NotNowBirthdayCritters(List<BirthdayEventInstance> celebrators, LocalDate when) {
-        public static NotNowBirthdayCritters from(List<BirthdayEventInstance> critters, int year) {
+        public static NotNowBirthdayCritters from(List<? extends BirthdayEventInstance> critters, int year) {
             var when = critters.get(0).getDayOfCelebration().atYear(year);
-            var whos = new ArrayList<>(critters);
-            return new NotNowBirthdayCritters(whos, when);
+            return new NotNowBirthdayCritters(Collections.unmodifiableList(critters), when);
         }
     }
 }
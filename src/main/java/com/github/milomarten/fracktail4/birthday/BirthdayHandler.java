@@ -11,6 +11,7 @@ import discord4j.core.GatewayDiscordClient;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDate;
@@ -18,7 +19,7 @@ import java.time.Month;
 import java.time.MonthDay;
 import java.time.Year;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Component
 @RequiredArgsConstructor
@@ -29,8 +30,11 @@ public class BirthdayHandler implements PersistenceBean {
     private final Persistence persistence;
     private final GatewayDiscordClient discordClient;
 
-    Map<Snowflake, BirthdayEventInstance> birthdaysById;
-    BirthdayCalendar<BirthdayEventInstance> birthdaysByDate;
+    /**
+     * Every birthday, as of the last change.
+     * Changes build a new snapshot and swap it in, so readers never lock, and never see a change half-made.
+     */
+    private final AtomicReference<BirthdaySnapshot> snapshot = new AtomicReference<>(BirthdaySnapshot.EMPTY);
 
     @PostConstruct
     private void initLoad() {
@@ -42,88 +46,113 @@ public class BirthdayHandler implements PersistenceBean {
         return persistence.retrieve(BIRTHDAYS_KEY, BIRTHDAY_TYPE)
                 .switchIfEmpty(Mono.fromSupplier(List::of))
                 .doOnSuccess(birthdays -> {
-                    this.birthdaysById = new HashMap<>(birthdays.stream()
+                    var users = birthdays.stream()
                             .map(bc -> bc.toEvent(discordClient))
-                            .collect(Collectors.toMap(UserBirthdayEventInstance::userId, b -> b)));
-
-                    this.birthdaysByDate = new BirthdayCalendar<>();
-                    this.birthdaysById.forEach((id, bc) -> {
-                        this.birthdaysByDate.addBirthday(bc);
-                    });
+                            .toList();
 
                     // Load static birthdays!
-                    this.birthdaysByDate.addBirthday(new HardCodedBirthdayEventInstance(
-                            MonthDay.of(Month.APRIL, 2), null,
-                            "Mom Marten",
-                            Set.of(Snowflake.of(423976318082744321L))));
-
-                    this.birthdaysByDate.addBirthday(new HardCodedBirthdayEventInstance(
-                            MonthDay.of(Month.MARCH, 6), null,
-                            "Dad Marten",
-                            Set.of(Snowflake.of(423976318082744321L))));
+                    var others = List.of(
+                            new HardCodedBirthdayEventInstance(
+                                    MonthDay.of(Month.APRIL, 2), null,
+                                    "Mom Marten",
+                                    Set.of(Snowflake.of(423976318082744321L))),
+                            new HardCodedBirthdayEventInstance(
+                                    MonthDay.of(Month.MARCH, 6), null,
+                                    "Dad Marten",
+                                    Set.of(Snowflake.of(423976318082744321L))));
+
+                    this.snapshot.set(BirthdaySnapshot.of(users, others));
                 })
                 .then();
     }
 
     @Override
     public Mono<Void> store() {
-        var persistObj = this.birthdaysById.values()
-                .stream()
-                .filter(obj -> obj instanceof UserBirthdayEventInstance)
-                .map(bei -> ((UserBirthdayEventInstance) bei).asCritter())
-                .toList();
-        return this.persistence.store(BIRTHDAYS_KEY, persistObj);
+        return save().then(this.persistence.flush(BIRTHDAYS_KEY));
+    }
+
+    /**
+     * Save the birthdays, without waiting for them to be durable.
+     */
+    private Mono<Void> save() {
+        return this.persistence.storeEntries(BIRTHDAYS_KEY, entries());
     }
 
+    /**
+     * Get a snapshot of the persisted birthdays, by user ID.
+     */
+    private Map<String, BirthdayCritter> entries() {
+        var entries = new LinkedHashMap<String, BirthdayCritter>();
+        this.snapshot.get().getBirthdaysById().forEach((id, bei) -> {
+            if (bei instanceof UserBirthdayEventInstance ubei) {
+                entries.put(id.asString(), ubei.asCritter());
+            }
+        });
+        return entries;
+    }
+
+
+    /**
+     * Get every birthday, as of right now.
+     * Everything read from the returned snapshot is consistent, even if birthdays change in the meantime.
+     */
+    public BirthdaySnapshot getSnapshot() {
+        return this.snapshot.get();
+    }
 
     public Optional<BirthdayEventInstance> getBirthday(Snowflake user) {
-        return Optional.ofNullable(this.birthdaysById.get(user));
+        return this.snapshot.get().getBirthday(user);
     }
 
     public List<BirthdayEventInstance> getBirthdaysOn(LocalDate day) {
-        return birthdaysByDate.getBirthdaysOn(day);
+        return this.snapshot.get().getBirthdaysOn(day);
     }
 
     public List<BirthdayEventInstance> getBirthdaysOn(MonthDay day) {
-        return birthdaysByDate.getBirthdaysOn(day);
+        return this.snapshot.get().getBirthdaysOn(day);
     }
 
     public List<BirthdayEventInstance> getBirthdaysOn(Month month) {
-        return birthdaysByDate.getBirthdaysOn(month);
+        return this.snapshot.get().getBirthdaysOn(month);
     }
 
     public Optional<BirthdayCalendar.NotNowBirthdayCritters> getNextBirthdays(LocalDate start) {
-        return birthdaysByDate.getNextBirthday(start);
+        return this.snapshot.get().getNextBirthdays(start);
     }
 
     public Optional<BirthdayCalendar.NotNowBirthdayCritters> getPreviousBirthdays(LocalDate start) {
-        return birthdaysByDate.getPreviousBirthday(start);
+        return this.snapshot.get().getPreviousBirthdays(start);
+    }
+
+    public List<BirthdayEventInstance> getBirthdaysBetween(MonthDay start, MonthDay end) {
+        return this.snapshot.get().getBirthdaysBetween(start, end);
+    }
+
+    public int countBirthdaysBetween(MonthDay start, MonthDay end) {
+        return this.snapshot.get().countBirthdaysBetween(start, end);
+    }
+
+    public List<BirthdayCalendar.NotNowBirthdayCritters> getNextBirthdays(LocalDate start, int count) {
+        return this.snapshot.get().getNextBirthdays(start, count);
     }
 
     public List<BirthdayEventInstance> getBirthdays() {
-        return birthdaysByDate.getBirthdays();
+        return this.snapshot.get().getBirthdays();
     }
 
     public boolean hasBirthday(Snowflake critter) {
-        return this.birthdaysById.containsKey(critter);
+        return this.snapshot.get().hasBirthday(critter);
     }
 
     public int getNumberOfBirthdays() {
-        return this.birthdaysById.size();
+        return this.snapshot.get().getNumberOfBirthdays();
     }
 
     public Mono<Void> createBirthday(Snowflake critter, MonthDay day, Year year) {
         var newCritter = new BirthdayCritter(critter, day, year).toEvent(discordClient);
 
-        if (this.birthdaysById.containsKey(critter)) {
-            this.birthdaysById.put(critter, newCritter);
-            this.birthdaysByDate.removeBirthday(newCritter);
-            this.birthdaysByDate.addBirthday(newCritter);
-        } else {
-            this.birthdaysById.put(critter, newCritter);
-            this.birthdaysByDate.addBirthday(newCritter);
-        }
-        return store();
+        this.snapshot.updateAndGet(s -> s.withBirthday(newCritter));
+        return this.persistence.storeEntry(BIRTHDAYS_KEY, critter.asString(), newCritter.asCritter(), this::entries);
     }
 //
 //    public Mono<Void> addYear(Snowflake critter, Year year) {
@@ -143,19 +172,18 @@ public class BirthdayHandler implements PersistenceBean {
 //    }
 
     public Mono<Void> removeBirthday(Snowflake critter) {
-        if (this.birthdaysById.containsKey(critter)) {
-            var fullCritter = this.birthdaysById.remove(critter);
-            this.birthdaysByDate.removeBirthday(fullCritter);
-            return store();
+        var previous = this.snapshot.getAndUpdate(s -> s.withoutBirthdays(List.of(critter)));
+        if (previous.hasBirthday(critter)) {
+            return this.persistence.removeEntry(BIRTHDAYS_KEY, critter.asString(), this::entries);
         }
         return Mono.error(new IllegalArgumentException("Critter does not have a birthday"));
     }
 
     public Mono<Void> removeBirthdays(List<BirthdayCritter> critters) {
-        critters.forEach(s -> {
-            var fullCritter = this.birthdaysById.remove(s.getCritter());
-            this.birthdaysByDate.removeBirthday(fullCritter);
-        });
-        return store();
+        var ids = critters.stream().map(BirthdayCritter::getCritter).toList();
+        this.snapshot.updateAndGet(s -> s.withoutBirthdays(ids));
+        return Flux.fromIterable(critters)
+                .concatMap(s -> this.persistence.removeEntry(BIRTHDAYS_KEY, s.getCritter().asString(), this::entries))
+                .then();
     }
 }
@@ -0,0 +1,139 @@
+package com.github.milomarten.fracktail4.birthday;
+
+import com.github.milomarten.fracktail4.birthday.v2.BirthdayEventInstance;
+import com.github.milomarten.fracktail4.birthday.v2.UserBirthdayEventInstance;
+import discord4j.common.util.Snowflake;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.*;
+
+/**
+ * An unchanging view of every birthday, both by user and by date.
+ * Changing a snapshot produces a new one, leaving the original as it was, so a snapshot can be read
+ * from any thread without locking, and its two views always agree with each other.
+ */
+public final class BirthdaySnapshot {
+    public static final BirthdaySnapshot EMPTY = new BirthdaySnapshot(Map.of(), new BirthdayCalendar<>());
+
+    private final Map<Snowflake, BirthdayEventInstance> birthdaysById;
+    private final BirthdayCalendar<BirthdayEventInstance> birthdaysByDate;
+
+    private BirthdaySnapshot(Map<Snowflake, BirthdayEventInstance> birthdaysById, BirthdayCalendar<BirthdayEventInstance> birthdaysByDate) {
+        this.birthdaysById = birthdaysById;
+        this.birthdaysByDate = birthdaysByDate;
+    }
+
+    /**
+     * Create a snapshot from scratch.
+     * @param users The birthdays of users, which can be looked up by ID.
+     * @param others Other birthdays, which only appear on the calendar.
+     * @return The created snapshot.
+     */
+    public static BirthdaySnapshot of(Collection<UserBirthdayEventInstance> users, Collection<? extends BirthdayEventInstance> others) {
+        var byId = new HashMap<Snowflake, BirthdayEventInstance>();
+        var byDate = new BirthdayCalendar<BirthdayEventInstance>();
+        users.forEach(user -> {
+            var previous = byId.put(user.userId(), user);
+            if (previous != null) {
+                byDate.removeBirthday(previous);
+            }
+            byDate.addBirthday(user);
+        });
+        others.forEach(byDate::addBirthday);
+        return new BirthdaySnapshot(Collections.unmodifiableMap(byId), byDate);
+    }
+
+    /**
+     * Get a copy of this snapshot with a user's birthday added, replacing any they already had.
+     * @param birthday The birthday to add.
+     * @return The new snapshot.
+     */
+    public BirthdaySnapshot withBirthday(UserBirthdayEventInstance birthday) {
+        var byId = new HashMap<>(this.birthdaysById);
+        var byDate = new BirthdayCalendar<>(this.birthdaysByDate);
+        var previous = byId.put(birthday.userId(), birthday);
+        if (previous != null) {
+            byDate.removeBirthday(previous);
+        }
+        byDate.addBirthday(birthday);
+        return new BirthdaySnapshot(Collections.unmodifiableMap(byId), byDate);
+    }
+
+    /**
+     * Get a copy of this snapshot with some users' birthdays removed.
+     * Users without a birthday are ignored.
+     * @param users The users to remove.
+     * @return The new snapshot, or this one if nothing was removed.
+     */
+    public BirthdaySnapshot withoutBirthdays(Collection<Snowflake> users) {
+        if (users.stream().noneMatch(this.birthdaysById::containsKey)) {
+            return this;
+        }
+        var byId = new HashMap<>(this.birthdaysById);
+        var byDate = new BirthdayCalendar<>(this.birthdaysByDate);
+        users.forEach(user -> {
+            var previous = byId.remove(user);
+            if (previous != null) {
+                byDate.removeBirthday(previous);
+            }
+        });
+        return new BirthdaySnapshot(Collections.unmodifiableMap(byId), byDate);
+    }
+
+    /**
+     * Get the birthdays of users, by their ID.
+     */
+    public Map<Snowflake, BirthdayEventInstance> getBirthdaysById() {
+        return birthdaysById;
+    }
+
+    public Optional<BirthdayEventInstance> getBirthday(Snowflake user) {
+        return Optional.ofNullable(this.birthdaysById.get(user));
+    }
+
+    public boolean hasBirthday(Snowflake user) {
+        return this.birthdaysById.containsKey(user);
+    }
+
+    public int getNumberOfBirthdays() {
+        return this.birthdaysById.size();
+    }
+
+    public List<BirthdayEventInstance> getBirthdaysOn(LocalDate day) {
+        return birthdaysByDate.getBirthdaysOn(day);
+    }
+
+    public List<BirthdayEventInstance> getBirthdaysOn(MonthDay day) {
+        return birthdaysByDate.getBirthdaysOn(day);
+    }
+
+    public List<BirthdayEventInstance> getBirthdaysOn(Month month) {
+        return birthdaysByDate.getBirthdaysOn(month);
+    }
+
+    public Optional<BirthdayCalendar.NotNowBirthdayCritters> getNextBirthdays(LocalDate start) {
+        return birthdaysByDate.getNextBirthday(start);
+    }
+
+    public Optional<BirthdayCalendar.NotNowBirthdayCritters> getPreviousBirthdays(LocalDate start) {
+        return birthdaysByDate.getPreviousBirthday(start);
+    }
+
+    public List<BirthdayEventInstance> getBirthdaysBetween(MonthDay start, MonthDay end) {
+        return birthdaysByDate.getBirthdaysBetween(start, end);
+    }
+
+    public int countBirthdaysBetween(MonthDay start, MonthDay end) {
+        return birthdaysByDate.countBirthdaysBetween(start, end);
+    }
+
+    public List<BirthdayCalendar.NotNowBirthdayCritters> getNextBirthdays(LocalDate start, int count) {
+        return birthdaysByDate.getNextK(start, count);
+    }
+
+    public List<BirthdayEventInstance> getBirthdays() {
+        return birthdaysByDate.getBirthdays();
+    }
+}
@@ -3,34 +3,89 @@ package com.github.milomarten.fracktail4.birthday.ical;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import net.fortuna.ical4j.model.Calendar;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.time.Duration;
 
+/**
+ * Keeps the current birthday calendar, both as a Calendar and already serialized.
+ * Serializing happens once per rebuild, so serving the calendar costs nothing, however often it is polled.
+ */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class BirthdayICalCacheJob {
     private final BirthdayICalService service;
 
-    @Getter private Calendar currentCalendar;
+    @Value("${discord.birthday.ical.gzip:true}")
+    private boolean gzip;
+
+    @Getter private volatile Calendar currentCalendar;
+    @Getter private volatile RenderedCalendar renderedCalendar;
+    private boolean building;
+    private boolean rebuildRequested;
 
     @PostConstruct
     private void setUp() {
         //Initialize the first one!
-        this.currentCalendar = this.service
-                .createCalendar()
+        var rendered = build()
                 .blockOptional(Duration.ofMinutes(2))
                 .orElseThrow(() -> new IllegalArgumentException("Unable to create calendar"));
+        publish(rendered);
     }
 
     // This runs at midnight every night.
     // But it can also be triggered manually.
     // Right now, it is triggered on create or delete of a birthday.
+    // Only one rebuild runs at a time. Asking for one while another runs queues one more for after it,
+    // so the latest changes are always picked up, and an older build never replaces a newer one.
     @Scheduled(cron = "@midnight")
     public void updateCalendar() {
-        this.service.createCalendar()
-                .subscribe(cal -> this.currentCalendar = cal);
+        synchronized (this) {
+            if (building) {
+                rebuildRequested = true;
+                return;
+            }
+            building = true;
+        }
+        runBuild();
+    }
+
+    private void runBuild() {
+        build()
+                .subscribe(this::publish,
+                        ex -> {
+                            log.error("Unable to rebuild calendar", ex);
+                            onBuildFinished();
+                        },
+                        this::onBuildFinished);
+    }
+
+    private void onBuildFinished() {
+        synchronized (this) {
+            if (!rebuildRequested) {
+                building = false;
+                return;
+            }
+            rebuildRequested = false;
+        }
+        runBuild();
+    }
+
+    private Mono<Tuple2<Calendar, RenderedCalendar>> build() {
+        return this.service.createCalendar()
+                .flatMap(cal -> Mono.fromCallable(() -> Tuples.of(cal, RenderedCalendar.render(cal, gzip, renderedCalendar))));
+    }
+
+    private synchronized void publish(Tuple2<Calendar, RenderedCalendar> built) {
+        this.currentCalendar = built.getT1();
+        this.renderedCalendar = built.getT2();
     }
 }
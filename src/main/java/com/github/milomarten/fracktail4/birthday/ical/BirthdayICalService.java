@@ -2,9 +2,8 @@ package com.github.milomarten.fracktail4.birthday.ical;
 
 import com.github.milomarten.fracktail4.birthday.BirthdayHandler;
 import com.github.milomarten.fracktail4.birthday.v2.BirthdayEventInstance;
-import com.github.milomarten.fracktail4.commands.BirthdaySlashCommand;
+import com.github.milomarten.fracktail4.birthday.v2.UserBirthdayEventInstance;
 import discord4j.core.GatewayDiscordClient;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.fortuna.ical4j.extensions.model.property.WrCalDesc;
 import net.fortuna.ical4j.extensions.model.property.WrCalName;
@@ -12,25 +11,47 @@ import net.fortuna.ical4j.model.Calendar;
 import net.fortuna.ical4j.model.ParameterList;
 import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.property.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.function.Tuples;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-@RequiredArgsConstructor
+/**
+ * Builds the birthday calendar.
+ * Each birthday's event is cached, along with the name it was made with, so a rebuild only touches birthdays
+ * which were added or changed since the last one. Names are only looked up again once they expire, and an
+ * expired name which can't be looked up keeps its old event until it can.
+ * Rebuilds share the cache, so they shouldn't overlap; {@link BirthdayICalCacheJob} only runs one at a time.
+ */
 @Slf4j
 @Component
 public class BirthdayICalService {
     private final BirthdayHandler birthdayHandler;
     private final GatewayDiscordClient client;
+    private final Duration nameTtl;
+
+    private final Map<Object, CachedEvent> events = new ConcurrentHashMap<>();
+
+    public BirthdayICalService(BirthdayHandler birthdayHandler, GatewayDiscordClient client,
+                               @Value("${discord.birthday.ical.name-ttl:1d}") Duration nameTtl) {
+        this.birthdayHandler = birthdayHandler;
+        this.client = client;
+        this.nameTtl = nameTtl;
+    }
 
     public Mono<Calendar> createCalendar() {
-        return Flux.fromIterable(birthdayHandler.getBirthdays())
-                .flatMap(BirthdayEventInstance::resolve)
+        var birthdays = birthdayHandler.getBirthdays();
+        var now = Instant.now();
+        return Flux.fromIterable(birthdays)
+                .flatMapSequential(birthday -> getEvent(birthday, now))
                 .collectList()
-                .map(celebrators -> {
+                .map(vevents -> {
                     var calendar = new Calendar()
                             .withProdId("-//Milo Marten//Fracktail 4.0//EN")
                             .withDefaults()
@@ -40,20 +61,65 @@ public class BirthdayICalService {
                     calendar.add(new WrCalDesc(new ParameterList(), "Birthdays, as generated from Fracktail in Milo's Saloon."));
                     calendar.add(new RefreshInterval(new ParameterList(), Duration.ofHours(12)));
 
-                    celebrators.stream()
-                            .<VEvent>map(celebrator -> {
-                                var dateOfCelebration = celebrator.getT1().getDayOfCelebration();
-                                var username = celebrator.getT2();
-                                return new VEvent()
-                                        .add(new DtStart<>(dateOfCelebration.atYear(2023)))
-                                        .add(new DtEnd<>(dateOfCelebration.atYear(2023).plusDays(1)))
-//                                        .add(new Uid(celebrator.getT1().getCritter().asString()))
-                                        .add(new Summary(String.format("%s's Birthday", username)))
-                                        .add(new RRule<>("FREQ=YEARLY"));
-                            })
-                            .forEach(calendar::add);
+                    vevents.forEach(calendar::add);
+
+                    // Forget the events of anyone who no longer has a birthday.
+                    var keys = new HashSet<>();
+                    birthdays.forEach(birthday -> keys.add(keyOf(birthday)));
+                    events.keySet().retainAll(keys);
 
                     return calendar;
                 });
     }
+
+    /**
+     * Get the event for a birthday, making it only if the birthday is new or changed, or its name has expired.
+     */
+    private Mono<VEvent> getEvent(BirthdayEventInstance birthday, Instant now) {
+        var key = keyOf(birthday);
+        var cached = events.get(key);
+        if (cached != null && now.isBefore(cached.expires())) {
+            if (cached.birthday() == birthday) {
+                return Mono.just(cached.event());
+            }
+            return Mono.just(cache(key, birthday, cached.name(), cached.expires()));
+        }
+        return birthday.resolve()
+                .map(resolved -> cache(key, birthday, resolved.getT2(), now.plus(nameTtl)))
+                .onErrorResume(ex -> {
+                    if (cached == null || cached.birthday() != birthday) {
+                        return Mono.error(ex);
+                    }
+                    log.warn("Unable to look up name for birthday, keeping the old one", ex);
+                    return Mono.just(cached.event());
+                });
+    }
+
+    private VEvent cache(Object key, BirthdayEventInstance birthday, String name, Instant expires) {
+        var event = createEvent(birthday, name);
+        events.put(key, new CachedEvent(birthday, name, expires, event));
+        return event;
+    }
+
+    private static VEvent createEvent(BirthdayEventInstance birthday, String username) {
+        var dateOfCelebration = birthday.getDayOfCelebration();
+        VEvent event = new VEvent()
+                .add(new DtStart<>(dateOfCelebration.atYear(2023)))
+                .add(new DtEnd<>(dateOfCelebration.atYear(2023).plusDays(1)))
+                .add(new Summary(String.format("%s's Birthday", username)))
+                .add(new RRule<>("FREQ=YEARLY"));
+        if (birthday instanceof UserBirthdayEventInstance user) {
+            event.add(new Uid(user.userId().asString()));
+        }
+        return event;
+    }
+
+    /**
+     * Users can only have one birthday, so their events are kept by user. Other birthdays are kept by themselves.
+     */
+    private static Object keyOf(BirthdayEventInstance birthday) {
+        return birthday instanceof UserBirthdayEventInstance user ? user.userId() : birthday;
+    }
+
+    private record CachedEvent(BirthdayEventInstance birthday, String name, Instant expires, VEvent event) {}
 }
@@ -0,0 +1,99 @@
+package com.github.milomarten.fracktail4.birthday.ical;
+
+import lombok.Getter;
+import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.model.Calendar;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A calendar, serialized once and ready to be served as many times as needed.
+ * The ETag is derived from the serialized bytes, so rebuilding an unchanged calendar gives the same ETag,
+ * and keeps the time it was last modified.
+ */
+public class RenderedCalendar {
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private final byte[] bytes;
+    private final byte[] gzipped;
+    @Getter private final String etag;
+    @Getter private final Instant lastModified;
+
+    private RenderedCalendar(byte[] bytes, byte[] gzipped, String etag, Instant lastModified) {
+        this.bytes = bytes;
+        this.gzipped = gzipped;
+        this.etag = etag;
+        this.lastModified = lastModified;
+    }
+
+    /**
+     * Serialize a calendar.
+     * @param calendar The calendar to serialize.
+     * @param gzip If true, a gzipped copy is made as well.
+     * @param previous The previously rendered calendar, or null if there is none.
+     * @return The rendered calendar.
+     * @throws IOException If the calendar couldn't be serialized.
+     */
+    public static RenderedCalendar render(Calendar calendar, boolean gzip, RenderedCalendar previous) throws IOException {
+        var out = new ByteArrayOutputStream();
+        new CalendarOutputter().output(calendar, out);
+        var bytes = out.toByteArray();
+
+        var etag = hash(bytes);
+        var lastModified = previous != null && previous.etag.equals(etag) ?
+                previous.lastModified :
+                Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        return new RenderedCalendar(bytes, gzip ? gzip(bytes) : null, etag, lastModified);
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            return HexFormat.of().formatHex(Arrays.copyOf(digest, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 should always be available", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream(bytes.length / 4);
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Get the serialized calendar.
+     * @return A read-only view of the bytes, which can be handed out without copying.
+     */
+    public ByteBuffer getBody() {
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+
+    /**
+     * Get the gzipped serialized calendar, if one was made.
+     * @return A read-only view of the gzipped bytes.
+     */
+    public Optional<ByteBuffer> getGzippedBody() {
+        return Optional.ofNullable(gzipped).map(b -> ByteBuffer.wrap(b).asReadOnlyBuffer());
+    }
+
+    /**
+     * Get the ETag of the gzipped calendar.
+     * It differs from the plain ETag, since the two are different representations.
+     */
+    public String getGzippedEtag() {
+        return etag + GZIP_SUFFIX;
+    }
+}
@@ -0,0 +1,150 @@
+package com.github.milomarten.fracktail4.commands;
+
+import com.github.milomarten.fracktail4.commands.dnd.BattleRoll;
+import com.github.milomarten.fracktail4.commands.dnd.DefenseParameters;
+import com.github.milomarten.fracktail4.commands.dnd.Type;
+import com.github.milomarten.fracktail4.platform.discord.slash.SlashCommandWrapper;
+import com.github.milomarten.fracktail4.platform.discord.utils.SlashCommands;
+import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
+import discord4j.core.object.command.ApplicationCommandOption;
+import discord4j.discordjson.json.ApplicationCommandOptionData;
+import discord4j.discordjson.json.ApplicationCommandRequest;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A battle roll against several defenders at once, for area attacks.
+ * Defenders are written as a list, separated by semicolons, of `type[/type] defense [combat stages]`.
+ * For example, `grass/flying 12 +1; fire 8` is two defenders.
+ */
+public class AreaBattleRollCommand implements SlashCommandWrapper {
+    private static final int MAX_DEFENDERS = 12;
+
+    @Override
+    public ApplicationCommandRequest getRequest() {
+        return ApplicationCommandRequest.builder()
+                .name("battleroll-area")
+                .description("Make a battle roll against several defenders at once")
+                .addAllOptions(BattleRollCommand.attackerOptions())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("defenders")
+                        .description("Each defender as type[/type] defense [CS], separated by ;")
+                        .type(ApplicationCommandOption.Type.STRING.getValue())
+                        .required(true)
+                        .build()
+                )
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("rollPerTarget")
+                        .description("Roll damage separately for each defender, instead of once for all")
+                        .type(ApplicationCommandOption.Type.BOOLEAN.getValue())
+                        .required(false)
+                        .build()
+                )
+                .build();
+    }
+
+    @Override
+    public Mono<?> handleEvent(ChatInputInteractionEvent event) {
+        var attacker = BattleRollCommand.parseAttacker(event);
+        var defendersText = event.getOption("defenders")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asString())
+                .orElseThrow();
+        boolean rollPerTarget = event.getOption("rollPerTarget")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asBoolean())
+                .orElse(false);
+
+        List<DefenseParameters> defenders;
+        try {
+            defenders = parseDefenders(defendersText);
+        } catch (IllegalArgumentException ex) {
+            return SlashCommands.replyEphemeral(event, ex.getMessage());
+        }
+
+        var results = BattleRoll.doAreaAttackRoll(attacker, defenders, rollPerTarget, ThreadLocalRandom.current());
+
+        var sb = new StringBuilder("```\n");
+        sb.append(String.format("%-2s %-18s %7s %-13s%n", "#", "Defender", "Damage", "Range"));
+        for (int i = 0; i < defenders.size(); i++) {
+            var defender = defenders.get(i);
+            var result = results.get(i);
+            sb.append(String.format("%-2d %-18s %7s %-13s%n",
+                    i + 1,
+                    describe(defender),
+                    format(result.getValue()),
+                    format(result.getRange().low()) + " - " + format(result.getRange().high())));
+        }
+        sb.append("```");
+        return SlashCommands.replyEphemeral(event, sb.toString());
+    }
+
+    /**
+     * Parse a list of defenders.
+     * @param text The defenders, in the format `type[/type] defense [combat stages]`, separated by semicolons.
+     * @return The defenders, in order.
+     * @throws IllegalArgumentException If any defender is malformed, with a message describing which.
+     */
+    static List<DefenseParameters> parseDefenders(String text) {
+        var defenders = new ArrayList<DefenseParameters>();
+        for (String entry : text.split(";")) {
+            if (entry.isBlank()) continue;
+            var parts = entry.trim().split("\\s+");
+            if (parts.length < 2 || parts.length > 3) {
+                throw new IllegalArgumentException("Defender `" + entry.trim() + "` should look like `type[/type] defense [CS]`");
+            }
+            var types = parts[0].split("/");
+            if (types.length > 2) {
+                throw new IllegalArgumentException("Defender `" + entry.trim() + "` has too many types");
+            }
+            var primary = parseType(types[0]);
+            var secondary = types.length == 2 ? parseType(types[1]) : Type.NONE;
+            int defenseStat;
+            int defenseCS;
+            try {
+                defenseStat = Integer.parseInt(parts[1]);
+                defenseCS = parts.length == 3 ? Integer.parseInt(parts[2]) : 0;
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Defender `" + entry.trim() + "` has an invalid number");
+            }
+            if (defenseStat < 1) {
+                throw new IllegalArgumentException("Defender `" + entry.trim() + "` must have a defense of at least 1");
+            }
+            if (defenseCS < -6 || defenseCS > 6) {
+                throw new IllegalArgumentException("Defender `" + entry.trim() + "` must have combat stages between -6 and 6");
+            }
+            defenders.add(DefenseParameters.builder()
+                    .defenderPrimaryType(primary)
+                    .defenderSecondaryType(secondary)
+                    .defenseStat(defenseStat)
+                    .defenseCS(defenseCS)
+                    .build());
+        }
+        if (defenders.isEmpty()) {
+            throw new IllegalArgumentException("No defenders given");
+        } else if (defenders.size() > MAX_DEFENDERS) {
+            throw new IllegalArgumentException("Too many defenders. The limit is " + MAX_DEFENDERS);
+        }
+        return defenders;
+    }
+
+    private static Type parseType(String type) {
+        return Type.fromString(type)
+                .orElseThrow(() -> new IllegalArgumentException("Unknown type " + type));
+    }
+
+    private static String describe(DefenseParameters defender) {
+        var types = defender.getDefenderSecondaryType() == Type.NONE ?
+                defender.getDefenderPrimaryType().name() :
+                defender.getDefenderPrimaryType().name() + "/" + defender.getDefenderSecondaryType().name();
+        return types.length() > 18 ? types.substring(0, 18) : types;
+    }
+
+    private static String format(BigDecimal value) {
+        return value.stripTrailingZeros().toPlainString();
+    }
+}
@@ -12,146 +12,193 @@ import discord4j.discordjson.json.ApplicationCommandOptionData;
 import discord4j.discordjson.json.ApplicationCommandRequest;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
 public class BattleRollCommand implements SlashCommandWrapper {
+    private static final int MAX_HP = 10_000;
+
     @Override
     public ApplicationCommandRequest getRequest() {
         return ApplicationCommandRequest.builder()
                 .name("battleroll")
                 .description("Make a battle roll using hard-coded values")
+                .addAllOptions(attackerOptions())
                 .addOption(ApplicationCommandOptionData.builder()
-                        .name("damageBase")
-                        .description("The DB of the attack")
-                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
-                        .minValue(1d).maxValue(28d)
-                        .required(true)
-                        .build()
-                )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("attackType")
-                        .description("The type of the attack")
-                        .type(ApplicationCommandOption.Type.STRING.getValue())
-                        .choices(Type.asChoices())
-                        .required(false)
-                        .build()
-                )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("attackerPrimaryType")
-                        .description("The primary type of the attacker")
+                        .name("defenderPrimaryType")
+                        .description("The primary type of the defender")
                         .type(ApplicationCommandOption.Type.STRING.getValue())
                         .choices(Type.asChoices())
                         .required(true)
                         .build()
                 )
                 .addOption(ApplicationCommandOptionData.builder()
-                        .name("attackerSecondaryType")
-                        .description("The secondary type of the attacker")
+                        .name("defenderSecondaryType")
+                        .description("The secondary type of the defender")
                         .type(ApplicationCommandOption.Type.STRING.getValue())
                         .choices(Type.asChoices())
                         .required(false)
                         .build()
                 )
                 .addOption(ApplicationCommandOptionData.builder()
-                        .name("attackStat")
-                        .description("The physical or special attack, depending on the type of move")
+                        .name("defenseStat")
+                        .description("The physical or special defense, depending on the type of move")
                         .type(ApplicationCommandOption.Type.INTEGER.getValue())
                         .minValue(1d)
                         .required(true)
                         .build()
                 )
                 .addOption(ApplicationCommandOptionData.builder()
-                        .name("attackCS")
-                        .description("The physical or special attack combat stages, depending on the type of move")
+                        .name("defenseCS")
+                        .description("The physical or special defense combat stages, depending on the type of move")
                         .type(ApplicationCommandOption.Type.INTEGER.getValue())
                         .minValue(-6d).maxValue(6d)
                         .required(false)
                         .build()
                 )
                 .addOption(ApplicationCommandOptionData.builder()
-                        .name("isCrit")
-                        .description("If the attack is a crit")
-                        .type(ApplicationCommandOption.Type.BOOLEAN.getValue())
+                        .name("defenderHP")
+                        .description("The defender's remaining HP, to show the chance of a KO")
+                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
+                        .minValue(1d).maxValue((double) MAX_HP)
                         .required(false)
                         .build()
                 )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("defenderPrimaryType")
-                        .description("The primary type of the defender")
+                .build();
+    }
+
+    /**
+     * The options that describe the attacker, shared by every kind of battle roll.
+     */
+    static List<ApplicationCommandOptionData> attackerOptions() {
+        return List.of(
+                ApplicationCommandOptionData.builder()
+                        .name("damageBase")
+                        .description("The DB of the attack")
+                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
+                        .minValue(1d).maxValue(28d)
+                        .required(true)
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("attackType")
+                        .description("The type of the attack")
+                        .type(ApplicationCommandOption.Type.STRING.getValue())
+                        .choices(Type.asChoices())
+                        .required(false)
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("attackerPrimaryType")
+                        .description("The primary type of the attacker")
                         .type(ApplicationCommandOption.Type.STRING.getValue())
                         .choices(Type.asChoices())
                         .required(true)
-                        .build()
-                )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("defenderSecondaryType")
-                        .description("The secondary type of the defender")
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("attackerSecondaryType")
+                        .description("The secondary type of the attacker")
                         .type(ApplicationCommandOption.Type.STRING.getValue())
                         .choices(Type.asChoices())
                         .required(false)
-                        .build()
-                )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("defenseStat")
-                        .description("The physical or special defense, depending on the type of move")
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("attackStat")
+                        .description("The physical or special attack, depending on the type of move")
                         .type(ApplicationCommandOption.Type.INTEGER.getValue())
                         .minValue(1d)
                         .required(true)
-                        .build()
-                )
-                .addOption(ApplicationCommandOptionData.builder()
-                        .name("defenseCS")
-                        .description("The physical or special defense combat stages, depending on the type of move")
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("attackCS")
+                        .description("The physical or special attack combat stages, depending on the type of move")
                         .type(ApplicationCommandOption.Type.INTEGER.getValue())
                         .minValue(-6d).maxValue(6d)
                         .required(false)
+                        .build(),
+                ApplicationCommandOptionData.builder()
+                        .name("isCrit")
+                        .description("If the attack is a crit")
+                        .type(ApplicationCommandOption.Type.BOOLEAN.getValue())
+                        .required(false)
                         .build()
-                )
-                .build();
+        );
     }
 
     @Override
     public Mono<?> handleEvent(ChatInputInteractionEvent event) {
-        int db = (int) event.getOption("damageBase").orElseThrow().getValue().orElseThrow().asLong();
-        var attackType = event.getOption("attackType")
-                .flatMap(acie -> acie.getValue())
-                .map(v -> v.asString())
-                .flatMap(Type::fromString)
-                .orElse(Type.NONE);
-        var attackerPrimaryType = event.getOption("attackerPrimaryType")
+        var attacker = parseAttacker(event);
+        var defenderPrimaryType = event.getOption("defenderPrimaryType")
                 .flatMap(acie -> acie.getValue())
                 .map(v -> v.asString())
                 .flatMap(Type::fromString)
                 .orElse(Type.NONE);
-        var attackerSecondaryType = event.getOption("attackerSecondaryType")
+        var defenderSecondaryType = event.getOption("defenderSecondaryType")
                 .flatMap(acie -> acie.getValue())
                 .map(v -> v.asString())
                 .flatMap(Type::fromString)
                 .orElse(Type.NONE);
-        int attackStat = (int) event.getOption("attackStat")
+        int defenseStat = (int) event.getOption("defenseStat")
                 .orElseThrow()
                 .getValue()
                 .orElseThrow()
                 .asLong();
-        int attackCS = event.getOption("attackCS")
+        int defenseCS = event.getOption("defenseCS")
                 .flatMap(a -> a.getValue())
                 .map(a -> a.asLong())
                 .orElse(0L)
                 .intValue();
-        var defenderPrimaryType = event.getOption("defenderPrimaryType")
+        var hp = event.getOption("defenderHP")
+                .flatMap(a -> a.getValue())
+                .map(a -> (int) Math.min(a.asLong(), MAX_HP));
+
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(defenderPrimaryType)
+                .defenderSecondaryType(defenderSecondaryType)
+                .defenseStat(defenseStat)
+                .defenseCS(defenseCS)
+                .build();
+
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        var result = profile.roll(ThreadLocalRandom.current());
+        var range = profile.range();
+        var str = String.format("Damage: %s\nMin: %s | Max: %s | Average: %.2f",
+                result.getValue().stripTrailingZeros().toPlainString(),
+                range.low().stripTrailingZeros().toPlainString(),
+                range.high().stripTrailingZeros().toPlainString(),
+                profile.mean());
+        var reply = hp
+                .map(h -> str + String.format("\nChance to KO at %d HP: %.2f%%", h, profile.probabilityOfKO(h) * 100))
+                .orElse(str);
+
+        return SlashCommands.replyEphemeral(event, reply);
+    }
+
+    /**
+     * Read the attacker from a command's options.
+     * @see #attackerOptions()
+     */
+    static AttackParameters parseAttacker(ChatInputInteractionEvent event) {
+        int db = (int) event.getOption("damageBase").orElseThrow().getValue().orElseThrow().asLong();
+        var attackType = event.getOption("attackType")
                 .flatMap(acie -> acie.getValue())
                 .map(v -> v.asString())
                 .flatMap(Type::fromString)
                 .orElse(Type.NONE);
-        var defenderSecondaryType = event.getOption("defenderSecondaryType")
+        var attackerPrimaryType = event.getOption("attackerPrimaryType")
                 .flatMap(acie -> acie.getValue())
                 .map(v -> v.asString())
                 .flatMap(Type::fromString)
                 .orElse(Type.NONE);
-        int defenseStat = (int) event.getOption("defenseStat")
+        var attackerSecondaryType = event.getOption("attackerSecondaryType")
+                .flatMap(acie -> acie.getValue())
+                .map(v -> v.asString())
+                .flatMap(Type::fromString)
+                .orElse(Type.NONE);
+        int attackStat = (int) event.getOption("attackStat")
                 .orElseThrow()
                 .getValue()
                 .orElseThrow()
                 .asLong();
-        int defenseCS = event.getOption("defenseCS")
+        int attackCS = event.getOption("attackCS")
                 .flatMap(a -> a.getValue())
                 .map(a -> a.asLong())
                 .orElse(0L)
@@ -161,7 +208,7 @@ public class BattleRollCommand implements SlashCommandWrapper {
                 .map(a -> a.asBoolean())
                 .orElse(false);
 
-        var attacker = AttackParameters.builder()
+        return AttackParameters.builder()
                 .damageBase(db)
                 .attackType(attackType)
                 .attackerPrimaryType(attackerPrimaryType)
@@ -170,15 +217,5 @@ public class BattleRollCommand implements SlashCommandWrapper {
                 .attackCS(attackCS)
                 .criticalHit(crit)
                 .build();
-        var defender = DefenseParameters.builder()
-                .defenderPrimaryType(defenderPrimaryType)
-                .defenderSecondaryType(defenderSecondaryType)
-                .defenseStat(defenseStat)
-                .defenseCS(defenseCS)
-                .build();
-
-        var result = BattleRoll.doAttackRoll(attacker, defender);
-
-        return SlashCommands.replyEphemeral(event, result.toString());
     }
 }
@@ -429,7 +429,7 @@ public class BirthdaySlashCommand implements SlashCommandWrapper {
     }
 
     private void onUpdate(Snowflake userId) {
-        // todo: Make this more refined?
+        // Only the changed birthday's event is rebuilt, the rest come from the cache.
         this.cacheJob.updateCalendar();
     }
 }
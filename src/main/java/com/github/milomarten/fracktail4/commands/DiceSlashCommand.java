@@ -1,8 +1,12 @@
 package com.github.milomarten.fracktail4.commands;
 
+import com.github.milomarten.fracktail4.commands.dice.CompiledDiceExpression;
+import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
+import com.github.milomarten.fracktail4.commands.dice.DiceRandomProvider;
+import com.github.milomarten.fracktail4.commands.dice.DiceVolley;
 import com.github.milomarten.fracktail4.commands.dice.StringDiceExpressionEvaluator;
-import com.github.milomarten.fracktail4.commands.dice.Utils;
 import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
 import com.github.milomarten.fracktail4.platform.discord.slash.SlashCommandWrapper;
 import com.github.milomarten.fracktail4.platform.discord.utils.SlashCommands;
 import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
@@ -16,7 +20,10 @@ import reactor.core.publisher.Mono;
 @Component
 @RequiredArgsConstructor
 public class DiceSlashCommand implements SlashCommandWrapper {
+    private static final int MAX_ROLLS = 20;
+
     private final StringDiceExpressionEvaluator evaluator;
+    private final DiceRandomProvider randomProvider;
 
     @Override
     public ApplicationCommandRequest getRequest() {
@@ -25,7 +32,7 @@ public class DiceSlashCommand implements SlashCommandWrapper {
                 .description("Roll some dice! Use `syntax` as the expression for details.")
                 .addOption(ApplicationCommandOptionData.builder()
                         .name("expression")
-                        .description("The roll expression to evaluate.")
+                        .description("The roll expression to evaluate. Separate multiple expressions with ;")
                         .required(true)
                         .type(ApplicationCommandOption.Type.STRING.getValue())
                         .build())
@@ -42,6 +49,22 @@ public class DiceSlashCommand implements SlashCommandWrapper {
                         .required(false)
                         .type(ApplicationCommandOption.Type.BOOLEAN.getValue())
                         .build())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("repeat")
+                        .description("Roll the expression this many times")
+                        .required(false)
+                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
+                        .minValue(1d)
+                        .maxValue((double) MAX_ROLLS)
+                        .build())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("seed")
+                        .description("Replay an earlier roll, using the seed from its reply")
+                        .required(false)
+                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
+                        .minValue(0d)
+                        .maxValue((double) (DiceRandomProvider.MAX_SEED - 1))
+                        .build())
                 .build();
     }
 
@@ -61,12 +84,40 @@ public class DiceSlashCommand implements SlashCommandWrapper {
                 .flatMap(a -> a.getValue())
                 .map(a -> a.asBoolean())
                 .orElse(true);
+        var repeat = event.getOption("repeat")
+                .flatMap(a -> a.getValue())
+                .map(a -> (int) a.asLong())
+                .orElse(1);
+        var seed = event.getOption("seed")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asLong())
+                .orElseGet(randomProvider::newSeed);
+        var options = DiceEvaluatorOptions.builder()
+                .randomSource(randomProvider.seeded(seed))
+                .build();
         try {
-            var result = evaluator.evaluate(expression);
-            String str = String.format("```ansi\n%s = %s\n```", result.representation(), Utils.outputBigDecimal(result.value()));
+            var expressions = DiceVolley.split(expression);
+            if (expressions.length == 0) {
+                return SlashCommands.replyEphemeral(event, "No expression to roll");
+            }
+            if (expressions.length * repeat > MAX_ROLLS) {
+                return SlashCommands.replyEphemeral(event, "Too many rolls at once. The limit is " + MAX_ROLLS);
+            }
+            var plans = new CompiledDiceExpression[expressions.length];
+            for (int i = 0; i < expressions.length; i++) {
+                plans[i] = evaluator.compile(expressions[i]);
+            }
+            var labels = DiceVolley.labels(expressions, repeat);
+            var results = new TermEvaluationResult[plans.length * repeat];
+            for (int i = 0; i < plans.length; i++) {
+                for (int r = 0; r < repeat; r++) {
+                    results[i * repeat + r] = plans[i].evaluate(options);
+                }
+            }
 
-            return event.reply(commentOpt.map(comment -> comment + "\n" + str).orElse(str))
-                    .withEphemeral(!visible);
+            return DiceVolley.format(commentOpt, labels, results, seed)
+                    .<Mono<?>>map(reply -> event.reply(reply).withEphemeral(!visible))
+                    .orElseGet(() -> SlashCommands.replyEphemeral(event, "That roll is too long to show. Try rolling fewer dice at once."));
         } catch (ExpressionSyntaxError ex) {
             return SlashCommands.replyEphemeral(event, ex.getMessage());
         }
@@ -94,5 +145,8 @@ public class DiceSlashCommand implements SlashCommandWrapper {
             - #^: Round the number, rounding upward.
             - <#: Low-cap the number. If the number is less than #, # will be used instead.
             - >#: High-cap the number. If the number is greater than #, # will be used instead.
+            
+            To roll a volley at once, separate expressions with `;`, or use the `repeat` option to roll each expression several times. \
+            Each roll gets its own line, followed by the total of all of them.
             """;
 }
@@ -0,0 +1,143 @@
+package com.github.milomarten.fracktail4.commands;
+
+import com.github.milomarten.fracktail4.commands.dice.CompiledDiceExpression;
+import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
+import com.github.milomarten.fracktail4.commands.dice.DiceSimulator;
+import com.github.milomarten.fracktail4.commands.dice.SimulationResult;
+import com.github.milomarten.fracktail4.commands.dice.StringDiceExpressionEvaluator;
+import com.github.milomarten.fracktail4.commands.dice.Utils;
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.Distribution;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.NoExactStatisticsError;
+import com.github.milomarten.fracktail4.platform.discord.slash.SlashCommandWrapper;
+import com.github.milomarten.fracktail4.platform.discord.utils.SlashCommands;
+import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
+import discord4j.core.object.command.ApplicationCommandOption;
+import discord4j.discordjson.json.ApplicationCommandOptionData;
+import discord4j.discordjson.json.ApplicationCommandRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.StringJoiner;
+
+@Component
+@RequiredArgsConstructor
+public class DiceStatsSlashCommand implements SlashCommandWrapper {
+    private static final int[] PERCENTILES = {10, 25, 50, 75, 90};
+    private static final int SIMULATED_TRIALS = 1_000_000;
+    private static final DiceEvaluatorOptions OPTIONS = DiceEvaluatorOptions.builder().build();
+
+    private final StringDiceExpressionEvaluator evaluator;
+    private final DiceSimulator simulator;
+
+    @Override
+    public ApplicationCommandRequest getRequest() {
+        return ApplicationCommandRequest.builder()
+                .name("roll-stats")
+                .description("See the odds of a roll. Uses the same expressions as /roll.")
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("expression")
+                        .description("The roll expression to compute.")
+                        .required(true)
+                        .type(ApplicationCommandOption.Type.STRING.getValue())
+                        .build())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("target")
+                        .description("A DC or target number. Shows the chance of meeting or beating it.")
+                        .required(false)
+                        .type(ApplicationCommandOption.Type.INTEGER.getValue())
+                        .build())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("visible")
+                        .description("Whether these stats should be visible to all")
+                        .required(false)
+                        .type(ApplicationCommandOption.Type.BOOLEAN.getValue())
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Mono<?> handleEvent(ChatInputInteractionEvent event) {
+        var expression = event.getOption("expression")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asString())
+                .orElseThrow();
+        var targetOpt = event.getOption("target")
+                .flatMap(a -> a.getValue())
+                .map(a -> DiceNumber.of(a.asLong()));
+        var visible = event.getOption("visible")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asBoolean())
+                .orElse(false);
+        CompiledDiceExpression plan;
+        try {
+            plan = evaluator.compile(expression);
+        } catch (ExpressionSyntaxError ex) {
+            return SlashCommands.replyEphemeral(event, ex.getMessage());
+        }
+
+        try {
+            var distribution = plan.distribution(OPTIONS);
+            return event.reply(format(expression, describe(distribution, targetOpt)))
+                    .withEphemeral(!visible);
+        } catch (NoExactStatisticsError ex) {
+            // No exact answer, so fall back to simulating it, which can take a moment.
+            return event.deferReply().withEphemeral(!visible)
+                    .then(Mono.fromCallable(() -> simulator.simulate(plan, SIMULATED_TRIALS))
+                            .subscribeOn(Schedulers.boundedElastic()))
+                    .map(result -> format(expression, describe(result, targetOpt)))
+                    .onErrorResume(ExpressionSyntaxError.class, e -> Mono.just(e.getMessage()))
+                    .flatMap(event::createFollowup);
+        } catch (ExpressionSyntaxError ex) {
+            return SlashCommands.replyEphemeral(event, ex.getMessage());
+        }
+    }
+
+    private static String format(String expression, String stats) {
+        return "```\n" + expression + "\n" + stats + "\n```";
+    }
+
+    private static String describe(Distribution distribution, Optional<DiceNumber> targetOpt) {
+        var percentiles = new StringJoiner(" | ", "Percentiles: ", "");
+        for (int percentile : PERCENTILES) {
+            percentiles.add(percentile + "%: " + Utils.outputNumber(distribution.percentile(percentile / 100.0)));
+        }
+        var str = String.format("Min: %s | Max: %s | Mean: %.2f | Std Dev: %.2f\n%s",
+                Utils.outputNumber(distribution.min()),
+                Utils.outputNumber(distribution.max()),
+                distribution.mean(),
+                distribution.standardDeviation(),
+                percentiles);
+        return targetOpt
+                .map(target -> str + String.format("\nChance of %s or higher: %.2f%%",
+                        Utils.outputNumber(target), distribution.probabilityAtLeast(target) * 100))
+                .orElse(str);
+    }
+
+    private static String describe(SimulationResult result, Optional<DiceNumber> targetOpt) {
+        var percentiles = new StringJoiner(" | ", "Percentiles: ", "");
+        for (int percentile : PERCENTILES) {
+            percentiles.add(percentile + "%: " + Utils.outputNumber(result.percentile(percentile / 100.0)));
+        }
+        var meanInterval = result.meanConfidenceInterval(SimulationResult.Z_95);
+        var str = String.format("Simulated %,d rolls\nMin: %s | Max: %s | Mean: %.2f (95%% CI %.2f - %.2f) | Std Dev: %.2f\n%s",
+                result.trials(),
+                Utils.outputNumber(result.min()),
+                Utils.outputNumber(result.max()),
+                result.mean(), meanInterval.low(), meanInterval.high(),
+                result.standardDeviation(),
+                percentiles);
+        return targetOpt
+                .map(target -> {
+                    var interval = result.probabilityAtLeastInterval(target, SimulationResult.Z_95);
+                    return str + String.format("\nChance of %s or higher: %.2f%% (95%% CI %.2f%% - %.2f%%)",
+                            Utils.outputNumber(target), result.probabilityAtLeast(target) * 100,
+                            interval.low() * 100, interval.high() * 100);
+                })
+                .orElse(str);
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.milomarten.fracktail4.commands;
+
+import com.github.milomarten.fracktail4.commands.dnd.Type;
+import com.github.milomarten.fracktail4.commands.dnd.TypeMatchup;
+import com.github.milomarten.fracktail4.platform.discord.slash.SlashCommandWrapper;
+import com.github.milomarten.fracktail4.platform.discord.utils.SlashCommands;
+import discord4j.core.event.domain.interaction.ChatInputInteractionEvent;
+import discord4j.core.object.command.ApplicationCommandOption;
+import discord4j.discordjson.json.ApplicationCommandOptionData;
+import discord4j.discordjson.json.ApplicationCommandRequest;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+@Component
+public class WeaknessSlashCommand implements SlashCommandWrapper {
+    @Override
+    public ApplicationCommandRequest getRequest() {
+        return ApplicationCommandRequest.builder()
+                .name("weakness")
+                .description("See how effective every attacking type is against a defender")
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("primary")
+                        .description("The primary type of the defender")
+                        .type(ApplicationCommandOption.Type.STRING.getValue())
+                        .choices(Type.asChoices())
+                        .required(true)
+                        .build())
+                .addOption(ApplicationCommandOptionData.builder()
+                        .name("secondary")
+                        .description("The secondary type of the defender")
+                        .type(ApplicationCommandOption.Type.STRING.getValue())
+                        .choices(Type.asChoices())
+                        .required(false)
+                        .build())
+                .build();
+    }
+
+    @Override
+    public Mono<?> handleEvent(ChatInputInteractionEvent event) {
+        var primary = event.getOption("primary")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asString())
+                .flatMap(Type::fromString)
+                .orElse(Type.NONE);
+        var secondary = event.getOption("secondary")
+                .flatMap(a -> a.getValue())
+                .map(a -> a.asString())
+                .flatMap(Type::fromString)
+                .orElse(Type.NONE);
+
+        // Rankings are already sorted, so grouping in order keeps the most effective first.
+        var byMultiplier = TypeMatchup.rankAttackers(primary, secondary)
+                .stream()
+                .collect(Collectors.groupingBy(TypeMatchup.Effectiveness::multiplier, LinkedHashMap::new,
+                        Collectors.mapping(e -> e.attack().name(), Collectors.joining(", "))));
+
+        var reply = new StringJoiner("\n");
+        reply.add(secondary == Type.NONE ? primary.name() : primary.name() + "/" + secondary.name());
+        byMultiplier.forEach((multiplier, types) -> reply.add(format(multiplier) + "x: " + types));
+        return SlashCommands.replyEphemeral(event, reply.toString());
+    }
+
+    private static String format(BigDecimal multiplier) {
+        return multiplier.stripTrailingZeros().toPlainString();
+    }
+}
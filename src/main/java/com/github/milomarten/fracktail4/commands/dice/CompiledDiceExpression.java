@@ -0,0 +1,107 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.Distribution;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.Operation;
+import com.github.milomarten.fracktail4.commands.dice.term.Term;
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An immutable, reusable plan for evaluating a dice expression.
+ * The plan is a postfix program made up of constant terms and operations, as produced by
+ * {@link DiceExpressionCompiler}. Neither holds any per-roll state: each evaluation gets its own
+ * term stack, and the DICE operation builds a fresh DiceExpression every time it runs, so drop, keep,
+ * explode and friends only ever mutate the roll currently in progress.
+ * As a result, one plan can be evaluated any number of times, from any number of threads.
+ */
+public class CompiledDiceExpression {
+    private final List<Instruction> program;
+
+    CompiledDiceExpression(List<Instruction> program) {
+        this.program = List.copyOf(program);
+    }
+
+    /**
+     * Run the plan, performing all rolls, and returning a result.
+     * @param options The options to use when evaluating.
+     * @return A result of all the rolls.
+     * @throws ExpressionSyntaxError Some operator could not be applied to its terms.
+     */
+    public TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        Deque<Term> terms = new ArrayDeque<>();
+        for (var instruction : program) {
+            instruction.execute(terms, options);
+        }
+
+        if (terms.size() != 1) {
+            throw new ExpressionSyntaxError("Mismatched operations");
+        }
+
+        return terms.pop().evaluate(options);
+    }
+
+    /**
+     * Compute the exact distribution of results of the plan, without rolling.
+     * @param options The options to use when evaluating.
+     * @return The distribution of every possible result.
+     * @throws ExpressionSyntaxError Some operator could not be applied to its terms, or the
+     * expression is too complex to compute exactly.
+     */
+    public Distribution distribution(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        Deque<Term> terms = new ArrayDeque<>();
+        for (var instruction : program) {
+            instruction.executeDistribution(terms, options);
+        }
+
+        if (terms.size() != 1) {
+            throw new ExpressionSyntaxError("Mismatched operations");
+        }
+
+        return terms.pop().distribution(options);
+    }
+
+    /**
+     * A single step of the postfix program.
+     */
+    interface Instruction {
+        void execute(Deque<Term> terms, DiceEvaluatorOptions options);
+
+        void executeDistribution(Deque<Term> terms, DiceEvaluatorOptions options);
+    }
+
+    /**
+     * Push an immutable term onto the stack.
+     * @param term The term to push.
+     */
+    record PushTerm(Term term) implements Instruction {
+        @Override
+        public void execute(Deque<Term> terms, DiceEvaluatorOptions options) {
+            terms.push(term);
+        }
+
+        @Override
+        public void executeDistribution(Deque<Term> terms, DiceEvaluatorOptions options) {
+            terms.push(term);
+        }
+    }
+
+    /**
+     * Apply an operation to the top of the stack, pushing its result.
+     * @param operation The operation to apply.
+     */
+    record ApplyOperation(Operation operation) implements Instruction {
+        @Override
+        public void execute(Deque<Term> terms, DiceEvaluatorOptions options) {
+            terms.push(operation.evaluate(terms, options));
+        }
+
+        @Override
+        public void executeDistribution(Deque<Term> terms, DiceEvaluatorOptions options) {
+            terms.push(operation.evaluateDistribution(terms, options));
+        }
+    }
+}
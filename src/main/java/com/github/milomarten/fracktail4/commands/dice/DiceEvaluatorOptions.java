@@ -4,14 +4,27 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
+import java.util.random.RandomGenerator;
+
 @Data
 @AllArgsConstructor
 @Builder
 public class DiceEvaluatorOptions {
     @Builder.Default private OutputType outputType = OutputType.ANSI;
+    /**
+     * The source of randomness for all dice rolled.
+     * If null, dice are rolled with the evaluating thread's ThreadLocalRandom.
+     * @see DiceRandomProvider
+     */
+    @Builder.Default private RandomGenerator randomSource = null;
 
     public enum OutputType {
         PLAIN,
-        ANSI
+        ANSI,
+        /**
+         * Don't describe the rolls at all. Only the value of the result is meaningful.
+         * This is for callers that roll many times and never display the results, such as simulations.
+         */
+        NONE
     }
 }
@@ -0,0 +1,118 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.ConstantTerm;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.Operation;
+import com.github.milomarten.fracktail4.commands.dice.term.Term;
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A step-by-step compiler to turn tokenized infix notation into a reusable {@link CompiledDiceExpression}.
+ * This runs the same shunting-yard algorithm as {@link DiceExpressionEvaluator}, except operators
+ * are appended to a postfix program as they are popped, rather than evaluated. No dice are rolled
+ * while compiling. Like the evaluator, this is a one-time use compiler.
+ */
+public class DiceExpressionCompiler {
+    private final List<CompiledDiceExpression.Instruction> program = new ArrayList<>();
+    private final Deque<Operation> operators = new ArrayDeque<>();
+    /**
+     * The number of terms that will be on the stack when the program reaches this point.
+     * Tracking this lets structural errors be caught once, at compile time, rather than on every roll.
+     */
+    private int depth = 0;
+
+    /**
+     * Check if this compiler is expecting a term or an operator
+     * If `true`, a term is expected. Otherwise, an operator is expected.
+     * This is useful for deciding if positive/negative should be parsed, vs addition/subtraction.
+     */
+    @Getter private boolean expectingTerm = true; // Sentinel so simple "d20" works
+
+    /**
+     * Add a constant to the program.
+     * Only constants are accepted, as any term in the program is shared between all evaluations.
+     * @param term The term to add.
+     * @throws ExpressionSyntaxError Pushed two terms in a row
+     */
+    public void push(ConstantTerm term) {
+        if (!expectingTerm) {
+            throw new ExpressionSyntaxError("Was not expecting term " + term);
+        }
+        emit(term);
+        expectingTerm = false;
+    }
+
+    /**
+     * Add an operator to the program.
+     * Depending on the operators already on the stack, this may emit some of them to the program.
+     * @param operator The operator to apply.
+     * @throws ExpressionSyntaxError Pushed two operators in a row, or an emitted operator
+     * would not have enough terms to work with.
+     */
+    public void push(Operation operator) {
+        if (expectingTerm && operator != Operation.LEFT_PARENTHESIS) {
+            emit(operator.getImplicitLeftTerm());
+        }
+
+        if (operator == Operation.LEFT_PARENTHESIS) {
+            operators.push(Operation.LEFT_PARENTHESIS);
+        } else if (operator == Operation.RIGHT_PARENTHESIS) {
+            while (!operators.isEmpty() &&
+                    operators.peek() != Operation.LEFT_PARENTHESIS) {
+                emit(operators.pop());
+            }
+            if (operators.peek() != Operation.LEFT_PARENTHESIS) {
+                throw new ExpressionSyntaxError("Mismatched parenthesis");
+            }
+            operators.pop();
+        } else {
+            while (!operators.isEmpty() &&
+                    operators.peek() != Operation.LEFT_PARENTHESIS &&
+                    operators.peek().getPriority() <= operator.getPriority()) {
+                emit(operators.pop());
+            }
+            operators.push(operator);
+        }
+
+        expectingTerm = operator.expectTermAfter();
+    }
+
+    /**
+     * Indicate that the compilation should finish.
+     * All operators remaining on the stack and popped one by one and emitted.
+     * By the end, the program MUST leave exactly 1 term, or an ExpressionSyntaxError will be thrown.
+     * @return The compiled plan.
+     */
+    public CompiledDiceExpression finish() {
+        while (!operators.isEmpty()) {
+            emit(operators.pop());
+        }
+
+        if (depth != 1) {
+            throw new ExpressionSyntaxError("Mismatched operations");
+        }
+
+        return new CompiledDiceExpression(program);
+    }
+
+    private void emit(Term term) {
+        program.add(new CompiledDiceExpression.PushTerm(term));
+        depth++;
+    }
+
+    private void emit(Operation operation) {
+        if (operation == Operation.LEFT_PARENTHESIS) {
+            throw new ExpressionSyntaxError("Mismatched parenthesis");
+        }
+        if (depth < operation.getNumberOfTerms()) {
+            throw new ExpressionSyntaxError("Not enough terms for operation " + operation.getSymbol());
+        }
+        program.add(new CompiledDiceExpression.ApplyOperation(operation));
+        depth = depth - operation.getNumberOfTerms() + 1;
+    }
+}
@@ -0,0 +1,90 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.ConstantTerm;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.Operation;
+
+import java.math.BigDecimal;
+
+/**
+ * Splits an expression into numbers and operators, working directly over its characters.
+ * Whole numbers are accumulated straight into a long, so the common case never builds an intermediate
+ * String or BigDecimal. Only numbers with a decimal point, or too many digits for a long, are handed to BigDecimal.
+ * Operators are found with a lookup table, see {@link Operation#findOperation(char)}.
+ */
+class DiceExpressionLexer {
+    /**
+     * Any number with at most this many digits is guaranteed to fit in a long.
+     */
+    private static final int MAX_LONG_DIGITS = 18;
+
+    private final CharSequence input;
+    private int position = 0;
+
+    DiceExpressionLexer(CharSequence input) {
+        this.input = input;
+    }
+
+    /**
+     * Skip past any whitespace, and check if there is anything left to read.
+     * @return True, if there are more tokens.
+     */
+    boolean hasNext() {
+        while (position < input.length() && Character.isWhitespace(input.charAt(position))) {
+            position++;
+        }
+        return position < input.length();
+    }
+
+    /**
+     * Check if the next token is a number.
+     * A + or - is the sign of a number when a term is expected, and an operator otherwise.
+     * @param expectingTerm True, if the next token should be a term.
+     * @return True, if the next token is a number.
+     */
+    boolean isNumberNext(boolean expectingTerm) {
+        char c = input.charAt(position);
+        return isDigit(c) || ((c == '+' || c == '-') && expectingTerm);
+    }
+
+    Operation nextOperation() throws ExpressionSyntaxError {
+        return Operation.findOperation(input.charAt(position++));
+    }
+
+    ConstantTerm nextNumber() throws ExpressionSyntaxError {
+        int start = position;
+        boolean negative = input.charAt(position) == '-';
+        if (!isDigit(input.charAt(position))) {
+            position++; // Skip the sign
+        }
+
+        long value = 0;
+        int digits = 0;
+        boolean decimal = false;
+        for (; position < input.length(); position++) {
+            char c = input.charAt(position);
+            if (isDigit(c)) {
+                value = value * 10 + (c - '0');
+                digits++;
+            } else if (c == '.') {
+                decimal = true;
+            } else {
+                break;
+            }
+        }
+
+        if (decimal || digits == 0 || digits > MAX_LONG_DIGITS) {
+            var text = input.subSequence(start, position).toString();
+            try {
+                return ConstantTerm.of(new BigDecimal(text));
+            } catch (NumberFormatException ex) {
+                throw new ExpressionSyntaxError("Unknown number " + text);
+            }
+        }
+        return ConstantTerm.of(negative ? -value : value);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Hands out the random number generators used to roll dice.
+ * Each thread gets its own generator of the configured algorithm, so concurrent rolls never contend
+ * on a shared seed, and nothing is constructed per roll. Rolls can instead be given an explicit seed,
+ * which makes them repeatable: the same seed and expression always roll the same dice.
+ * The algorithm is set with the `dice.random.algorithm` property.
+ */
+@Component
+public class DiceRandomProvider {
+    /**
+     * Seeds are kept below 2^53, so they survive being passed through Discord's integer options, which are doubles.
+     */
+    public static final long MAX_SEED = 1L << 53;
+
+    @Getter private final Algorithm algorithm;
+    private final RandomGeneratorFactory<RandomGenerator> factory;
+    private final ThreadLocal<RandomGenerator> generators;
+
+    public DiceRandomProvider() {
+        this(Algorithm.L64X128);
+    }
+
+    @Autowired
+    public DiceRandomProvider(@Value("${dice.random.algorithm:L64X128}") Algorithm algorithm) {
+        this.algorithm = algorithm;
+        this.factory = RandomGeneratorFactory.of(algorithm.getName());
+        this.generators = ThreadLocal.withInitial(factory::create);
+    }
+
+    /**
+     * Get the generator for the current thread.
+     * The generator should not be handed to other threads.
+     * @return The current thread's generator.
+     */
+    public RandomGenerator current() {
+        return generators.get();
+    }
+
+    /**
+     * Create a new generator with a specific seed.
+     * @param seed The seed to use.
+     * @return A generator, which always produces the same sequence for the same seed.
+     */
+    public RandomGenerator seeded(long seed) {
+        return factory.create(seed);
+    }
+
+    /**
+     * Pick a new seed at random.
+     * @return A seed, between 0 (inclusive) and MAX_SEED (exclusive).
+     */
+    public long newSeed() {
+        return current().nextLong(MAX_SEED);
+    }
+
+    @RequiredArgsConstructor
+    @Getter
+    public enum Algorithm {
+        L64X128("L64X128MixRandom"),
+        XOSHIRO("Xoshiro256PlusPlus"),
+        SPLITTABLE("SplittableRandom");
+
+        private final String name;
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Estimates the distribution of an expression by evaluating it many times.
+ * This is for expressions whose exact distribution can't be computed, such as exploding dice that are also kept.
+ * The expression is compiled once, and trials are split across a fork-join pool. Every time the work is split,
+ * the SplittableRandom is split too, so each worker rolls from its own independent stream. As the splits only depend
+ * on the number of trials, the same seed always gives the same results, no matter how the work was scheduled.
+ * Trials are evaluated with OutputType.NONE, so no representation is built for any of them.
+ */
+@Component
+@RequiredArgsConstructor
+public class DiceSimulator {
+    /**
+     * Work is split until each task has at most this many trials.
+     */
+    private static final int TRIALS_PER_TASK = 8192;
+
+    private final ForkJoinPool pool;
+
+    public DiceSimulator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public SimulationResult simulate(CompiledDiceExpression plan, int trials) throws ExpressionSyntaxError {
+        return simulate(plan, trials, new SplittableRandom());
+    }
+
+    /**
+     * Evaluate a plan many times, and total the results.
+     * @param plan The plan to evaluate.
+     * @param trials The number of times to evaluate it.
+     * @param seed The seed for all random rolls.
+     * @return The results of every trial.
+     * @throws ExpressionSyntaxError Some trial could not be evaluated.
+     */
+    public SimulationResult simulate(CompiledDiceExpression plan, int trials, long seed) throws ExpressionSyntaxError {
+        return simulate(plan, trials, new SplittableRandom(seed));
+    }
+
+    private SimulationResult simulate(CompiledDiceExpression plan, int trials, SplittableRandom random) {
+        if (trials <= 0) {
+            throw new ExpressionSyntaxError("Number of trials must be positive");
+        }
+        return pool.invoke(new Trials(plan, trials, random)).toResult();
+    }
+
+    @RequiredArgsConstructor
+    private static class Trials extends RecursiveTask<SimulationTally> {
+        private final CompiledDiceExpression plan;
+        private final int trials;
+        private final SplittableRandom random;
+
+        @Override
+        protected SimulationTally compute() {
+            if (trials <= TRIALS_PER_TASK) {
+                var options = DiceEvaluatorOptions.builder()
+                        .outputType(DiceEvaluatorOptions.OutputType.NONE)
+                        .randomSource(random)
+                        .build();
+                var tally = new SimulationTally();
+                for (int i = 0; i < trials; i++) {
+                    tally.add(plan.evaluate(options).number());
+                }
+                return tally;
+            }
+
+            var half = trials / 2;
+            var left = new Trials(plan, half, random.split());
+            left.fork();
+            var tally = new Trials(plan, trials - half, random).compute();
+            tally.merge(left.join());
+            return tally;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
+import lombok.experimental.UtilityClass;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Helpers for rolling several expressions at once, and laying them out in a single message.
+ */
+@UtilityClass
+public class DiceVolley {
+    public static final int MAX_MESSAGE_LENGTH = 2000;
+    static final int MAX_LABEL_LENGTH = 40;
+
+    /**
+     * Split a volley into its expressions.
+     * @param expression The expressions, separated by ;
+     * @return Each non-blank expression, without surrounding whitespace.
+     */
+    public String[] split(String expression) {
+        return Arrays.stream(StringUtils.split(expression, ';'))
+                .filter(StringUtils::isNotBlank)
+                .map(String::strip)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Label each roll in a volley.
+     * The first roll of each expression is labeled with the expression, shortened if it is long.
+     * If expressions are repeated, each repeat is labeled with its number, so long expressions aren't written out again.
+     * @param expressions The expressions being rolled.
+     * @param repeat The number of times each expression is rolled.
+     * @return One label per roll, with each expression's repeats next to each other.
+     */
+    public String[] labels(String[] expressions, int repeat) {
+        var labels = new String[expressions.length * repeat];
+        for (int i = 0; i < expressions.length; i++) {
+            var label = StringUtils.abbreviate(expressions[i], MAX_LABEL_LENGTH);
+            for (int r = 0; r < repeat; r++) {
+                var idx = i * repeat + r;
+                if (repeat == 1) {
+                    labels[idx] = label;
+                } else if (r == 0) {
+                    labels[idx] = label + " #1";
+                } else {
+                    labels[idx] = "#" + (r + 1);
+                }
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Lay out a volley of rolls as a single message, which fits in a Discord message.
+     * Each roll's breakdown is shown if there's room. If not, only the values are shown.
+     * @return The message, or empty if even the values don't fit.
+     */
+    public Optional<String> format(Optional<String> commentOpt, String[] labels, TermEvaluationResult[] results, long seed) {
+        var reply = format(commentOpt, labels, results, seed, true);
+        if (reply.length() > MAX_MESSAGE_LENGTH) {
+            reply = format(commentOpt, labels, results, seed, false);
+        }
+        return reply.length() > MAX_MESSAGE_LENGTH ? Optional.empty() : Optional.of(reply);
+    }
+
+    /**
+     * Lay out a volley of rolls as a single message.
+     * A single roll is shown on its own. Multiple rolls get one line each, labeled by expression, followed by a grand total.
+     * @param breakdowns If false, only the value of each roll is shown, which keeps large volleys under the message limit.
+     */
+    String format(Optional<String> commentOpt, String[] labels, TermEvaluationResult[] results, long seed, boolean breakdowns) {
+        var sb = new StringBuilder();
+        commentOpt.ifPresent(comment -> sb.append(comment).append('\n'));
+        sb.append("```ansi\n");
+        if (results.length == 1) {
+            if (breakdowns) {
+                results[0].breakdown().renderTo(sb);
+            } else {
+                sb.append(labels[0]);
+            }
+            sb.append(" = ").append(Utils.outputNumber(results[0].number())).append('\n');
+        } else {
+            DiceNumber total = DiceNumber.of(0);
+            for (int i = 0; i < results.length; i++) {
+                sb.append(labels[i]).append(": ");
+                if (breakdowns) {
+                    results[i].breakdown().renderTo(sb);
+                    sb.append(" = ");
+                }
+                sb.append(Utils.outputNumber(results[i].number())).append('\n');
+                total = total.add(results[i].number());
+            }
+            sb.append("Total: ").append(Utils.outputNumber(total)).append('\n');
+        }
+        sb.append("```");
+        sb.append("Seed: `").append(seed).append('`');
+        return sb.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * The results of simulating an expression many times.
+ * @param trials The number of times the expression was evaluated.
+ * @param mean The mean of all results.
+ * @param standardDeviation The standard deviation of all results.
+ * @param histogram The number of times each result came up, sorted from lowest to highest.
+ */
+public record SimulationResult(long trials, double mean, double standardDeviation, NavigableMap<DiceNumber, Long> histogram) {
+    /**
+     * The z-score for a 95% confidence interval.
+     */
+    public static final double Z_95 = 1.959963984540054;
+
+    /**
+     * The standard error of the mean.
+     * The smaller this is, the closer the simulated mean likely is to the true mean.
+     * @return The standard error.
+     */
+    public double standardError() {
+        return standardDeviation / Math.sqrt(trials);
+    }
+
+    /**
+     * Get a confidence interval for the true mean.
+     * @param zScore The z-score of the interval. Use Z_95 for a 95% interval.
+     * @return The interval.
+     */
+    public Interval meanConfidenceInterval(double zScore) {
+        var margin = zScore * standardError();
+        return new Interval(mean - margin, mean + margin);
+    }
+
+    /**
+     * Get a confidence interval for the chance of meeting or beating some value.
+     * This uses the Wilson score interval, which stays sensible for chances near 0% or 100%.
+     * @param value The value to meet.
+     * @param zScore The z-score of the interval. Use Z_95 for a 95% interval.
+     * @return The interval, between 0 and 1.
+     */
+    public Interval probabilityAtLeastInterval(DiceNumber value, double zScore) {
+        var p = probabilityAtLeast(value);
+        var z2 = zScore * zScore;
+        var denominator = 1 + z2 / trials;
+        var center = (p + z2 / (2.0 * trials)) / denominator;
+        var margin = zScore * Math.sqrt(p * (1 - p) / trials + z2 / (4.0 * trials * trials)) / denominator;
+        return new Interval(Math.max(0, center - margin), Math.min(1, center + margin));
+    }
+
+    public DiceNumber min() {
+        return histogram.firstKey();
+    }
+
+    public DiceNumber max() {
+        return histogram.lastKey();
+    }
+
+    /**
+     * Get the fraction of trials that met or beat some value.
+     * @param value The value to meet.
+     * @return The fraction of trials, between 0 and 1.
+     */
+    public double probabilityAtLeast(DiceNumber value) {
+        long count = 0;
+        for (var entry : histogram.tailMap(value, true).values()) {
+            count += entry;
+        }
+        return (double) count / trials;
+    }
+
+    /**
+     * Get a percentile of the simulated results.
+     * @param fraction The percentile, between 0 and 1. 0.5 is the median.
+     * @return The lowest result such that at least that fraction of trials were less than or equal to it.
+     */
+    public DiceNumber percentile(double fraction) {
+        var target = fraction * trials;
+        long cumulative = 0;
+        for (Map.Entry<DiceNumber, Long> entry : histogram.entrySet()) {
+            cumulative += entry.getValue();
+            if (cumulative >= target) {
+                return entry.getKey();
+            }
+        }
+        return max();
+    }
+
+    public record Interval(double low, double high) {}
+}
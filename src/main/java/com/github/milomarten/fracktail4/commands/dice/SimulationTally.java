@@ -0,0 +1,107 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A running count of simulation results, kept by a single worker.
+ * Whole numbers are counted in a primitive array that grows to fit, so the common case does no boxing.
+ * Anything else (decimals, or values too far apart to fit in an array) falls back to a map.
+ * Mean and variance are tracked with Welford's algorithm, and merged with Chan's parallel formula.
+ */
+class SimulationTally {
+    private static final int MAX_DENSE = 1 << 20;
+
+    private long count;
+    private double mean;
+    private double m2;
+
+    private long denseMin;
+    private long[] dense = new long[0];
+    private final Map<DiceNumber, Long> others = new HashMap<>();
+
+    void add(DiceNumber value) {
+        count++;
+        var x = value.doubleValue();
+        var delta = x - mean;
+        mean += delta / count;
+        m2 += delta * (x - mean);
+
+        addToHistogram(value, 1);
+    }
+
+    void merge(SimulationTally other) {
+        if (other.count == 0) return;
+        if (this.count == 0) {
+            this.mean = other.mean;
+            this.m2 = other.m2;
+        } else {
+            var total = this.count + other.count;
+            var delta = other.mean - this.mean;
+            this.m2 += other.m2 + delta * delta * ((double) this.count * other.count / total);
+            this.mean += delta * other.count / total;
+        }
+        this.count += other.count;
+
+        for (int i = 0; i < other.dense.length; i++) {
+            if (other.dense[i] > 0) {
+                addToHistogram(DiceNumber.of(other.denseMin + i), other.dense[i]);
+            }
+        }
+        other.others.forEach((value, times) -> addToHistogram(value, times));
+    }
+
+    SimulationResult toResult() {
+        var histogram = new TreeMap<DiceNumber, Long>(DiceNumber::compareTo);
+        for (int i = 0; i < dense.length; i++) {
+            if (dense[i] > 0) {
+                histogram.put(DiceNumber.of(denseMin + i), dense[i]);
+            }
+        }
+        others.forEach((value, times) -> histogram.merge(value, times, Long::sum));
+        var variance = count > 1 ? m2 / (count - 1) : 0;
+        return new SimulationResult(count, mean, Math.sqrt(variance), Collections.unmodifiableNavigableMap(histogram));
+    }
+
+    private void addToHistogram(DiceNumber value, long times) {
+        if (value instanceof DiceNumber.Integral i && fitDense(i.value())) {
+            dense[(int) (i.value() - denseMin)] += times;
+        } else {
+            others.merge(value, times, Long::sum);
+        }
+    }
+
+    /**
+     * Grow the dense array to fit a value, if it can be done without going over the size limit.
+     * @return True if the value now fits.
+     */
+    private boolean fitDense(long value) {
+        if (dense.length == 0) {
+            denseMin = value;
+            dense = new long[16];
+            return true;
+        }
+        if (value >= denseMin && value < denseMin + dense.length) {
+            return true;
+        }
+        var newMin = Math.min(denseMin, value);
+        var newMax = Math.max(denseMin + dense.length - 1, value);
+        if (newMax - newMin + 1 > MAX_DENSE) {
+            return false;
+        }
+        // Leave some slack on the side that grew, so nearby values don't trigger another copy.
+        var length = (int) Math.min(MAX_DENSE, Math.max(dense.length * 2L, newMax - newMin + 1));
+        if (newMin < denseMin) {
+            newMin = newMax - length + 1;
+        }
+        var grown = new long[length];
+        System.arraycopy(dense, 0, grown, (int) (denseMin - newMin), dense.length);
+        dense = grown;
+        denseMin = newMin;
+        return true;
+    }
+}
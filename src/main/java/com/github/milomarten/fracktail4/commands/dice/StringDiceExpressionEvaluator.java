@@ -1,59 +1,140 @@
 package com.github.milomarten.fracktail4.commands.dice;
 
 import com.github.milomarten.fracktail4.commands.dice.term.*;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
-import java.math.BigDecimal;
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Evaluates dice expressions written as strings.
+ * Expressions are compiled into a {@link CompiledDiceExpression} once, and the plan is kept in a
+ * bounded LRU cache keyed by the expression text, so repeat rolls of the same expression skip
+ * parsing entirely. Cache and compile statistics are published as metrics.
+ */
 @Component
-public class StringDiceExpressionEvaluator {
-    public TermEvaluationResult evaluate(String expression) throws ExpressionSyntaxError {
-        return evaluate(expression, DiceEvaluatorOptions.builder().build());
+public class StringDiceExpressionEvaluator implements MeterBinder {
+    public static final int DEFAULT_CACHE_SIZE = 256;
+
+    private final Map<String, CompiledDiceExpression> cache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder compiles = new LongAdder();
+    private final LongAdder compileNanos = new LongAdder();
+
+    public StringDiceExpressionEvaluator() {
+        this(DEFAULT_CACHE_SIZE);
     }
 
-    public TermEvaluationResult evaluate(String expression, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
-        var evaluator = new DiceExpressionEvaluator(options);
-        var iterator = new StringCharacterIterator(expression);
-
-        for(char c = iterator.first(); c != CharacterIterator.DONE; ) {
-            if (Character.isWhitespace(c)) {
-                c = iterator.next(); // Drop it
-            } else if (isNumber(c) || ((c == '+' || c == '-') && evaluator.isExpectingTerm())) {
-                var value = tryParseNumberFromIterator(iterator);
-                evaluator.push(ConstantTerm.of(value));
-                c = iterator.current();
-            } else {
-                var operator = Operation.findOperation(c);
-                evaluator.push(operator);
-                c = iterator.next();
+    public StringDiceExpressionEvaluator(int cacheSize) {
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompiledDiceExpression> eldest) {
+                return size() > cacheSize;
             }
-        }
+        });
+    }
 
-        return evaluator.finish();
+    public TermEvaluationResult evaluate(String expression) throws ExpressionSyntaxError {
+        return evaluate(expression, DiceEvaluatorOptions.builder().build());
     }
 
-    private boolean isNumber(char c) {
-        return  c >= '0' && c <= '9';
+    public TermEvaluationResult evaluate(String expression, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        return compile(expression).evaluate(options);
     }
 
-    private boolean isNumberRelatedCharacter(char c) {
-        return c == '.';
+    public Distribution distribution(String expression) throws ExpressionSyntaxError {
+        return distribution(expression, DiceEvaluatorOptions.builder().build());
     }
 
-    private BigDecimal tryParseNumberFromIterator(CharacterIterator iter) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(iter.current());
+    /**
+     * Compute the exact distribution of results of an expression, without rolling.
+     * @param expression The expression to compute.
+     * @param options The options to use when evaluating.
+     * @return The distribution of every possible result.
+     * @throws ExpressionSyntaxError The expression is malformed, or too complex to compute exactly.
+     */
+    public Distribution distribution(String expression, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        return compile(expression).distribution(options);
+    }
 
-        while (iter.next() != CharacterIterator.DONE &&
-                (isNumber(iter.current()) || isNumberRelatedCharacter(iter.current()))) {
-            sb.append(iter.current());
+    /**
+     * Get the compiled plan for an expression, compiling it if it is not already cached.
+     * Expressions that fail to compile are not cached.
+     * @param expression The expression to compile.
+     * @return The plan for the expression.
+     * @throws ExpressionSyntaxError The expression is malformed.
+     */
+    public CompiledDiceExpression compile(String expression) throws ExpressionSyntaxError {
+        var key = normalize(expression);
+        var plan = cache.get(key);
+        if (plan != null) {
+            hits.increment();
+            return plan;
         }
+        misses.increment();
+
+        var start = System.nanoTime();
         try {
-            return new BigDecimal(sb.toString());
-        } catch (NumberFormatException ex) {
-            throw new ExpressionSyntaxError("Unknown number " + sb);
+            plan = doCompile(key);
+        } finally {
+            compiles.increment();
+            compileNanos.add(System.nanoTime() - start);
+        }
+        cache.put(key, plan);
+        return plan;
+    }
+
+    /**
+     * Collapse whitespace, so trivially different spellings of an expression share a plan.
+     * Runs of whitespace are kept as a single space, rather than removed, since they still separate tokens.
+     */
+    private static String normalize(String expression) {
+        return StringUtils.normalizeSpace(expression);
+    }
+
+    private CompiledDiceExpression doCompile(String expression) {
+        var compiler = new DiceExpressionCompiler();
+        var lexer = new DiceExpressionLexer(expression);
+
+        while (lexer.hasNext()) {
+            if (lexer.isNumberNext(compiler.isExpectingTerm())) {
+                compiler.push(lexer.nextNumber());
+            } else {
+                compiler.push(lexer.nextOperation());
+            }
         }
+
+        return compiler.finish();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("dice.plan.cache.gets", hits, LongAdder::sum)
+                .tag("result", "hit")
+                .description("Number of dice expressions whose compiled plan was already cached")
+                .register(registry);
+        FunctionCounter.builder("dice.plan.cache.gets", misses, LongAdder::sum)
+                .tag("result", "miss")
+                .description("Number of dice expressions that had to be compiled")
+                .register(registry);
+        Gauge.builder("dice.plan.cache.size", cache, Map::size)
+                .description("Number of compiled plans currently cached")
+                .register(registry);
+        FunctionTimer.builder("dice.plan.compile", this,
+                        e -> e.compiles.sum(),
+                        e -> e.compileNanos.sum(),
+                        TimeUnit.NANOSECONDS)
+                .description("Time spent compiling dice expressions")
+                .register(registry);
     }
 }
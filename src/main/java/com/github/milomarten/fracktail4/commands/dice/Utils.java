@@ -1,6 +1,7 @@
 package com.github.milomarten.fracktail4.commands.dice;
 
 import com.github.milomarten.fracktail4.commands.dice.term.DiceExpression;
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
 import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
 import com.github.milomarten.fracktail4.commands.dice.term.Status;
 import lombok.experimental.UtilityClass;
@@ -33,10 +34,34 @@ public class Utils {
         return bd.toPlainString();
     }
 
+    public static String outputNumber(DiceNumber number) {
+        if (number instanceof DiceNumber.Integral i) {
+            return String.valueOf(i.value());
+        }
+        return outputBigDecimal(number.toBigDecimal());
+    }
+
+    public static void appendNumber(StringBuilder sb, DiceNumber number) {
+        if (number instanceof DiceNumber.Integral i) {
+            sb.append(i.value());
+        } else {
+            sb.append(outputBigDecimal(number.toBigDecimal()));
+        }
+    }
+
     public static String outputDiceRoll(int value, Status status, DiceEvaluatorOptions options) {
         return switch (options.getOutputType()) {
             case PLAIN -> String.valueOf(value);
             case ANSI -> status.format(value);
+            case NONE -> "";
         };
     }
+
+    public static void appendDiceRoll(StringBuilder sb, int value, Status status, DiceEvaluatorOptions options) {
+        switch (options.getOutputType()) {
+            case PLAIN -> sb.append(value);
+            case ANSI -> status.appendTo(sb, value);
+            case NONE -> {}
+        }
+    }
 }
@@ -1,16 +1,17 @@
 package com.github.milomarten.fracktail4.commands.dice.term;
 
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
-import com.github.milomarten.fracktail4.commands.dice.Utils;
-
-import java.math.BigDecimal;
 
 /**
  * A basic term that has a constant value and expression
- * @param value The value of the term0
+ * @param value The value of the term
  * @param expression The expression to describe the term
  */
-public record AccumulationTerm(BigDecimal value, String expression) implements Term {
+public record AccumulationTerm(DiceNumber value, Representation expression) implements Term {
+    public AccumulationTerm(DiceNumber value, String expression) {
+        this(value, Representation.of(expression));
+    }
+
     @Override
     public TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
         return new TermEvaluationResult(value, expression);
@@ -5,7 +5,7 @@ import com.github.milomarten.fracktail4.commands.dice.Utils;
 
 import java.math.BigDecimal;
 
-public record ConstantTerm(BigDecimal bd) implements Term {
+public record ConstantTerm(DiceNumber value) implements Term {
     /**
      * Create a term from a double.
      * The expression is the value of the double, eliminating all trailing zeroes.
@@ -13,16 +13,16 @@ public record ConstantTerm(BigDecimal bd) implements Term {
      * @return The term holding that double.
      */
     public static ConstantTerm of(double value) {
-        return new ConstantTerm(BigDecimal.valueOf(value));
+        return of(BigDecimal.valueOf(value));
     }
 
     /**
-     * Create a term from an integer.
-     * @param value The int to wrap.
-     * @return The term holding the int.
+     * Create a term from a whole number.
+     * @param value The number to wrap.
+     * @return The term holding the number.
      */
-    public static ConstantTerm of(int value) {
-        return new ConstantTerm(BigDecimal.valueOf(value));
+    public static ConstantTerm of(long value) {
+        return new ConstantTerm(DiceNumber.of(value));
     }
 
     /**
@@ -32,11 +32,11 @@ public record ConstantTerm(BigDecimal bd) implements Term {
      * @return The term holding the BigDecimal.
      */
     public static ConstantTerm of(BigDecimal value) {
-        return new ConstantTerm(value);
+        return new ConstantTerm(DiceNumber.of(value));
     }
 
     @Override
     public TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
-        return new TermEvaluationResult(this.bd, Utils.outputBigDecimal(this.bd));
+        return new TermEvaluationResult(this.value, sb -> Utils.appendNumber(sb, this.value));
     }
 }
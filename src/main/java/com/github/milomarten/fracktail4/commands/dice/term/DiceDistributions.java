@@ -0,0 +1,274 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Computes the exact distribution of a DiceExpression.
+ * Each step mirrors the order of operations in {@link DiceExpression#evaluate}:
+ * 1. Every dice has the same face distribution, which rerolls reshape (rerolls happen per dice, so they stay independent).
+ * 2. Explosions turn each dice into a chain, whose total is computed from the deepest explosion up.
+ * 3. Without drops or keeps, the total is the sum of independent dice, which is a repeated convolution.
+ * 4. With drops or keeps, the kept dice are a window of the sorted rolls, which is computed by assigning
+ * dice to each face value in turn, and tracking how many of them land in the window.
+ */
+@UtilityClass
+class DiceDistributions {
+    private static final int MAX_PASSES = 100;
+    /**
+     * Explosions this unlikely have no effect on a double, so the chain can safely stop there.
+     */
+    private static final double NEGLIGIBLE = 1e-18;
+    private static final long MAX_WORK = 500_000_000L;
+
+    Distribution of(DiceExpression expression) {
+        var numberOfDice = Math.abs(expression.getNumberOfDice());
+        var faces = rerolled(faces(expression.getNumberOfSides()), expression.getRerollAt(), expression.isInfiniteReroll());
+        IntUnaryOperator score = expression.getTotalingStrategy()::score;
+
+        // The window of sorted dice that count towards the total, after dropping and keeping.
+        int lowestKept = Math.min(expression.getNumberToDrop(), numberOfDice);
+        int highestKept = numberOfDice;
+        if (highestKept - lowestKept > expression.getNumberToKeep()) {
+            if (expression.isKeepLowest()) {
+                highestKept = lowestKept + expression.getNumberToKeep();
+            } else {
+                lowestKept = highestKept - expression.getNumberToKeep();
+            }
+        }
+
+        Distribution.Dense total;
+        if (explodes(expression)) {
+            var maxDice = (long) numberOfDice * (passes(expression.isInfiniteExplode()) + 1);
+            if (expression.getNumberToDrop() > 0 || expression.getNumberToKeep() < maxDice) {
+                throw new NoExactStatisticsError("Statistics can't combine exploding dice with drop or keep");
+            }
+            total = Distribution.power(chain(expression, faces, score), numberOfDice);
+        } else if (lowestKept == 0 && highestKept == numberOfDice) {
+            total = Distribution.power(scores(faces, score, v -> true), numberOfDice);
+        } else {
+            total = keptTotal(faces, score, numberOfDice, lowestKept, highestKept);
+        }
+
+        return expression.getNumberOfDice() < 0 ? total.negate() : total;
+    }
+
+    /**
+     * The chance of rolling each face, indexed by face value.
+     */
+    private double[] faces(int numberOfSides) {
+        if (numberOfSides == 0) {
+            return new double[]{1};
+        }
+        var faces = new double[numberOfSides + 1];
+        for (int i = 1; i <= numberOfSides; i++) {
+            faces[i] = 1.0 / numberOfSides;
+        }
+        return faces;
+    }
+
+    /**
+     * A rerolled dice keeps its first face above the threshold, or its last face if it runs out of passes.
+     * So, if q is the chance of rerolling, a face above the threshold comes up with (1 + q + ... + q^passes)
+     * times its normal chance, and a face at or below it only if every pass rerolled, q^passes times.
+     */
+    private double[] rerolled(double[] faces, int rerollAt, boolean infinite) {
+        double chanceOfReroll = 0;
+        for (int face = 0; face < faces.length && face <= rerollAt; face++) {
+            chanceOfReroll += faces[face];
+        }
+        if (chanceOfReroll == 0) {
+            return faces;
+        }
+
+        var passes = passes(infinite);
+        double keptAbove = 0;
+        for (int i = 0; i <= passes; i++) {
+            keptAbove += Math.pow(chanceOfReroll, i);
+        }
+        var keptAtOrBelow = Math.pow(chanceOfReroll, passes);
+
+        var result = new double[faces.length];
+        for (int face = 0; face < faces.length; face++) {
+            result[face] = faces[face] * (face <= rerollAt ? keptAtOrBelow : keptAbove);
+        }
+        return result;
+    }
+
+    private boolean explodes(DiceExpression expression) {
+        return expression.getExplodeAt() <= Math.max(expression.getNumberOfSides(), 0);
+    }
+
+    /**
+     * The distribution of one dice, plus every dice its explosions add.
+     * The first dice uses the rerolled faces, while every dice added by an explosion is a fresh, plain roll.
+     */
+    private Distribution.Dense chain(DiceExpression expression, double[] firstFaces, IntUnaryOperator score) {
+        var faces = faces(expression.getNumberOfSides());
+        int explodeAt = expression.getExplodeAt();
+        IntPredicate safe = face -> face < explodeAt;
+        IntPredicate explodes = face -> face >= explodeAt;
+
+        double chanceOfExplode = 0;
+        for (int face = Math.max(explodeAt, 0); face < faces.length; face++) {
+            chanceOfExplode += faces[face];
+        }
+        var depth = passes(expression.isInfiniteExplode());
+        if (chanceOfExplode < 1) {
+            depth = Math.min(depth, Math.max(1, (int) Math.ceil(Math.log(NEGLIGIBLE) / Math.log(chanceOfExplode))));
+        }
+
+        var safeScores = scores(faces, score, safe);
+        var explodeScores = scores(faces, score, explodes);
+        // The deepest dice can't explode again, so it is just a normal roll.
+        var tail = scores(faces, score, face -> true);
+        for (int level = depth - 1; level >= 1; level--) {
+            tail = plus(safeScores, Distribution.convolve(explodeScores, tail));
+        }
+        var firstSafe = scores(firstFaces, score, safe);
+        var firstExplodes = scores(firstFaces, score, explodes);
+        return firstExplodes == null ? firstSafe : plus(firstSafe, Distribution.convolve(firstExplodes, tail));
+    }
+
+    /**
+     * Get the (possibly partial) distribution of a single dice's score, only counting some faces.
+     * @return The distribution, or null if none of the faces are possible.
+     */
+    private Distribution.Dense scores(double[] faces, IntUnaryOperator score, IntPredicate include) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int face = 0; face < faces.length; face++) {
+            if (faces[face] > 0 && include.test(face)) {
+                min = Math.min(min, score.applyAsInt(face));
+                max = Math.max(max, score.applyAsInt(face));
+            }
+        }
+        if (min > max) {
+            return null;
+        }
+
+        var pmf = new double[max - min + 1];
+        for (int face = 0; face < faces.length; face++) {
+            if (faces[face] > 0 && include.test(face)) {
+                pmf[score.applyAsInt(face) - min] += faces[face];
+            }
+        }
+        return new Distribution.Dense(min, pmf);
+    }
+
+    private Distribution.Dense plus(Distribution.Dense a, Distribution.Dense b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        return a.plus(b);
+    }
+
+    /**
+     * Compute the total of the dice between two ranks, once sorted from lowest to highest.
+     * Faces are visited from lowest to highest. At each face, some number of the dice that are still unassigned
+     * land on it; given that every unassigned dice is at least this face, that number is binomial. Those dice take
+     * the next ranks, and the ones inside the window add to the total.
+     * State is the number of dice assigned so far. Below the window, the total is always 0, so a single probability
+     * is enough. Inside the window, the state tracks a distribution of the total. Past the window, the total can't
+     * change anymore, so the state goes straight into the result.
+     */
+    private Distribution.Dense keptTotal(double[] faces, IntUnaryOperator score, int numberOfDice, int lowestKept, int highestKept) {
+        int window = highestKept - lowestKept;
+        if (window == 0) {
+            return new Distribution.Dense(0, new double[]{1});
+        }
+
+        int minScore = Integer.MAX_VALUE;
+        int maxScore = Integer.MIN_VALUE;
+        int possibleFaces = 0;
+        for (int face = 0; face < faces.length; face++) {
+            if (faces[face] > 0) {
+                minScore = Math.min(minScore, score.applyAsInt(face));
+                maxScore = Math.max(maxScore, score.applyAsInt(face));
+                possibleFaces++;
+            }
+        }
+        long lowestTotal = Math.min(0, (long) window * minScore);
+        long highestTotal = Math.max(0, (long) window * maxScore);
+        int width = (int) (highestTotal - lowestTotal + 1);
+        if ((long) possibleFaces * window * numberOfDice * width > MAX_WORK) {
+            throw new NoExactStatisticsError("Expression is too complex to compute exact statistics");
+        }
+        int zero = (int) -lowestTotal;
+
+        var below = new double[lowestKept];
+        var inside = new double[window][width];
+        var result = new double[width];
+        if (lowestKept > 0) {
+            below[0] = 1;
+        } else {
+            inside[0][zero] = 1;
+        }
+
+        var tail = new double[faces.length + 1];
+        for (int face = faces.length - 1; face >= 0; face--) {
+            tail[face] = tail[face + 1] + faces[face];
+        }
+        int lastFace = faces.length - 1;
+        while (faces[lastFace] == 0) lastFace--;
+
+        for (int face = 0; face <= lastFace; face++) {
+            if (faces[face] == 0) continue;
+            var chance = face == lastFace ? 1 : Math.min(1, faces[face] / tail[face]);
+            var faceScore = score.applyAsInt(face);
+
+            // Highest first, so dice moved up aren't moved again for the same face.
+            for (int assigned = highestKept - 1; assigned >= 0; assigned--) {
+                var binomial = binomial(numberOfDice - assigned, chance);
+                if (assigned < lowestKept) {
+                    var p = below[assigned];
+                    if (p == 0) continue;
+                    for (int count = 1; count < binomial.length; count++) {
+                        var next = assigned + count;
+                        var weight = p * binomial[count];
+                        if (next < lowestKept) {
+                            below[next] += weight;
+                        } else {
+                            var kept = Math.min(next, highestKept) - lowestKept;
+                            var target = next < highestKept ? inside[next - lowestKept] : result;
+                            target[zero + kept * faceScore] += weight;
+                        }
+                    }
+                    below[assigned] = p * binomial[0];
+                } else {
+                    var totals = inside[assigned - lowestKept];
+                    for (int count = 1; count < binomial.length; count++) {
+                        var next = assigned + count;
+                        var shift = (Math.min(next, highestKept) - assigned) * faceScore;
+                        var target = next < highestKept ? inside[next - lowestKept] : result;
+                        for (int i = 0; i < width; i++) {
+                            if (totals[i] != 0) {
+                                target[i + shift] += totals[i] * binomial[count];
+                            }
+                        }
+                    }
+                    for (int i = 0; i < width; i++) {
+                        totals[i] *= binomial[0];
+                    }
+                }
+            }
+        }
+
+        return new Distribution.Dense(lowestTotal, result);
+    }
+
+    private double[] binomial(int trials, double chance) {
+        var result = new double[trials + 1];
+        double coefficient = 1;
+        for (int k = 0; k <= trials; k++) {
+            result[k] = coefficient * Math.pow(chance, k) * Math.pow(1 - chance, trials - k);
+            coefficient = coefficient * (trials - k) / (k + 1);
+        }
+        return result;
+    }
+
+    private int passes(boolean infinite) {
+        return infinite ? MAX_PASSES : 1;
+    }
+}
@@ -1,18 +1,13 @@
 package com.github.milomarten.fracktail4.commands.dice.term;
 
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
-import lombok.AllArgsConstructor;
+import com.github.milomarten.fracktail4.commands.dice.Utils;
 import lombok.Builder;
 import lombok.Data;
-import lombok.RequiredArgsConstructor;
 
-import java.math.BigDecimal;
-import java.util.*;
-import java.util.function.Supplier;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.random.RandomGenerator;
-import java.util.stream.IntStream;
-import java.util.stream.LongStream;
-import java.util.stream.Stream;
 
 import static com.github.milomarten.fracktail4.commands.dice.Utils.checkPositive;
 import static com.github.milomarten.fracktail4.commands.dice.Utils.checkRange;
@@ -92,9 +87,9 @@ public class DiceExpression implements Term {
     @Builder.Default DiceTotalingStrategy totalingStrategy = SumDiceStrategy.INSTANCE;
     /**
      * The source of randomness for the dice rolls.
-     * By default, uses a new instance of java.util.Random.
+     * By default, this is null, and the evaluating thread's ThreadLocalRandom is used.
      */
-    @Builder.Default RandomGenerator randomSource = new Random();
+    RandomGenerator randomSource;
 
     @Override
     public TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
@@ -105,21 +100,22 @@ public class DiceExpression implements Term {
         var normalizedNumberOfDice = Math.abs(numberOfDice);
 
         // 1. Roll Dice
-        var results = new Results(doNTimes(normalizedNumberOfDice, this::roll));
+        var results = new Results(normalizedNumberOfDice, numberOfSides);
+        rollNTimes(normalizedNumberOfDice, results);
         // a - Reroll low ones
         for (int i = 0; i < 100; i++) {
             var rerolls = results.discountLowerThan(this.rerollAt);
-            doNTimes(rerolls, () -> results.addResult(roll()));
+            rollNTimes(rerolls, results);
             if (!infiniteReroll || rerolls == 0) {
                 break;
             }
         }
 
         // b - Explode high ones
-        var previousExplodes = 0L;
+        var previousExplodes = 0;
         for (int i = 0; i < 100; i++) {
             var explodes = results.returnCountHigherThan(this.explodeAt) - previousExplodes;
-            doNTimes(explodes, () -> results.addResult(roll()));
+            rollNTimes(explodes, results);
             if (!infiniteExplode || explodes == 0) {
                 break;
             }
@@ -138,33 +134,37 @@ public class DiceExpression implements Term {
             }
         }
 
-        var finalResults = totalingStrategy.compile(results, options);
+        var finalResults = options.getOutputType() == DiceEvaluatorOptions.OutputType.NONE ?
+                totalingStrategy.total(results) :
+                totalingStrategy.compile(results, options);
         if (negateAtTheEnd) {
-            finalResults = finalResults.map(BigDecimal::negate, s -> "-" + s);
+            finalResults = new TermEvaluationResult(finalResults.number().negate(), Representation.prefix("-", finalResults.breakdown()));
         }
         return finalResults;
     }
 
-    private Result roll() {
-        if (numberOfSides == 0) { return new Result(0); }
-        var roll = randomSource.nextInt(numberOfSides) + 1;
-        var result = new Result(roll);
-        if (roll == 1) {
-            result.setStatus(Status.CRITICAL_FAIL);
-        } else if (roll == numberOfSides) {
-            result.setStatus(Status.CRITICAL_SUCCESS);
-        }
-        return result;
-    }
-
-    private static void doNTimes(long number, Runnable action) {
-        if (number == 0) return;
-        LongStream.range(0, number).forEach(i -> action.run());
+    @Override
+    public Distribution distribution(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        validate();
+        return DiceDistributions.of(this);
     }
 
-    private static <T> List<T> doNTimes(int number, Supplier<T> action) {
-        if (number == 0) return List.of();
-        return IntStream.range(0, number).mapToObj(i -> action.get()).toList();
+    private void rollNTimes(int number, Results results) {
+        var random = randomSource == null ? ThreadLocalRandom.current() : randomSource;
+        for (int i = 0; i < number; i++) {
+            if (numberOfSides == 0) {
+                results.addResult(0, Status.NEUTRAL);
+                continue;
+            }
+            var roll = random.nextInt(numberOfSides) + 1;
+            if (roll == 1) {
+                results.addResult(roll, Status.CRITICAL_FAIL);
+            } else if (roll == numberOfSides) {
+                results.addResult(roll, Status.CRITICAL_SUCCESS);
+            } else {
+                results.addResult(roll, Status.NEUTRAL);
+            }
+        }
     }
 
     private void validate() {
@@ -175,70 +175,131 @@ public class DiceExpression implements Term {
         this.totalingStrategy.validate();
     }
 
-    @Data
-    @RequiredArgsConstructor
-    @AllArgsConstructor
-    public static class Result {
-        private final int value;
-        private boolean discounted;
-        private Status status = Status.NEUTRAL;
+    /**
+     * The dice rolled for a single evaluation.
+     * Each roll is packed into one int: the face value in the low bits, followed by its Status and whether it
+     * was discounted. Rerolls and explosions append to the end of the buffer, and drops and keeps mark rolls
+     * as discounted in place, so rolling never boxes or sorts the individual dice.
+     */
+    public static class Results {
+        private static final int VALUE_MASK = 0xFFFF;
+        private static final int STATUS_SHIFT = 16;
+        private static final int STATUS_MASK = 0xFF;
+        private static final int DISCOUNTED = 1 << 24;
+        private static final Status[] STATUSES = Status.values();
+
+        private final int maxFace;
+        private int[] rolls;
+        private int size;
+        private int lengthNotDiscounted;
+        private int[] counts;
 
-        public String toPlainString() {
-            return String.valueOf(value);
+        /**
+         * Create an empty set of results.
+         * @param expectedSize The number of rolls to make room for. More rolls can be added past this.
+         * @param maxFace The highest face value that will be added.
+         */
+        Results(int expectedSize, int maxFace) {
+            this.rolls = new int[Math.max(expectedSize, 1)];
+            this.maxFace = maxFace;
         }
 
-        public String toAnsiString() {
-            return status.format(this.value);
+        /**
+         * Get the number of dice rolled, including discounted ones.
+         * @return The number of dice rolled.
+         */
+        public int size() {
+            return size;
         }
 
-        public String toString(DiceEvaluatorOptions options) {
-            return switch (options.getOutputType()) {
-                case PLAIN -> this.toPlainString();
-                case ANSI -> this.toAnsiString();
-            };
+        public int getValue(int index) {
+            return rolls[index] & VALUE_MASK;
         }
-    }
 
-    public static class Results {
-        private final List<Result> results;
-        private int lengthNotDiscounted;
+        public Status getStatus(int index) {
+            return STATUSES[(rolls[index] >>> STATUS_SHIFT) & STATUS_MASK];
+        }
 
-        public Results(List<Result> results) {
-            this.results = new ArrayList<>(results);
-            this.lengthNotDiscounted = (int) results.stream()
-                    .filter(r -> !r.discounted)
-                    .count();
+        public boolean isDiscounted(int index) {
+            return (rolls[index] & DISCOUNTED) != 0;
         }
 
-        public Stream<Result> getAllResults() {
-            return results.stream();
+        /**
+         * Append a single roll to a StringBuilder, as the options dictate.
+         * @param sb The StringBuilder to append to.
+         * @param index The index of the roll.
+         * @param options The options, which determine the format.
+         */
+        public void renderTo(StringBuilder sb, int index, DiceEvaluatorOptions options) {
+            Utils.appendDiceRoll(sb, getValue(index), getStatus(index), options);
         }
 
-        private Stream<Result> getNonDiscountedResults() {
-            return results.stream()
-                    .filter(r -> !r.discounted);
+        private void discount(int index) {
+            rolls[index] |= DISCOUNTED;
+            lengthNotDiscounted--;
         }
 
         public void dropLowestDice(int n) {
-            if (n == 0) return;
-            getNonDiscountedResults()
-                    .sorted(Comparator.comparing(Result::getValue))
-                    .limit(n)
-                    .forEach(r -> {
-                        r.discounted = true;
-                        this.lengthNotDiscounted--;
-                    });
+            drop(n, false);
         }
 
         public void dropHighestDice(int n) {
-            if (n == 0) return;
-            getNonDiscountedResults()
-                    .sorted(Comparator.comparing(Result::getValue).reversed())
-                    .limit(n)
-                    .forEach(r -> {
-                        r.discounted = true;
-                        this.lengthNotDiscounted--;
-                    });
+            drop(n, true);
+        }
+
+        /**
+         * Discount the n lowest (or highest) dice that haven't been discounted yet.
+         * When several dice tie, the earliest rolled are discounted first.
+         * If n is much smaller than the spread of faces, the dice are picked out one at a time. Otherwise,
+         * the faces are counted to find the cutoff face, and a single pass discounts everything past it.
+         */
+        private void drop(int n, boolean highest) {
+            if (n <= 0) return;
+            if (n >= lengthNotDiscounted) {
+                for (int i = 0; i < size; i++) {
+                    if (!isDiscounted(i)) discount(i);
+                }
+                return;
+            }
+
+            if ((long) n * lengthNotDiscounted <= maxFace) {
+                for (int dropped = 0; dropped < n; dropped++) {
+                    int pick = -1;
+                    for (int i = 0; i < size; i++) {
+                        if (isDiscounted(i)) continue;
+                        if (pick < 0 || (highest ? getValue(i) > getValue(pick) : getValue(i) < getValue(pick))) {
+                            pick = i;
+                        }
+                    }
+                    discount(pick);
+                }
+                return;
+            }
+
+            if (counts == null) {
+                counts = new int[maxFace + 1];
+            }
+            for (int i = 0; i < size; i++) {
+                if (!isDiscounted(i)) counts[getValue(i)]++;
+            }
+            // Find the face where the cutoff lands, and how many dice with that face still need dropping.
+            int cutoff = highest ? maxFace : 0;
+            int remaining = n;
+            while (counts[cutoff] < remaining) {
+                remaining -= counts[cutoff];
+                cutoff += highest ? -1 : 1;
+            }
+            for (int i = 0; i < size; i++) {
+                if (isDiscounted(i)) continue;
+                var value = getValue(i);
+                counts[value] = 0;
+                if (highest ? value > cutoff : value < cutoff) {
+                    discount(i);
+                } else if (value == cutoff && remaining > 0) {
+                    discount(i);
+                    remaining--;
+                }
+            }
         }
 
         /**
@@ -246,12 +307,15 @@ public class DiceExpression implements Term {
          * @param n The maximum roll to discount
          * @return The number found
          */
-        public long discountLowerThan(int n) {
-            var toReroll = getNonDiscountedResults()
-                    .filter(r -> r.value <= n)
-                    .toList();
-            toReroll.forEach(r -> r.discounted = true);
-            return toReroll.size();
+        public int discountLowerThan(int n) {
+            var found = 0;
+            for (int i = 0; i < size; i++) {
+                if (!isDiscounted(i) && getValue(i) <= n) {
+                    discount(i);
+                    found++;
+                }
+            }
+            return found;
         }
 
         /**
@@ -259,18 +323,26 @@ public class DiceExpression implements Term {
          * @param n The minimum roll to count
          * @return The number found
          */
-        public long returnCountHigherThan(int n) {
-            return getNonDiscountedResults()
-                    .filter(r -> r.value >= n)
-                    .count();
+        public int returnCountHigherThan(int n) {
+            var found = 0;
+            for (int i = 0; i < size; i++) {
+                if (!isDiscounted(i) && getValue(i) >= n) {
+                    found++;
+                }
+            }
+            return found;
         }
 
         /**
          * Add a new roll to this result
-         * @param roll The roll to add
+         * @param value The face rolled
+         * @param status The status of the roll
          */
-        public void addResult(Result roll) {
-            this.results.add(roll);
+        public void addResult(int value, Status status) {
+            if (size == rolls.length) {
+                rolls = Arrays.copyOf(rolls, size * 2);
+            }
+            rolls[size++] = value | (status.ordinal() << STATUS_SHIFT);
             this.lengthNotDiscounted++;
         }
     }
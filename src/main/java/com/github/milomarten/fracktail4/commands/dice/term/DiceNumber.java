@@ -0,0 +1,258 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * A number produced while evaluating an expression.
+ * Numbers come in two tiers. Whole numbers are kept as a primitive long (Integral), since
+ * the vast majority of rolls never see a fraction. Once a division or a decimal constant is
+ * involved, the number is promoted to a BigDecimal (Decimal), and arithmetic continues
+ * exactly as it did before.
+ * Results that come back to a whole number (for example, after a ceiling) are demoted back to Integral.
+ */
+public sealed interface DiceNumber permits DiceNumber.Integral, DiceNumber.Decimal {
+    /**
+     * Get the number as a BigDecimal.
+     * @return The BigDecimal equivalent of this number.
+     */
+    BigDecimal toBigDecimal();
+
+    /**
+     * Get the sign of the number.
+     * @return -1, 0, or 1, if this number is negative, zero, or positive.
+     */
+    int signum();
+
+    /**
+     * Get the value as a double.
+     * This may lose precision, so should only be used for statistics and display.
+     * @return The nearest double to this number.
+     */
+    double doubleValue();
+
+    /**
+     * Get the value as an int.
+     * Rounding is okay; everything after the decimal point is discarded. However,
+     * if the resulting number is larger than an int, an exception is thrown instead.
+     * @return The value, as an integer.
+     * @throws ExpressionSyntaxError The number is too big.
+     */
+    int intValueExact() throws ExpressionSyntaxError;
+
+    DiceNumber negate();
+
+    /**
+     * Round this number up to the nearest whole number.
+     * @return The rounded number.
+     */
+    DiceNumber ceil();
+
+    static DiceNumber of(long value) {
+        return Integral.of(value);
+    }
+
+    /**
+     * Wrap a BigDecimal.
+     * BigDecimals with no decimal places that fit in a long are demoted to the Integral tier.
+     * @param value The BigDecimal to wrap.
+     * @return The number.
+     */
+    static DiceNumber of(BigDecimal value) {
+        if (value.scale() == 0 && value.unscaledValue().bitLength() < Long.SIZE) {
+            return Integral.of(value.longValue());
+        }
+        return new Decimal(value);
+    }
+
+    default DiceNumber add(DiceNumber other) {
+        if (this instanceof Integral a && other instanceof Integral b) {
+            try {
+                return Integral.of(Math.addExact(a.value, b.value));
+            } catch (ArithmeticException ex) {
+                // Fall through to BigDecimal
+            }
+        }
+        return of(this.toBigDecimal().add(other.toBigDecimal()));
+    }
+
+    default DiceNumber subtract(DiceNumber other) {
+        if (this instanceof Integral a && other instanceof Integral b) {
+            try {
+                return Integral.of(Math.subtractExact(a.value, b.value));
+            } catch (ArithmeticException ex) {
+                // Fall through to BigDecimal
+            }
+        }
+        return of(this.toBigDecimal().subtract(other.toBigDecimal()));
+    }
+
+    default DiceNumber multiply(DiceNumber other) {
+        if (this instanceof Integral a && other instanceof Integral b) {
+            try {
+                return Integral.of(Math.multiplyExact(a.value, b.value));
+            } catch (ArithmeticException ex) {
+                throw new ExpressionSyntaxError("Multiplying large values. Numbers shouldn't exceed 18 digits.");
+            }
+        }
+        var a = this.toBigDecimal();
+        var b = other.toBigDecimal();
+        // Validation Step - Don't go too high!
+        if (getDigitCount(a) + getDigitCount(b) > 18) {
+            throw new ExpressionSyntaxError("Multiplying large values. Numbers shouldn't exceed 18 digits.");
+        }
+        return of(a.multiply(b));
+    }
+
+    default DiceNumber divide(DiceNumber other) {
+        // Validation Step - Don't go too low.
+        if (other.signum() == 0) {
+            throw new ExpressionSyntaxError("Division by Zero");
+        }
+        var a = this.toBigDecimal();
+        var b = other.toBigDecimal();
+        if (precisionScore(a) - precisionScore(b) > 18) {
+            throw new ExpressionSyntaxError("Dividing large values. Numbers shouldn't exceed 18 digits.");
+        }
+        return of(a.divide(b, MathContext.DECIMAL128));
+    }
+
+    default int compareTo(DiceNumber other) {
+        if (this instanceof Integral a && other instanceof Integral b) {
+            return Long.compare(a.value, b.value);
+        }
+        return this.toBigDecimal().compareTo(other.toBigDecimal());
+    }
+
+    private static int getDigitCount(BigDecimal value) {
+        return value.signum() == 0 ? 1 : value.precision() - value.scale();
+    }
+
+    private static int precisionScore(BigDecimal value) {
+        if (value.signum() == 0) {
+            return 1;
+        } else {
+            var digitsToTheLeft = value.precision() - value.scale();
+            if (digitsToTheLeft == 0) {
+                return -value.scale();
+            } else {
+                return digitsToTheLeft;
+            }
+        }
+    }
+
+    /**
+     * A whole number, stored as a primitive.
+     * @param value The value of the number.
+     */
+    record Integral(long value) implements DiceNumber {
+        private static final int CACHE_LOW = -128;
+        private static final int CACHE_HIGH = 1024;
+        private static final Integral[] CACHE = new Integral[CACHE_HIGH - CACHE_LOW + 1];
+        static {
+            for (int i = 0; i < CACHE.length; i++) {
+                CACHE[i] = new Integral(i + CACHE_LOW);
+            }
+        }
+
+        /**
+         * Get the Integral for a long, reusing a shared instance for small values.
+         * @param value The value to wrap.
+         * @return The Integral.
+         */
+        public static Integral of(long value) {
+            if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+                return CACHE[(int) value - CACHE_LOW];
+            }
+            return new Integral(value);
+        }
+
+        @Override
+        public BigDecimal toBigDecimal() {
+            return BigDecimal.valueOf(value);
+        }
+
+        @Override
+        public int signum() {
+            return Long.signum(value);
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public int intValueExact() throws ExpressionSyntaxError {
+            try {
+                return Math.toIntExact(value);
+            } catch (ArithmeticException ex) {
+                throw new ExpressionSyntaxError(ex.getMessage());
+            }
+        }
+
+        @Override
+        public DiceNumber negate() {
+            if (value == Long.MIN_VALUE) {
+                return DiceNumber.of(toBigDecimal().negate());
+            }
+            return Integral.of(-value);
+        }
+
+        @Override
+        public DiceNumber ceil() {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * A number with decimal places, or one too big for a long.
+     * @param value The value of the number.
+     */
+    record Decimal(BigDecimal value) implements DiceNumber {
+        @Override
+        public BigDecimal toBigDecimal() {
+            return value;
+        }
+
+        @Override
+        public int signum() {
+            return value.signum();
+        }
+
+        @Override
+        public double doubleValue() {
+            return value.doubleValue();
+        }
+
+        @Override
+        public int intValueExact() throws ExpressionSyntaxError {
+            try {
+                return value.toBigInteger().intValueExact();
+            } catch (ArithmeticException ex) {
+                throw new ExpressionSyntaxError(ex.getMessage());
+            }
+        }
+
+        @Override
+        public DiceNumber negate() {
+            return DiceNumber.of(value.negate());
+        }
+
+        @Override
+        public DiceNumber ceil() {
+            return DiceNumber.of(value.setScale(0, RoundingMode.CEILING));
+        }
+
+        @Override
+        public String toString() {
+            return value.toPlainString();
+        }
+    }
+}
@@ -13,6 +13,30 @@ public interface DiceTotalingStrategy {
      */
     TermEvaluationResult compile(DiceExpression.Results results, DiceEvaluatorOptions options);
 
+    /**
+     * Get how much a single, non-discounted dice adds to the total.
+     * This is used to compute exact statistics, without rolling.
+     * @param face The face value of the dice.
+     * @return The amount that dice adds to the final result.
+     */
+    int score(int face);
+
+    /**
+     * Total the dice rolls, without describing them.
+     * This is used when the representation will never be displayed, so the per-dice strings aren't built.
+     * @param results The results to total
+     * @return The final results, with an empty representation.
+     */
+    default TermEvaluationResult total(DiceExpression.Results results) {
+        long total = 0;
+        for (int i = 0; i < results.size(); i++) {
+            if (!results.isDiscounted(i)) {
+                total += score(results.getValue(i));
+            }
+        }
+        return new TermEvaluationResult(total, Representation.EMPTY);
+    }
+
     /**
      * Validate this strategy.
      * By default, this does nothing.
@@ -0,0 +1,471 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.BinaryOperator;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * The exact probability distribution of a term.
+ * Like DiceNumber, distributions come in two tiers. A distribution over whole numbers (Dense) is stored
+ * as a primitive array of probabilities, starting from its minimum value, so adding dice together is a
+ * convolution of two arrays. Once a fraction is involved, the distribution falls back to a sorted list
+ * of outcomes (Sparse), which are combined pair by pair using the usual DiceNumber arithmetic.
+ */
+public abstract sealed class Distribution permits Distribution.Dense, Distribution.Sparse {
+    /**
+     * The most array operations a single convolution is allowed to take.
+     */
+    private static final long MAX_WORK = 500_000_000L;
+    /**
+     * The most pairs of outcomes a non-convolution operation is allowed to combine.
+     */
+    private static final long MAX_PAIRS = 1_000_000L;
+
+    /**
+     * Create a distribution which always has the same value.
+     * @param value The value.
+     * @return The distribution.
+     */
+    public static Distribution constant(DiceNumber value) {
+        if (value instanceof DiceNumber.Integral i) {
+            return new Dense(i.value(), new double[]{1});
+        }
+        return new Sparse(new DiceNumber[]{value}, new double[]{1});
+    }
+
+    /**
+     * Get the number of outcomes stored in this distribution.
+     * Some outcomes may have a probability of zero.
+     * @return The number of outcomes.
+     */
+    public abstract int size();
+
+    /**
+     * Get the outcome at some index. Outcomes are sorted from lowest to highest.
+     * @param index The index of the outcome.
+     * @return The value of the outcome.
+     */
+    public abstract DiceNumber valueAt(int index);
+
+    /**
+     * Get the probability of the outcome at some index.
+     * @param index The index of the outcome.
+     * @return The probability of that outcome, between 0 and 1.
+     */
+    public abstract double probabilityAt(int index);
+
+    public abstract Distribution negate();
+
+    /**
+     * Round every outcome up to the nearest whole number.
+     * @return The rounded distribution.
+     */
+    public abstract Distribution ceil();
+
+    /**
+     * Run an action on every outcome that can actually happen, from lowest to highest.
+     * @param action The action to run, given the value and probability of the outcome.
+     */
+    public void forEach(ObjDoubleConsumer<DiceNumber> action) {
+        for (int i = 0; i < size(); i++) {
+            var p = probabilityAt(i);
+            if (p > 0) {
+                action.accept(valueAt(i), p);
+            }
+        }
+    }
+
+    public DiceNumber min() {
+        return valueAt(0);
+    }
+
+    public DiceNumber max() {
+        return valueAt(size() - 1);
+    }
+
+    /**
+     * Get the value of this distribution, if it only has one possible outcome.
+     * @return The only value, or empty if there is more than one outcome.
+     */
+    public Optional<DiceNumber> asConstant() {
+        return size() == 1 ? Optional.of(valueAt(0)) : Optional.empty();
+    }
+
+    public double mean() {
+        double mean = 0;
+        for (int i = 0; i < size(); i++) {
+            mean += valueAt(i).doubleValue() * probabilityAt(i);
+        }
+        return mean;
+    }
+
+    public double standardDeviation() {
+        var mean = mean();
+        double variance = 0;
+        for (int i = 0; i < size(); i++) {
+            var diff = valueAt(i).doubleValue() - mean;
+            variance += diff * diff * probabilityAt(i);
+        }
+        return Math.sqrt(variance);
+    }
+
+    /**
+     * Get the probability of an exact outcome.
+     * @param value The value to look for.
+     * @return The probability of rolling exactly that value.
+     */
+    public double probabilityOf(DiceNumber value) {
+        double total = 0;
+        for (int i = 0; i < size(); i++) {
+            if (valueAt(i).compareTo(value) == 0) {
+                total += probabilityAt(i);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Get the probability of meeting or beating some value, such as a DC.
+     * @param value The value to meet.
+     * @return The probability of rolling the value or higher.
+     */
+    public double probabilityAtLeast(DiceNumber value) {
+        double total = 0;
+        for (int i = size() - 1; i >= 0 && valueAt(i).compareTo(value) >= 0; i--) {
+            total += probabilityAt(i);
+        }
+        return Math.min(total, 1);
+    }
+
+    /**
+     * Get a percentile of this distribution.
+     * @param fraction The percentile, between 0 and 1. 0.5 is the median.
+     * @return The lowest value such that at least that fraction of rolls are less than or equal to it.
+     */
+    public DiceNumber percentile(double fraction) {
+        double cumulative = 0;
+        for (int i = 0; i < size(); i++) {
+            cumulative += probabilityAt(i);
+            // A little tolerance, so rounding error doesn't push a percentile up a value.
+            if (probabilityAt(i) > 0 && cumulative >= fraction - 1e-12) {
+                return valueAt(i);
+            }
+        }
+        return max();
+    }
+
+    public Distribution add(Distribution other) {
+        if (this instanceof Dense a && other instanceof Dense b) {
+            return convolve(a, b);
+        }
+        return combine(this, other, DiceNumber::add);
+    }
+
+    public Distribution subtract(Distribution other) {
+        if (this instanceof Dense a && other instanceof Dense b) {
+            return convolve(a, b.negate());
+        }
+        return combine(this, other, DiceNumber::subtract);
+    }
+
+    public Distribution multiply(Distribution other) {
+        return combine(this, other, DiceNumber::multiply);
+    }
+
+    public Distribution divide(Distribution other) {
+        return combine(this, other, DiceNumber::divide);
+    }
+
+    public Distribution capLow(Distribution lowerBound) {
+        return combine(this, lowerBound, (a, b) -> a.compareTo(b) < 0 ? b : a);
+    }
+
+    public Distribution capHigh(Distribution upperBound) {
+        return combine(this, upperBound, (a, b) -> a.compareTo(b) > 0 ? b : a);
+    }
+
+    /**
+     * Add a whole-number distribution to itself several times.
+     * This is the distribution of the sum of n independent rolls.
+     * @param base The distribution to add.
+     * @param n The number of times to add it.
+     * @return The distribution of the sum.
+     */
+    static Dense power(Dense base, int n) {
+        if (n == 0) {
+            return new Dense(0, new double[]{1});
+        }
+        // Convolving with a distribution made of a few flat runs (like a single die) is linear, so just repeat it.
+        // Otherwise, squaring keeps the number of expensive convolutions down.
+        if (countRuns(base.pmf) <= 8) {
+            var result = base;
+            for (int i = 1; i < n; i++) {
+                result = convolve(result, base);
+            }
+            return result;
+        }
+        Dense result = null;
+        var square = base;
+        for (int remaining = n; remaining > 0; remaining >>= 1) {
+            if ((remaining & 1) == 1) {
+                result = result == null ? square : convolve(result, square);
+            }
+            if (remaining > 1) {
+                square = convolve(square, square);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compute the distribution of the sum of two independent whole-number distributions.
+     * Each input may be a partial (not summing to 1) distribution, in which case the output is too.
+     * @param a The first distribution.
+     * @param b The second distribution.
+     * @return The distribution of a + b.
+     * @throws ExpressionSyntaxError The convolution would take too long.
+     */
+    static Dense convolve(Dense a, Dense b) {
+        long n = a.pmf.length;
+        long m = b.pmf.length;
+        long direct = n * m;
+        long runsOfA = countRuns(a.pmf) * (n + m);
+        long runsOfB = countRuns(b.pmf) * (n + m);
+        long best = Math.min(direct, Math.min(runsOfA, runsOfB));
+        if (best > MAX_WORK) {
+            throw tooComplex();
+        }
+
+        double[] result;
+        if (best == runsOfB) {
+            result = convolveByRuns(a.pmf, b.pmf);
+        } else if (best == runsOfA) {
+            result = convolveByRuns(b.pmf, a.pmf);
+        } else {
+            result = convolveDirectly(a.pmf, b.pmf);
+        }
+        return new Dense(a.min + b.min, result);
+    }
+
+    private static double[] convolveDirectly(double[] a, double[] b) {
+        var result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) continue;
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += a[i] * b[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Convolve by splitting the kernel into runs of equal probability.
+     * Each run contributes a constant times a sliding window sum over the signal, which a prefix sum
+     * gives in constant time. A single die is one run, so rolling NdS costs O(N * N * S) rather than O(N * N * S * S).
+     */
+    private static double[] convolveByRuns(double[] signal, double[] kernel) {
+        // Sums are taken from whichever end is closer, so the tiny probabilities in the tails aren't lost to rounding.
+        var prefix = new double[signal.length + 1];
+        for (int i = 0; i < signal.length; i++) {
+            prefix[i + 1] = prefix[i] + signal[i];
+        }
+        var suffix = new double[signal.length + 1];
+        for (int i = signal.length - 1; i >= 0; i--) {
+            suffix[i] = suffix[i + 1] + signal[i];
+        }
+
+        var result = new double[signal.length + kernel.length - 1];
+        int start = 0;
+        while (start < kernel.length) {
+            var weight = kernel[start];
+            int end = start + 1;
+            while (end < kernel.length && kernel[end] == weight) {
+                end++;
+            }
+            if (weight != 0) {
+                for (int k = start; k < end - 1 + signal.length; k++) {
+                    var high = Math.min(k - start + 1, signal.length);
+                    var low = Math.max(k - end + 1, 0);
+                    var sum = prefix[high] <= suffix[low]
+                            ? prefix[high] - prefix[low]
+                            : suffix[low] - suffix[high];
+                    result[k] += weight * sum;
+                }
+            }
+            start = end;
+        }
+
+        // Subtracting sums can leave tiny negative probabilities behind.
+        for (int i = 0; i < result.length; i++) {
+            if (result[i] < 0) {
+                result[i] = 0;
+            }
+        }
+        return result;
+    }
+
+    private static long countRuns(double[] pmf) {
+        long runs = 0;
+        for (int i = 0; i < pmf.length; i++) {
+            if (pmf[i] != 0 && (i == 0 || pmf[i] != pmf[i - 1])) {
+                runs++;
+            }
+        }
+        return runs;
+    }
+
+    private static Distribution combine(Distribution a, Distribution b, BinaryOperator<DiceNumber> operator) {
+        if ((long) a.size() * b.size() > MAX_PAIRS) {
+            throw tooComplex();
+        }
+        NavigableMap<DiceNumber, Double> outcomes = new TreeMap<>(DiceNumber::compareTo);
+        a.forEach((x, px) -> b.forEach((y, py) -> outcomes.merge(operator.apply(x, y), px * py, Double::sum)));
+        return of(outcomes);
+    }
+
+    private static Distribution map(Distribution a, UnaryOperator<DiceNumber> operator) {
+        NavigableMap<DiceNumber, Double> outcomes = new TreeMap<>(DiceNumber::compareTo);
+        a.forEach((x, px) -> outcomes.merge(operator.apply(x), px, Double::sum));
+        return of(outcomes);
+    }
+
+    private static Distribution of(NavigableMap<DiceNumber, Double> outcomes) {
+        var allIntegral = outcomes.keySet().stream().allMatch(n -> n instanceof DiceNumber.Integral);
+        if (allIntegral) {
+            var min = ((DiceNumber.Integral) outcomes.firstKey()).value();
+            var max = ((DiceNumber.Integral) outcomes.lastKey()).value();
+            // Only go dense if the gaps between outcomes won't waste too much space.
+            if (max - min < 4L * outcomes.size() + 1024) {
+                var pmf = new double[(int) (max - min + 1)];
+                outcomes.forEach((value, p) -> pmf[(int) (((DiceNumber.Integral) value).value() - min)] += p);
+                return new Dense(min, pmf);
+            }
+        }
+        return new Sparse(
+                outcomes.keySet().toArray(DiceNumber[]::new),
+                outcomes.values().stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private static ExpressionSyntaxError tooComplex() {
+        return new ExpressionSyntaxError("Expression is too complex to compute exact statistics");
+    }
+
+    /**
+     * A distribution over whole numbers.
+     * The probability of rolling (min + i) is pmf[i].
+     */
+    public static final class Dense extends Distribution {
+        private final long min;
+        private final double[] pmf;
+
+        Dense(long min, double[] pmf) {
+            // Trim impossible outcomes from either end, so min() and max() are always possible.
+            int start = 0;
+            int end = pmf.length;
+            while (start < end - 1 && pmf[start] == 0) start++;
+            while (end - 1 > start && pmf[end - 1] == 0) end--;
+            this.min = min + start;
+            this.pmf = start == 0 && end == pmf.length ? pmf : Arrays.copyOfRange(pmf, start, end);
+        }
+
+        /**
+         * Add another partial distribution to this one, outcome by outcome.
+         * This is used to combine mutually exclusive cases, each weighted by its probability.
+         * @param other The other distribution.
+         * @return A distribution where each outcome's probability is the sum of both.
+         */
+        Dense plus(Dense other) {
+            var newMin = Math.min(this.min, other.min);
+            var newMax = Math.max(this.min + this.pmf.length, other.min + other.pmf.length);
+            var result = new double[(int) (newMax - newMin)];
+            for (int i = 0; i < this.pmf.length; i++) {
+                result[(int) (this.min - newMin) + i] += this.pmf[i];
+            }
+            for (int i = 0; i < other.pmf.length; i++) {
+                result[(int) (other.min - newMin) + i] += other.pmf[i];
+            }
+            return new Dense(newMin, result);
+        }
+
+        @Override
+        public int size() {
+            return pmf.length;
+        }
+
+        @Override
+        public DiceNumber valueAt(int index) {
+            return DiceNumber.of(min + index);
+        }
+
+        @Override
+        public double probabilityAt(int index) {
+            return pmf[index];
+        }
+
+        @Override
+        public Dense negate() {
+            var reversed = new double[pmf.length];
+            for (int i = 0; i < pmf.length; i++) {
+                reversed[pmf.length - 1 - i] = pmf[i];
+            }
+            return new Dense(-(min + pmf.length - 1), reversed);
+        }
+
+        @Override
+        public Distribution ceil() {
+            return this;
+        }
+
+        @Override
+        public double mean() {
+            double mean = 0;
+            for (int i = 0; i < pmf.length; i++) {
+                mean += (min + i) * pmf[i];
+            }
+            return mean;
+        }
+    }
+
+    /**
+     * A distribution over arbitrary numbers.
+     * The probability of rolling values[i] is probabilities[i]. Values are sorted from lowest to highest.
+     */
+    public static final class Sparse extends Distribution {
+        private final DiceNumber[] values;
+        private final double[] probabilities;
+
+        private Sparse(DiceNumber[] values, double[] probabilities) {
+            this.values = values;
+            this.probabilities = probabilities;
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+
+        @Override
+        public DiceNumber valueAt(int index) {
+            return values[index];
+        }
+
+        @Override
+        public double probabilityAt(int index) {
+            return probabilities[index];
+        }
+
+        @Override
+        public Distribution negate() {
+            return map(this, DiceNumber::negate);
+        }
+
+        @Override
+        public Distribution ceil() {
+            return map(this, DiceNumber::ceil);
+        }
+    }
+}
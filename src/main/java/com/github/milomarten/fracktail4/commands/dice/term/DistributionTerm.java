@@ -0,0 +1,23 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
+import com.github.milomarten.fracktail4.commands.dice.Utils;
+
+/**
+ * A term that stands in for every possible result of some other term, used when computing statistics.
+ * As it has no single value, it can only be evaluated if it has exactly one possible outcome.
+ * @param outcomes The distribution of results.
+ */
+public record DistributionTerm(Distribution outcomes) implements Term {
+    @Override
+    public TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        return outcomes.asConstant()
+                .map(value -> new TermEvaluationResult(value, sb -> sb.append(Utils.outputNumber(value))))
+                .orElseThrow(() -> new NoExactStatisticsError("Statistics can only be computed if dice counts and modifiers are fixed numbers"));
+    }
+
+    @Override
+    public Distribution distribution(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        return outcomes;
+    }
+}
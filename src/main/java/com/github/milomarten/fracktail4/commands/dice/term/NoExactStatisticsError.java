@@ -0,0 +1,12 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+/**
+ * Indicates a valid dice expression whose exact statistics can't be computed,
+ * because it is too large, or uses features the exact computation doesn't support.
+ * Rolling it still works, so its statistics can be estimated by simulating it instead.
+ */
+public class NoExactStatisticsError extends ExpressionSyntaxError {
+    public NoExactStatisticsError(String message) {
+        super(message);
+    }
+}
@@ -3,11 +3,9 @@ package com.github.milomarten.fracktail4.commands.dice.term;
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
-import org.apache.commons.lang3.StringUtils;
 
-import java.math.BigDecimal;
-import java.util.Arrays;
 import java.util.Deque;
+import java.util.function.BinaryOperator;
 
 /**
  * Describes all the operations supported by the bot.
@@ -39,6 +37,11 @@ public enum Operation {
         public Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
             return evaluateTwoParameterFunc(termStack, options, "addend", "addend", Term::add);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options, "addend", "addend", Distribution::add);
+        }
     },
     /**
      * Subtract two terms.
@@ -48,6 +51,11 @@ public enum Operation {
         public Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
             return evaluateTwoParameterFunc(termStack, options, "minuend", "subtrahend", Term::subtract);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options, "minuend", "subtrahend", Distribution::subtract);
+        }
     },
     /**
      * Multiply two terms.
@@ -58,6 +66,12 @@ public enum Operation {
             return evaluateTwoParameterFunc(termStack, options,
                     "multiplicand", "multiplier", Term::multiply);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options,
+                    "multiplicand", "multiplier", Distribution::multiply);
+        }
     },
     /**
      * Divide two terms.
@@ -68,6 +82,12 @@ public enum Operation {
             return evaluateTwoParameterFunc(termStack, options,
                     "dividend", "divisor", Term::divide);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options,
+                    "dividend", "divisor", Distribution::divide);
+        }
     },
     /**
      * Marker for a left parenthesis.
@@ -103,7 +123,7 @@ public enum Operation {
     DICE("d", 4) {
         // This special ONE makes the parsing logic easier, without showing an unexpected 1,
         // when "d" is used with no left term.
-        private static final Term ONE = new AccumulationTerm(BigDecimal.ONE, "");
+        private static final Term ONE = new AccumulationTerm(DiceNumber.of(1), "");
 
         @Override
         public Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
@@ -113,6 +133,14 @@ public enum Operation {
             return numberOfDice.dice(numberOfSides, options);
         }
 
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            var numberOfSides = Operation.fix(Operation.pull(termStack, "number of sides"), options);
+            var numberOfDice = Operation.fix(Operation.pull(termStack, "number of dice"), options);
+
+            return numberOfDice.dice(numberOfSides, options);
+        }
+
         @Override
         public Term getImplicitLeftTerm() throws ExpressionSyntaxError {
             return ONE;
@@ -222,10 +250,21 @@ public enum Operation {
             return term.ceil(options);
         }
 
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            var term = Operation.pull(termStack, "Term to ceil");
+            return new DistributionTerm(term.distribution(options).ceil());
+        }
+
         @Override
         public boolean expectTermAfter() {
             return false;
         }
+
+        @Override
+        public int getNumberOfTerms() {
+            return 1;
+        }
     },
     /**
      * Cap the left term to be no less than the right term.
@@ -235,6 +274,11 @@ public enum Operation {
         public Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
             return evaluateTwoParameterFunc(termStack, options, "value", "cap", Term::capLow);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options, "value", "cap", Distribution::capLow);
+        }
     },
     /**
      * Cap the left term to be no more than the right term.
@@ -244,6 +288,11 @@ public enum Operation {
         public Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
             return evaluateTwoParameterFunc(termStack, options, "value", "cap", Term::capHigh);
         }
+
+        @Override
+        public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+            return evaluateTwoDistributionFunc(termStack, options, "value", "cap", Distribution::capHigh);
+        }
     }
     ;
 
@@ -258,6 +307,20 @@ public enum Operation {
      */
     public abstract Term evaluate(Deque<Term> termStack, DiceEvaluatorOptions options);
 
+    /**
+     * Invoke this operator on the term stack while computing statistics.
+     * Rather than rolling, math operators combine the exact distributions of their terms. Dice operators
+     * only describe a roll rather than making it, so by default they are evaluated as usual, except
+     * that their parameter must be a fixed number.
+     * @param termStack The stack to mutate
+     * @return A term whose distribution is the result of this operator acting on the stack
+     * @throws ExpressionSyntaxError The operator encountered a stack it could not handle.
+     */
+    public Term evaluateDistribution(Deque<Term> termStack, DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        termStack.push(fix(Operation.pull(termStack, "parameter"), options));
+        return evaluate(termStack, options);
+    }
+
     /**
      * Get the implicit left term of this operation.
      * This is to support operators that can have either one or two operations, such as DICE.
@@ -273,6 +336,15 @@ public enum Operation {
         return true;
     }
 
+    /**
+     * Get the number of terms this operator pulls off the stack when evaluated.
+     * Most operators are binary, so the default is 2.
+     * @return The number of terms consumed by this operator.
+     */
+    public int getNumberOfTerms() {
+        return 2;
+    }
+
     private static Term pull(Deque<Term> stack, String descriptor) throws ExpressionSyntaxError {
         if (stack.isEmpty()) {
             throw new ExpressionSyntaxError("Error pulling " + descriptor + ", no matching term.");
@@ -286,10 +358,40 @@ public enum Operation {
         return operator.compute(one, two, options);
     }
 
+    protected Term evaluateTwoDistributionFunc(Deque<Term> stack, DiceEvaluatorOptions options, String firstTerm, String secondTerm, BinaryOperator<Distribution> operator) {
+        var two = Operation.pull(stack, secondTerm);
+        var one = Operation.pull(stack, firstTerm);
+        return new DistributionTerm(operator.apply(one.distribution(options), two.distribution(options)));
+    }
+
+    /**
+     * Replace a term with its distribution, so it can't be rolled by accident.
+     * Evaluating the result only works if the term always has the same value.
+     */
+    private static Term fix(Term term, DiceEvaluatorOptions options) {
+        return new DistributionTerm(term.distribution(options));
+    }
+
+    /**
+     * Operations indexed by their ASCII symbols, so lexing an operator is a single array lookup.
+     * If two operations share a symbol, the first declared wins.
+     */
+    private static final Operation[] BY_SYMBOL = new Operation[128];
+    static {
+        for (Operation operation : values()) {
+            for (char symbol : operation.symbol.toCharArray()) {
+                if (BY_SYMBOL[symbol] == null) {
+                    BY_SYMBOL[symbol] = operation;
+                }
+            }
+        }
+    }
+
     public static Operation findOperation(char symbol) throws ExpressionSyntaxError {
-        return Arrays.stream(Operation.values())
-                .filter(o -> StringUtils.contains(o.symbol, symbol))
-                .findFirst()
-                .orElseThrow(() -> new ExpressionSyntaxError("Symbol " + symbol + " not known"));
+        var operation = symbol < BY_SYMBOL.length ? BY_SYMBOL[symbol] : null;
+        if (operation == null) {
+            throw new ExpressionSyntaxError("Symbol " + symbol + " not known");
+        }
+        return operation;
     }
 }
@@ -0,0 +1,63 @@
+package com.github.milomarten.fracktail4.commands.dice.term;
+
+/**
+ * Describes how a result was reached, such as "🎲(3 + 4) + 5".
+ * Representations are built up as a tree while evaluating, and only rendered into text when something
+ * actually displays them. Callers that only need the value never pay for building strings, and rendering
+ * appends everything into one StringBuilder, rather than re-copying the whole string at every operator.
+ */
+@FunctionalInterface
+public interface Representation {
+    /**
+     * A representation that renders as nothing.
+     */
+    Representation EMPTY = sb -> {};
+
+    /**
+     * Render this representation onto the end of a StringBuilder.
+     * @param sb The StringBuilder to append to.
+     */
+    void renderTo(StringBuilder sb);
+
+    /**
+     * Render this representation into a new String.
+     * @return The rendered representation.
+     */
+    default String render() {
+        var sb = new StringBuilder();
+        renderTo(sb);
+        return sb.toString();
+    }
+
+    static Representation of(String text) {
+        return text.isEmpty() ? EMPTY : sb -> sb.append(text);
+    }
+
+    /**
+     * Represent a binary operation, such as "a + b".
+     * @param left The left operand.
+     * @param operator The operator, including any surrounding whitespace.
+     * @param right The right operand.
+     * @return The combined representation.
+     */
+    static Representation infix(Representation left, String operator, Representation right) {
+        return sb -> {
+            left.renderTo(sb);
+            sb.append(operator);
+            right.renderTo(sb);
+        };
+    }
+
+    /**
+     * Represent a unary operation, such as "-a".
+     * @param operator The operator.
+     * @param operand The operand.
+     * @return The combined representation.
+     */
+    static Representation prefix(String operator, Representation operand) {
+        return sb -> {
+            sb.append(operator);
+            operand.renderTo(sb);
+        };
+    }
+}
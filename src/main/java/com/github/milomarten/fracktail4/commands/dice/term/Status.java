@@ -14,6 +14,21 @@ public enum Status {
         if (this.ansiColor == 0) {
             return String.valueOf(roll);
         }
-        return String.format("\u001b[1;%dm%s\u001b[0m", this.ansiColor, roll);
+        var sb = new StringBuilder();
+        appendTo(sb, roll);
+        return sb.toString();
+    }
+
+    /**
+     * Append a roll to a StringBuilder, colored with this status.
+     * @param sb The StringBuilder to append to.
+     * @param roll The roll to append.
+     */
+    public void appendTo(StringBuilder sb, int roll) {
+        if (this.ansiColor == 0) {
+            sb.append(roll);
+        } else {
+            sb.append("\u001b[1;").append(this.ansiColor).append('m').append(roll).append("\u001b[0m");
+        }
     }
 }
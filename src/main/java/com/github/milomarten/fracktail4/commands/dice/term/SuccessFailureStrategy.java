@@ -4,9 +4,6 @@ import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
 import com.github.milomarten.fracktail4.commands.dice.Utils;
 import lombok.*;
 
-import java.math.BigDecimal;
-import java.util.StringJoiner;
-
 /**
  * An alternate totaling strategy where "successes" are counted.
  * Rather than using the face value of each dice directly, the face values are compared
@@ -24,28 +21,43 @@ public class SuccessFailureStrategy implements DiceTotalingStrategy {
 
     @Override
     public TermEvaluationResult compile(DiceExpression.Results results, DiceEvaluatorOptions options) {
-        var expr = new StringJoiner(" + ", "\uD83C\uDFB2(", ")");
-        var total = results.getAllResults()
-                .<Integer>mapMulti((result, consumer) -> {
-                    var value = result.getValue();
-                    String rollText = result.toString(options);
-                    if (result.isDiscounted()) {
-                        expr.add("~~" + rollText + "~~");
-                    } else if (value >= successThreshold) {
-                        String resolvedText = Utils.outputDiceRoll(1, Status.CRITICAL_SUCCESS, options);
-                        expr.add(resolvedText + " [" + rollText + "]");
-                        consumer.accept(1);
-                    } else if (value <= failureThreshold) {
-                        String resolvedText = Utils.outputDiceRoll(-1, Status.CRITICAL_FAIL, options);
-                        expr.add(resolvedText + " [" + rollText + "]");
-                        consumer.accept(-1);
+        var total = total(results).number();
+        return new TermEvaluationResult(total, sb -> {
+            sb.append("\uD83C\uDFB2(");
+            for (int i = 0; i < results.size(); i++) {
+                if (i > 0) {
+                    sb.append(" + ");
+                }
+                if (results.isDiscounted(i)) {
+                    sb.append("~~");
+                    results.renderTo(sb, i, options);
+                    sb.append("~~");
+                } else {
+                    var score = score(results.getValue(i));
+                    if (score > 0) {
+                        Utils.appendDiceRoll(sb, 1, Status.CRITICAL_SUCCESS, options);
+                    } else if (score < 0) {
+                        Utils.appendDiceRoll(sb, -1, Status.CRITICAL_FAIL, options);
                     } else {
-                        expr.add("0 [" + rollText + "]");
-                        consumer.accept(0);
+                        sb.append('0');
                     }
-                })
-                .mapToInt(i -> i)
-                .sum();
-        return new TermEvaluationResult(BigDecimal.valueOf(total), expr.toString());
+                    sb.append(" [");
+                    results.renderTo(sb, i, options);
+                    sb.append(']');
+                }
+            }
+            sb.append(')');
+        });
+    }
+
+    @Override
+    public int score(int face) {
+        if (face >= successThreshold) {
+            return 1;
+        } else if (face <= failureThreshold) {
+            return -1;
+        } else {
+            return 0;
+        }
     }
 }
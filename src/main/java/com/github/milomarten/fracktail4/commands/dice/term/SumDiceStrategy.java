@@ -1,10 +1,6 @@
 package com.github.milomarten.fracktail4.commands.dice.term;
 
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
-import com.github.milomarten.fracktail4.commands.dice.Utils;
-
-import java.math.BigDecimal;
-import java.util.StringJoiner;
 
 /**
  * A simple strategy that sums the value of all dice faces, ignoring discounted dice.
@@ -14,19 +10,27 @@ public enum SumDiceStrategy implements DiceTotalingStrategy {
 
     @Override
     public TermEvaluationResult compile(DiceExpression.Results results, DiceEvaluatorOptions options) {
-        var expr = new StringJoiner(" + ", "\uD83C\uDFB2(", ")");
-        var sum = results.getAllResults()
-                .<Integer>mapMulti((result, consumer) -> {
-                    String rollText = result.toString(options);
-                    if (result.isDiscounted()) {
-                        expr.add("~~" + rollText + "~~");
-                    } else {
-                        expr.add(rollText);
-                        consumer.accept(result.getValue());
-                    }
-                })
-                .mapToInt(i -> i)
-                .sum();
-        return new TermEvaluationResult(BigDecimal.valueOf(sum), expr.toString());
+        var total = total(results).number();
+        return new TermEvaluationResult(total, sb -> {
+            sb.append("\uD83C\uDFB2(");
+            for (int i = 0; i < results.size(); i++) {
+                if (i > 0) {
+                    sb.append(" + ");
+                }
+                if (results.isDiscounted(i)) {
+                    sb.append("~~");
+                    results.renderTo(sb, i, options);
+                    sb.append("~~");
+                } else {
+                    results.renderTo(sb, i, options);
+                }
+            }
+            sb.append(')');
+        });
+    }
+
+    @Override
+    public int score(int face) {
+        return face;
     }
 }
@@ -2,10 +2,6 @@ package com.github.milomarten.fracktail4.commands.dice.term;
 
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
 
-import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-
 /**
  * A generic term than can equal something
  */
@@ -16,66 +12,65 @@ public interface Term {
      */
     TermEvaluationResult evaluate(DiceEvaluatorOptions options) throws ExpressionSyntaxError;
 
+    /**
+     * Compute the exact distribution of every possible result of this term, without rolling.
+     * By default, the term is assumed to always evaluate to the same value.
+     * @return The distribution of results.
+     * @throws ExpressionSyntaxError The distribution could not be computed.
+     */
+    default Distribution distribution(DiceEvaluatorOptions options) throws ExpressionSyntaxError {
+        return Distribution.constant(evaluate(options).number());
+    }
+
     default Term add(Term addend, DiceEvaluatorOptions options){
         var a = this.evaluate(options);
         var b = addend.evaluate(options);
-        var sum = a.value().add(b.value());
+        var sum = a.number().add(b.number());
 
-        return new AccumulationTerm(sum, a.representation() + " + " + b.representation());
+        return new AccumulationTerm(sum, Representation.infix(a.breakdown(), " + ", b.breakdown()));
     }
 
     default Term subtract(Term minuend, DiceEvaluatorOptions options){
         var a = this.evaluate(options);
         var b = minuend.evaluate(options);
-        var diff = a.value().subtract(b.value());
+        var diff = a.number().subtract(b.number());
 
-        return new AccumulationTerm(diff, a.representation() + " - " + b.representation());
+        return new AccumulationTerm(diff, Representation.infix(a.breakdown(), " - ", b.breakdown()));
     }
 
     default Term multiply(Term multiplier, DiceEvaluatorOptions options){
         var a = this.evaluate(options);
         var b = multiplier.evaluate(options);
-        // Validation Step - Don't go too high!
-        if (a.getDigitCount() + b.getDigitCount() > 18) {
-            throw new ExpressionSyntaxError("Multiplying large values. Numbers shouldn't exceed 18 digits.");
-        }
+        // Validation happens in DiceNumber - whole numbers can't overflow a long, decimals can't exceed 18 digits.
+        var mult = a.number().multiply(b.number());
 
-        var mult = a.value().multiply(b.value());
-
-        return new AccumulationTerm(mult, a.representation() + " * " + b.representation());
+        return new AccumulationTerm(mult, Representation.infix(a.breakdown(), " * ", b.breakdown()));
     }
 
     default Term divide(Term divisor, DiceEvaluatorOptions options){
         var a = this.evaluate(options);
         var b = divisor.evaluate(options);
-        // Validation Step - Don't go too low.
-        if (BigDecimal.ZERO.equals(b.value())) {
-            throw new ExpressionSyntaxError("Division by Zero");
-        }
-        if (a.precisionScore() - b.precisionScore() > 18) {
-            throw new ExpressionSyntaxError("Dividing large values. Numbers shouldn't exceed 18 digits.");
-        }
+        // Validation happens in DiceNumber - no dividing by zero, or by something too small.
+        var ratio = a.number().divide(b.number());
 
-        var ratio = a.value().divide(b.value(), MathContext.DECIMAL128);
-
-        return new AccumulationTerm(ratio, a.representation() + " / " + b.representation());
+        return new AccumulationTerm(ratio, Representation.infix(a.breakdown(), " / ", b.breakdown()));
     }
 
     default Term ceil(DiceEvaluatorOptions options){
         var a = this.evaluate(options);
-        var ceil = a.value().setScale(0, RoundingMode.CEILING);
+        var ceil = a.number().ceil();
 
-        return new AccumulationTerm(ceil, "^" + a.representation());
+        return new AccumulationTerm(ceil, Representation.prefix("^", a.breakdown()));
     }
 
     default Term capLow(Term lowerBound, DiceEvaluatorOptions options){
         var a = this.evaluate(options);
         var b = lowerBound.evaluate(options);
 
-        if (a.value().compareTo(b.value()) < 0) {
-            return new AccumulationTerm(b.value(), a.representation() + " < " + b.representation());
+        if (a.number().compareTo(b.number()) < 0) {
+            return new AccumulationTerm(b.number(), Representation.infix(a.breakdown(), " < ", b.breakdown()));
         } else {
-            return new AccumulationTerm(a.value(), a.representation() + " < " + b.representation());
+            return new AccumulationTerm(a.number(), Representation.infix(a.breakdown(), " < ", b.breakdown()));
         }
     }
 
@@ -83,10 +78,10 @@ public interface Term {
         var a = this.evaluate(options);
         var b = upperBound.evaluate(options);
 
-        if (a.value().compareTo(b.value()) > 0) {
-            return new AccumulationTerm(b.value(), a.representation() + " > " + b.representation());
+        if (a.number().compareTo(b.number()) > 0) {
+            return new AccumulationTerm(b.number(), Representation.infix(a.breakdown(), " > ", b.breakdown()));
         } else {
-            return new AccumulationTerm(a.value(), a.representation() + " > " + b.representation());
+            return new AccumulationTerm(a.number(), Representation.infix(a.breakdown(), " > ", b.breakdown()));
         }
     }
 
@@ -94,10 +89,13 @@ public interface Term {
         var number = this.evaluate(options);
         var facesE = faces.evaluate(options);
 
-        return DiceExpression.builder()
+        var builder = DiceExpression.builder()
                 .numberOfDice(number.valueAsInt())
-                .numberOfSides(facesE.valueAsInt())
-                .build();
+                .numberOfSides(facesE.valueAsInt());
+        if (options.getRandomSource() != null) {
+            builder.randomSource(options.getRandomSource());
+        }
+        return builder.build();
     }
 
     default Term drop(Term qty, DiceEvaluatorOptions options){
@@ -3,7 +3,37 @@ package com.github.milomarten.fracktail4.commands.dice.term;
 import java.math.BigDecimal;
 import java.util.function.UnaryOperator;
 
-public record TermEvaluationResult(BigDecimal value, String representation) {
+/**
+ * The result of evaluating a term.
+ * @param number The value of the term.
+ * @param breakdown How that value was reached. This is only rendered if asked for.
+ */
+public record TermEvaluationResult(DiceNumber number, Representation breakdown) {
+    public TermEvaluationResult(DiceNumber number, String representation) {
+        this(number, Representation.of(representation));
+    }
+
+    public TermEvaluationResult(BigDecimal value, String representation) {
+        this(DiceNumber.of(value), representation);
+    }
+
+    public TermEvaluationResult(long value, String representation) {
+        this(DiceNumber.of(value), representation);
+    }
+
+    public TermEvaluationResult(long value, Representation breakdown) {
+        this(DiceNumber.of(value), breakdown);
+    }
+
+    /**
+     * Get the value as a BigDecimal.
+     * Prefer {@link #number()} when possible, as whole numbers are not stored as a BigDecimal.
+     * @return The value, as a BigDecimal.
+     */
+    public BigDecimal value() {
+        return number.toBigDecimal();
+    }
+
     /**
      * Get the value as an int.
      * Rounding is okay; everything after the decimal point is discarded. However,
@@ -12,31 +42,21 @@ public record TermEvaluationResult(BigDecimal value, String representation) {
      * @throws ExpressionSyntaxError The number is too big.
      */
     public int valueAsInt() throws ExpressionSyntaxError {
-        try {
-            return value.toBigInteger().intValueExact();
-        } catch (ArithmeticException ex) {
-            throw new ExpressionSyntaxError(ex.getMessage());
-        }
+        return number.intValueExact();
     }
 
-    public TermEvaluationResult map(UnaryOperator<BigDecimal> mapValue, UnaryOperator<String> mapRep) {
-        return new TermEvaluationResult(mapValue.apply(this.value), mapRep.apply(this.representation));
-    }
-
-    int getDigitCount() {
-        return value.signum() == 0 ? 1 : value.precision() - value.scale();
+    /**
+     * Render the breakdown of this result.
+     * This builds the whole string each time it is called. To add it to a larger message,
+     * prefer rendering the breakdown directly into that message's StringBuilder.
+     * @return The breakdown, as a String.
+     */
+    public String representation() {
+        return breakdown.render();
     }
 
-    int precisionScore() {
-        if (value.signum() == 0) {
-            return 1;
-        } else {
-            var digitsToTheLeft = value.precision() - value.scale();
-            if (digitsToTheLeft == 0) {
-                return -value.scale();
-            } else {
-                return digitsToTheLeft;
-            }
-        }
+    public TermEvaluationResult map(UnaryOperator<BigDecimal> mapValue, UnaryOperator<String> mapRep) {
+        return new TermEvaluationResult(DiceNumber.of(mapValue.apply(this.value())),
+                sb -> sb.append(mapRep.apply(this.representation())));
     }
 }
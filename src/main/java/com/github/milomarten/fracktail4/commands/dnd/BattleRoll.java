@@ -1,14 +1,24 @@
 package com.github.milomarten.fracktail4.commands.dnd;
 
 import com.github.milomarten.fracktail4.commands.dice.DiceEvaluatorOptions;
-import com.github.milomarten.fracktail4.commands.dice.DiceExpressionEvaluator;
-import com.github.milomarten.fracktail4.commands.dice.term.*;
+import com.github.milomarten.fracktail4.commands.dice.term.DiceExpression;
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.Distribution;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 
 public class BattleRoll {
+    private static final DiceEvaluatorOptions OPTIONS = DiceEvaluatorOptions.builder().build();
+
     private static final DB[] DAMAGE_BASES = {
             new DB(0, 0, 0),
             new DB(1, 6, 1),
@@ -57,37 +67,82 @@ public class BattleRoll {
             new BigDecimal("2.2")
     };
 
-    public static TotalHolder doAttackRoll(AttackParameters attacker, DefenseParameters defense) {
-        int db = attacker.getDamageBase();
-        if (attacker.isSTAB()) {
-            db += 2;
+    /**
+     * The exact distribution of every damage base, before stats and matchups are applied.
+     * Computed once, so a roll is a single lookup, and odds can be answered without rolling at all.
+     */
+    private static final DamageTable[] NORMAL_DAMAGE = new DamageTable[DAMAGE_BASES.length];
+    private static final DamageTable[] CRIT_DAMAGE = new DamageTable[DAMAGE_BASES.length];
+    static {
+        for (int i = 0; i < DAMAGE_BASES.length; i++) {
+            var normal = DAMAGE_BASES[i].distribution();
+            NORMAL_DAMAGE[i] = DamageTable.of(normal);
+            CRIT_DAMAGE[i] = DamageTable.of(normal.add(normal));
         }
-        var options = DiceEvaluatorOptions.builder().build();
-        var damageRoll = getDB(db).totalHolder(options);
-        if (attacker.isCriticalHit()) {
-            damageRoll.add(getDB(db).totalHolder(options));
+    }
+
+    public static TotalHolder doAttackRoll(AttackParameters attacker, DefenseParameters defense) {
+        return doAttackRoll(attacker, defense, ThreadLocalRandom.current());
+    }
+
+    public static TotalHolder doAttackRoll(AttackParameters attacker, DefenseParameters defense, RandomGenerator random) {
+        return getDamageProfile(attacker, defense).roll(random);
+    }
+
+    /**
+     * Make an attack roll against several defenders at once.
+     * Each defender's stats and matchups are applied to the damage roll separately.
+     * @param attacker The attacker
+     * @param defenders The defenders
+     * @param rollPerTarget If true, damage is rolled separately for each defender. Otherwise, one damage roll is shared.
+     * @param random The source of randomness
+     * @return The damage dealt to each defender, in the same order
+     */
+    public static List<TotalHolder> doAreaAttackRoll(AttackParameters attacker, List<DefenseParameters> defenders,
+                                                     boolean rollPerTarget, RandomGenerator random) {
+        var profiles = defenders.stream()
+                .map(defense -> getDamageProfile(attacker, defense))
+                .toList();
+        if (rollPerTarget || profiles.isEmpty()) {
+            return profiles.stream()
+                    .map(profile -> profile.roll(random))
+                    .toList();
         }
+        var damageRoll = profiles.get(0).rollDamage(random);
+        return profiles.stream()
+                .map(profile -> profile.resolve(damageRoll))
+                .toList();
+    }
+
+    /**
+     * Get everything about how an attack could turn out, without rolling.
+     * @param attacker The attacker
+     * @param defense The defender
+     * @return The attack's damage profile
+     */
+    public static DamageProfile getDamageProfile(AttackParameters attacker, DefenseParameters defense) {
+        int db = getDBIndex(attacker.isSTAB() ? attacker.getDamageBase() + 2 : attacker.getDamageBase());
+        var table = attacker.isCriticalHit() ? CRIT_DAMAGE[db] : NORMAL_DAMAGE[db];
 
         var baseAttack = new BigDecimal(attacker.getAttackStat());
         var attackMultiplier = getMultiplierForCS(attacker.getAttackCS());
-        damageRoll.add(baseAttack.multiply(attackMultiplier));
         var baseDefense = new BigDecimal(defense.getDefenseStat());
         var defenseMultiplier = getMultiplierForCS(defense.getDefenseCS());
-        damageRoll.subtract(baseDefense.multiply(defenseMultiplier));
+        var offset = baseAttack.multiply(attackMultiplier).subtract(baseDefense.multiply(defenseMultiplier));
 
-        damageRoll.multiply(getMatchup(attacker.getAttackType(), defense.getDefenderPrimaryType()));
-        damageRoll.multiply(getMatchup(attacker.getAttackType(), defense.getDefenderSecondaryType()));
+        var multiplier = TypeMatchup.getMultiplier(attacker.getAttackType(),
+                defense.getDefenderPrimaryType(), defense.getDefenderSecondaryType());
 
-        return damageRoll;
+        return new DamageProfile(table, offset, multiplier);
     }
 
-    private static DB getDB(int value) {
+    private static int getDBIndex(int value) {
         if (value <= 0) {
-            return DAMAGE_BASES[1];
+            return 1;
         } else if (value < DAMAGE_BASES.length) {
-            return DAMAGE_BASES[value];
+            return value;
         } else {
-            return DAMAGE_BASES[DAMAGE_BASES.length - 1];
+            return DAMAGE_BASES.length - 1;
         }
     }
 
@@ -95,39 +150,112 @@ public class BattleRoll {
         return CS_MULTIPLIERS[cs + 6];
     }
 
-    private static BigDecimal getMatchup(Type attack, Type defense) {
-        return switch (TypeMatchup.getMatchup(attack, defense)) {
-            case IMMUNE -> BigDecimal.ZERO;
-            case HALF -> new BigDecimal("0.5");
-            case NORMAL -> BigDecimal.ONE;
-            case SUPER -> new BigDecimal("2");
-        };
-    }
-
     private record DB(int numDice, int diceFaces, int bonus) {
-        public TermEvaluationResult eval(DiceEvaluatorOptions opts) {
+        public Distribution distribution() {
             var dice = DiceExpression.builder()
                     .numberOfDice(numDice)
                     .numberOfSides(diceFaces)
                     .build();
-            var bonus = ConstantTerm.of(this.bonus);
+            return dice.distribution(OPTIONS)
+                    .add(Distribution.constant(DiceNumber.of(bonus)));
+        }
+    }
 
-            var eval = new DiceExpressionEvaluator(opts);
-            eval.push(dice);
-            eval.push(Operation.ADD);
-            eval.push(bonus);
+    /**
+     * The damage of a roll, stored as the lowest roll and the chance of rolling at or below each value above it.
+     * Rolling is a binary search for a uniform random number in the cumulative chances.
+     */
+    private record DamageTable(int min, double[] cumulative, double mean) {
+        static DamageTable of(Distribution distribution) {
+            int min = distribution.min().intValueExact();
+            var cumulative = new double[distribution.max().intValueExact() - min + 1];
+            distribution.forEach((value, probability) -> cumulative[value.intValueExact() - min] += probability);
+            for (int i = 1; i < cumulative.length; i++) {
+                cumulative[i] += cumulative[i - 1];
+            }
+            // Rounding could leave the last entry a hair under 1, which would make the highest roll unreachable.
+            cumulative[cumulative.length - 1] = 1;
+            return new DamageTable(min, cumulative, distribution.mean());
+        }
+
+        int max() {
+            return min + cumulative.length - 1;
+        }
+
+        int roll(RandomGenerator random) {
+            var index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return min + (index < 0 ? -index - 1 : index);
+        }
 
-            return eval.finish();
+        double probabilityAtLeast(int roll) {
+            if (roll <= min) {
+                return 1;
+            } else if (roll > max()) {
+                return 0;
+            }
+            return 1 - cumulative[roll - min - 1];
+        }
+    }
+
+    /**
+     * How an attack could turn out: a damage roll, plus an offset from stats, all scaled by type matchups.
+     */
+    @RequiredArgsConstructor
+    public static class DamageProfile {
+        private final DamageTable table;
+        private final BigDecimal offset;
+        private final BigDecimal multiplier;
+
+        public TotalHolder roll(RandomGenerator random) {
+            return resolve(rollDamage(random));
+        }
+
+        /**
+         * Roll just the damage base, before stats and matchups.
+         * @param random The source of randomness
+         * @return The damage roll
+         */
+        public int rollDamage(RandomGenerator random) {
+            return table.roll(random);
+        }
+
+        /**
+         * Apply stats and matchups to a damage roll.
+         * @param damageRoll The damage roll, from any profile with the same attacker
+         * @return The final damage
+         */
+        public TotalHolder resolve(int damageRoll) {
+            var value = BigDecimal.valueOf(damageRoll).add(offset).multiply(multiplier);
+            return new TotalHolder(value, range());
         }
 
         public Range range() {
-            var faceRange = new Range(BigDecimal.ONE, BigDecimal.valueOf(this.diceFaces));
-            return faceRange.multiply(BigDecimal.valueOf(this.numDice))
-                    .add(BigDecimal.valueOf(this.bonus));
+            return new Range(BigDecimal.valueOf(table.min()), BigDecimal.valueOf(table.max()))
+                    .add(offset)
+                    .multiply(multiplier);
+        }
+
+        public double mean() {
+            return (table.mean() + offset.doubleValue()) * multiplier.doubleValue();
         }
 
-        public TotalHolder totalHolder(DiceEvaluatorOptions opts) {
-            return new TotalHolder(eval(opts).value(), range());
+        /**
+         * Get the chance of this attack knocking out a defender.
+         * @param hp The defender's remaining HP.
+         * @return The chance that the damage is at least the HP.
+         */
+        public double probabilityOfKO(int hp) {
+            if (multiplier.signum() == 0) {
+                return hp <= 0 ? 1 : 0;
+            }
+            var lowestKO = BigDecimal.valueOf(hp)
+                    .divide(multiplier, MathContext.DECIMAL128)
+                    .subtract(offset)
+                    .setScale(0, RoundingMode.CEILING)
+                    // Anything outside the table is a guaranteed KO or none at all, so keep it in range of an int.
+                    .max(BigDecimal.valueOf(table.min()))
+                    .min(BigDecimal.valueOf(table.max() + 1L));
+            return table.probabilityAtLeast(lowestKO.intValueExact());
         }
     }
 
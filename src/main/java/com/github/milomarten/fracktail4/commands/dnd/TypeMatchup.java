@@ -1,14 +1,28 @@
 package com.github.milomarten.fracktail4.commands.dnd;
 
-import java.util.Arrays;
-import java.util.EnumMap;
-import java.util.Map;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * The effectiveness of every attacking type against every defending type.
+ * The chart is compiled into a flat matrix, indexed by [attack][defend], and from that, the combined multiplier
+ * against every dual-type defender ([attack][primary][secondary]), and every defender's weaknesses, are precomputed.
+ * All lookups are array reads, and all multipliers are shared constants.
+ */
 public class TypeMatchup {
-    private static final Map<Type, Map<Type, Matchup>> matchups;
+    private static final Type[] TYPES = Type.values();
+    private static final int N = TYPES.length;
+    private static final Matchup[] MATCHUPS = Matchup.values();
+
+    private static final byte[] matchups = new byte[N * N];
+    private static final BigDecimal[] multipliers = new BigDecimal[N * N * N];
+    private static final List<List<Effectiveness>> rankings = new ArrayList<>(N * N);
 
     static {
-        matchups = new EnumMap<>(Type.class);
+        Arrays.fill(matchups, (byte) Matchup.NORMAL.ordinal());
         matchup(Type.NORMAL, Type.ROCK, Matchup.HALF);
         matchup(Type.NORMAL, Type.GHOST, Matchup.IMMUNE);
         matchup(Type.NORMAL, Type.STEEL, Matchup.HALF);
@@ -54,11 +68,33 @@ public class TypeMatchup {
         bulkMatchup(Type.STEEL, Matchup.SUPER, Type.ICE, Type.ROCK, Type.FAIRY);
         bulkMatchup(Type.FAIRY, Matchup.HALF, Type.FIRE, Type.POISON, Type.STEEL);
         bulkMatchup(Type.FAIRY, Matchup.SUPER, Type.FIGHTING, Type.DRAGON, Type.DARK);
+
+        // Products are shared, so every 0.5 * 0.5 is the same 0.25.
+        var products = new HashMap<BigDecimal, BigDecimal>();
+        for (Type attack : TYPES) {
+            for (Type primary : TYPES) {
+                for (Type secondary : TYPES) {
+                    var product = getMatchup(attack, primary).getMultiplier()
+                            .multiply(getMatchup(attack, secondary).getMultiplier())
+                            .stripTrailingZeros();
+                    multipliers[index(attack, primary, secondary)] = products.computeIfAbsent(product, p -> p);
+                }
+            }
+        }
+
+        for (Type primary : TYPES) {
+            for (Type secondary : TYPES) {
+                rankings.add(Arrays.stream(TYPES)
+                        .filter(attack -> attack != Type.NONE)
+                        .map(attack -> new Effectiveness(attack, getMultiplier(attack, primary, secondary)))
+                        .sorted(Comparator.comparing(Effectiveness::multiplier).reversed())
+                        .toList());
+            }
+        }
     }
 
     private static void matchup(Type attack, Type defend, Matchup effectiveness) {
-        matchups.computeIfAbsent(attack, t -> new EnumMap<>(Type.class))
-                .put(defend, effectiveness);
+        matchups[attack.ordinal() * N + defend.ordinal()] = (byte) effectiveness.ordinal();
     }
 
     private static void bulkMatchup(Type attack, Matchup effectiveness, Type... defends) {
@@ -66,18 +102,46 @@ public class TypeMatchup {
                 .forEach(defend -> matchup(attack, defend, effectiveness));
     }
 
+    private static int index(Type attack, Type primary, Type secondary) {
+        return (attack.ordinal() * N + primary.ordinal()) * N + secondary.ordinal();
+    }
+
     public static Matchup getMatchup(Type attack, Type defend) {
-        if (matchups.containsKey(attack)) {
-            return matchups.get(attack).getOrDefault(defend, Matchup.NORMAL);
-        } else {
-            return Matchup.NORMAL;
-        }
+        return MATCHUPS[matchups[attack.ordinal() * N + defend.ordinal()]];
+    }
+
+    /**
+     * Get the damage multiplier of an attack against a defender with up to two types.
+     * @param attack The type of the attack
+     * @param primary The defender's primary type
+     * @param secondary The defender's secondary type, or NONE
+     * @return The combined multiplier
+     */
+    public static BigDecimal getMultiplier(Type attack, Type primary, Type secondary) {
+        return multipliers[index(attack, primary, secondary)];
     }
 
+    /**
+     * Get every attacking type, ordered from most to least effective against a defender.
+     * Types that are equally effective are in declaration order.
+     * @param primary The defender's primary type
+     * @param secondary The defender's secondary type, or NONE
+     * @return Every attacking type, with its multiplier
+     */
+    public static List<Effectiveness> rankAttackers(Type primary, Type secondary) {
+        return rankings.get(primary.ordinal() * N + secondary.ordinal());
+    }
+
+    public record Effectiveness(Type attack, BigDecimal multiplier) {}
+
+    @RequiredArgsConstructor
+    @Getter
     public enum Matchup {
-        IMMUNE,
-        HALF,
-        NORMAL,
-        SUPER
+        IMMUNE(BigDecimal.ZERO),
+        HALF(new BigDecimal("0.5")),
+        NORMAL(BigDecimal.ONE),
+        SUPER(BigDecimal.valueOf(2));
+
+        private final BigDecimal multiplier;
     }
 }
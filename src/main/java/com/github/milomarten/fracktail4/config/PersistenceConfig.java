@@ -1,15 +1,61 @@
 package com.github.milomarten.fracktail4.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.milomarten.fracktail4.persistence.CachingPersistence;
 import com.github.milomarten.fracktail4.persistence.FilePersistence;
+import com.github.milomarten.fracktail4.persistence.HashmapPersistence;
+import com.github.milomarten.fracktail4.persistence.JacksonFormat;
+import com.github.milomarten.fracktail4.persistence.JournalPersistence;
 import com.github.milomarten.fracktail4.persistence.Persistence;
+import com.github.milomarten.fracktail4.persistence.WriteBehindPersistence;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class PersistenceConfig {
     @Bean
-    public Persistence getPersistence(ObjectMapper om) {
-        return new FilePersistence(om, "fracktail-files");
+    public CachingPersistence getCachingPersistence(ObjectMapper om,
+                                                    @Value("${persistence.best-effort-keys:}") List<String> bestEffortKeys,
+                                                    @Value("${persistence.format:json}") String format) {
+        var json = JacksonFormat.json(om);
+        var smile = JacksonFormat.smile(om);
+        var files = switch (format.toLowerCase()) {
+            case "json" -> new FilePersistence("fracktail-files", FilePersistence.Durability.FSYNC, json, smile);
+            case "smile" -> new FilePersistence("fracktail-files", FilePersistence.Durability.FSYNC, smile, json);
+            default -> throw new IllegalArgumentException("Unknown persistence format " + format);
+        };
+        bestEffortKeys.forEach(key -> files.setDurability(key, FilePersistence.Durability.BEST_EFFORT));
+        return new CachingPersistence(files, om);
+    }
+
+    /**
+     * The Persistence everything else uses.
+     * With the file backend, whole values are buffered and coalesced before being written to files.
+     * With the journal backend, changes are appended to a journal as they happen, and any keys
+     * without a journal yet are seeded from the files.
+     * With the memory backend, nothing is written anywhere, and every operation can be delayed to simulate
+     * storage under load, which is meant for load tests.
+     */
+    @Bean
+    @Primary
+    public Persistence getPersistence(ObjectMapper om, CachingPersistence cache,
+                                      @Value("${persistence.backend:file}") String backend,
+                                      @Value("${persistence.write-behind-window:2s}") Duration writeBehindWindow,
+                                      @Value("${persistence.journal.compact-threshold:1048576}") long compactThreshold,
+                                      @Value("${persistence.memory.latency:0ms}") Duration memoryLatency,
+                                      @Value("${persistence.memory.jitter:0ms}") Duration memoryJitter) {
+        return switch (backend.toLowerCase()) {
+            case "file" -> new WriteBehindPersistence(cache, writeBehindWindow);
+            case "journal" -> new JournalPersistence(om, "fracktail-journal", compactThreshold,
+                    FilePersistence.Durability.FSYNC, cache, Schedulers.boundedElastic());
+            case "memory" -> new HashmapPersistence(om, memoryLatency, memoryJitter);
+            default -> throw new IllegalArgumentException("Unknown persistence backend " + backend);
+        };
     }
 }
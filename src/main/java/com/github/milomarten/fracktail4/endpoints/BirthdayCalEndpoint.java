@@ -2,30 +2,60 @@ package com.github.milomarten.fracktail4.endpoints;
 
 import com.github.milomarten.fracktail4.birthday.ical.BirthdayICalCacheJob;
 import lombok.RequiredArgsConstructor;
-import net.fortuna.ical4j.data.CalendarOutputter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/birthday")
 public class BirthdayCalEndpoint {
+    private static final String GZIP = "gzip";
+
     private final BirthdayICalCacheJob iCalService;
 
+    /**
+     * Serve the pre-rendered calendar.
+     * Since the response carries an ETag and Last-Modified, Spring answers conditional requests
+     * which match with a 304, without sending the body.
+     */
     @GetMapping(
             value = "/calendar.ics",
             produces = "text/calendar"
     )
-    public byte[] getCalendarFile() throws IOException {
-        var outputter = new CalendarOutputter();
-        var sw = new ByteArrayOutputStream();
+    public ResponseEntity<DataBuffer> getCalendarFile(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        var calendar = iCalService.getRenderedCalendar();
+        var response = ResponseEntity.ok()
+                .lastModified(calendar.getLastModified())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+
+        var gzipped = calendar.getGzippedBody();
+        if (gzipped.isPresent() && acceptsGzip(acceptEncoding)) {
+            return response
+                    .eTag(calendar.getGzippedEtag())
+                    .header(HttpHeaders.CONTENT_ENCODING, GZIP)
+                    .body(DefaultDataBufferFactory.sharedInstance.wrap(gzipped.get()));
+        }
+        return response
+                .eTag(calendar.getEtag())
+                .body(DefaultDataBufferFactory.sharedInstance.wrap(calendar.getBody()));
+    }
 
-        var calendar = iCalService.getCurrentCalendar();
-        outputter.output(calendar, sw);
-        return sw.toByteArray();
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.split(",")) {
+            var parts = coding.split(";");
+            if (parts[0].trim().equalsIgnoreCase(GZIP)) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 }
@@ -0,0 +1,170 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A read-through cache in front of another Persistence.
+ * Values are cached as JSON trees, so every retrieve still gets its own copy of the object,
+ * but skips reading and parsing the stored value again.
+ * Before a cached value is used, the key's {@link Persistence#getVersion(String) version} is checked,
+ * so changes made behind this cache's back, such as editing a file by hand, are picked up.
+ * If the delegate doesn't track versions, cached values are trusted until they are overwritten.
+ * Hits and misses of retrieves are published as the `persistence.cache.hits` and `persistence.cache.misses` metrics.
+ */
+@RequiredArgsConstructor
+public class CachingPersistence implements Persistence, MeterBinder {
+    private final Persistence delegate;
+    private final ObjectMapper om;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @Override
+    public Mono<Void> store(String key, Object value) {
+        return Mono.<JsonNode>fromCallable(() -> om.valueToTree(value))
+                .flatMap(tree -> delegate.store(key, value)
+                        .then(currentVersion(key))
+                        .doOnNext(version -> cache.put(key, new Entry(tree, version.orElse(null)))))
+                .doOnError(ex -> cache.remove(key))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> storeEntries(String key, Map<String, ?> entries) {
+        return delegate.storeEntries(key, entries)
+                .doFinally(signal -> cache.remove(key));
+    }
+
+    @Override
+    public Mono<Void> storeEntry(String key, String id, Object value, Supplier<Map<String, ?>> entries) {
+        return delegate.storeEntry(key, id, value, entries)
+                .doFinally(signal -> cache.remove(key));
+    }
+
+    @Override
+    public Mono<Void> removeEntry(String key, String id, Supplier<Map<String, ?>> entries) {
+        return delegate.removeEntry(key, id, entries)
+                .doFinally(signal -> cache.remove(key));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+        return lookup(key)
+                .flatMap(tree -> Mono.fromCallable(() -> om.readerFor(clazz).readValue(tree)));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+        return lookup(key)
+                .flatMap(tree -> Mono.fromCallable(() -> om.readerFor(clazz).readValue(tree)));
+    }
+
+    @Override
+    public Mono<Boolean> hasKey(String key) {
+        return currentVersion(key)
+                .flatMap(version -> {
+                    if (getIfCurrent(key, version) != null) {
+                        return Mono.just(true);
+                    }
+                    return delegate.hasKey(key);
+                });
+    }
+
+    @Override
+    public Mono<Object> getVersion(String key) {
+        return delegate.getVersion(key);
+    }
+
+    @Override
+    public Mono<Void> flush(String key) {
+        return delegate.flush(key);
+    }
+
+    @Override
+    public Mono<Void> flush() {
+        return delegate.flush();
+    }
+
+    /**
+     * Get the tree for a key, from the cache if it is still current, or else from the delegate.
+     */
+    private Mono<JsonNode> lookup(String key) {
+        return currentVersion(key)
+                .flatMap(version -> {
+                    var cached = getIfCurrent(key, version);
+                    if (cached != null) {
+                        hits.increment();
+                        return Mono.just(cached.tree());
+                    }
+                    misses.increment();
+                    // The version is read before the value, so if the value changes in between,
+                    // it is cached under the old version, and simply reloaded next time.
+                    return delegate.retrieve(key, JsonNode.class)
+                            .doOnNext(tree -> cache.put(key, new Entry(tree, version.orElse(null))))
+                            .switchIfEmpty(Mono.fromRunnable(() -> cache.remove(key)));
+                });
+    }
+
+    /**
+     * Get the cached entry for a key, if it is still current.
+     * This doesn't count as a hit or a miss; only retrieves are counted.
+     */
+    private Entry getIfCurrent(String key, Optional<Object> version) {
+        var entry = cache.get(key);
+        if (entry != null && Objects.equals(entry.version(), version.orElse(null))) {
+            return entry;
+        }
+        return null;
+    }
+
+    private Mono<Optional<Object>> currentVersion(String key) {
+        return delegate.getVersion(key)
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Forget every cached value, so the next retrieve of each key goes to the delegate.
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("persistence.cache.hits", hits, LongAdder::sum)
+                .description("Persistence lookups served from the cache")
+                .register(registry);
+        FunctionCounter.builder("persistence.cache.misses", misses, LongAdder::sum)
+                .description("Persistence lookups which went to the underlying storage")
+                .register(registry);
+        Gauge.builder("persistence.cache.size", cache, Map::size)
+                .description("Number of keys with a cached value")
+                .register(registry);
+    }
+
+    private record Entry(JsonNode tree, Object version) {}
+}
@@ -2,79 +2,277 @@ package com.github.milomarten.fracktail4.persistence;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
-@RequiredArgsConstructor
+/**
+ * A Persistence which stores each key as a JSON file in a folder.
+ * Writes are atomic: the value is written to a temporary file, which then replaces the real one
+ * in a single move, so a crash never leaves a half-written file, and readers always see a complete one.
+ * Stores to the same key are serialized, so concurrent writes cannot interleave.
+ * Each key can be given its own {@link Durability}, to trade safety for speed on frequently written keys.
+ * Values are written in a single {@link PersistenceFormat}, but any number of other formats can still be read.
+ * The format of a file is detected from its contents, and the next store of that key rewrites it in the
+ * current format, so switching formats migrates files as they are used.
+ */
 @Slf4j
 public class FilePersistence implements Persistence {
-    private static final String FILE_SUFFIX = ".json";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int LOCK_STRIPES = 16;
 
-    private final ObjectMapper om;
     private final String baseFolderName;
-    private File baseFolder;
+    private final PersistenceFormat format;
+    /**
+     * Every format which can be read, starting with the one that is written.
+     */
+    private final List<PersistenceFormat> formats;
+    private final Durability defaultDurability;
+    private final Map<String, Durability> durabilities = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    private volatile Path baseFolder;
 
-    private File getBaseFolder() {
+    public FilePersistence(ObjectMapper om, String baseFolderName) {
+        this(om, baseFolderName, Durability.FSYNC);
+    }
+
+    public FilePersistence(ObjectMapper om, String baseFolderName, Durability defaultDurability) {
+        this(baseFolderName, defaultDurability, JacksonFormat.json(om));
+    }
+
+    /**
+     * Create a FilePersistence with a specific format.
+     * @param baseFolderName The folder to keep files in.
+     * @param defaultDurability The durability of keys which weren't given their own.
+     * @param format The format to write values in.
+     * @param readableFormats Other formats which existing files may be in.
+     */
+    public FilePersistence(String baseFolderName, Durability defaultDurability,
+                           PersistenceFormat format, PersistenceFormat... readableFormats) {
+        this.baseFolderName = baseFolderName;
+        this.format = format;
+        var formats = new ArrayList<PersistenceFormat>();
+        formats.add(format);
+        formats.addAll(Arrays.asList(readableFormats));
+        this.formats = List.copyOf(formats);
+        this.defaultDurability = defaultDurability;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Change how durable stores to a specific key are.
+     * @param key The key to change.
+     * @param durability The durability to use for that key from now on.
+     */
+    public void setDurability(String key, Durability durability) {
+        durabilities.put(key, durability);
+    }
+
+    public Durability getDurability(String key) {
+        return durabilities.getOrDefault(key, defaultDurability);
+    }
+
+    private Path getBaseFolder() throws IOException {
         if (baseFolder == null) {
-            baseFolder = new File(this.baseFolderName);
-            if (baseFolder.exists() && baseFolder.isFile()) {
+            var folder = Path.of(this.baseFolderName);
+            if (Files.exists(folder) && !Files.isDirectory(folder)) {
                 throw new IllegalArgumentException("Base folder is an existing file. Cannot be used");
-            } else if (!baseFolder.exists()) {
-                baseFolder.mkdirs();
             }
+            baseFolder = Files.createDirectories(folder);
         }
         return baseFolder;
     }
 
-    private File getChildFile(String key) {
-        return new File(getBaseFolder(), key + FILE_SUFFIX);
+    private Path getChildFile(String key, PersistenceFormat format) throws IOException {
+        return getBaseFolder().resolve(key + format.getExtension());
+    }
+
+    /**
+     * Find the file holding a key, in any readable format.
+     * @return The file, or null if the key has none.
+     */
+    private Path findChildFile(String key) throws IOException {
+        for (var format : formats) {
+            var child = getChildFile(key, format);
+            if (Files.isRegularFile(child)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private PersistenceFormat detectFormat(Path child, byte[] data) throws IOException {
+        for (var format : formats) {
+            if (format.isFormatOf(data)) {
+                return format;
+            }
+        }
+        throw new IOException("Unrecognized format in file " + child.toAbsolutePath());
+    }
+
+    private <T> T read(String key, FormatReader<T> reader) throws IOException {
+        var child = findChildFile(key);
+        if (child == null) {
+            return null;
+        }
+        log.info("Retrieving from file {}", child.toAbsolutePath());
+        var data = Files.readAllBytes(child);
+        return reader.read(detectFormat(child, data), data);
+    }
+
+    private ReentrantLock getLock(String key) {
+        int hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
     }
 
     @Override
     public Mono<Void> store(String key, Object value) {
         return Mono.fromCallable(() -> {
-            var child = getChildFile(key);
-            if (!child.exists()) {
-                child.createNewFile();
+            // Serialize outside the lock; only the file shuffling needs to be exclusive.
+            var bytes = format.write(value);
+            var lock = getLock(key);
+            lock.lock();
+            try {
+                var child = getChildFile(key, format);
+                log.info("Storing in file {}", child.toAbsolutePath());
+                writeAtomically(child, bytes, getDurability(key));
+                removeOtherFormats(key);
+            } finally {
+                lock.unlock();
             }
-            log.info("Storing in file {}", child.getAbsolutePath());
-            om.writeValue(child, value);
             return null;
         });
     }
 
+    static void writeAtomically(Path target, byte[] bytes, Durability durability) throws IOException {
+        var temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try {
+            try (var channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                var buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (durability == Durability.FSYNC) {
+                    channel.force(true);
+                }
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                log.warn("Atomic move is not supported for {}, falling back to a plain replace", target.toAbsolutePath());
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        if (durability == Durability.FSYNC) {
+            forceDirectory(target.getParent());
+        }
+    }
+
+    /**
+     * Delete any copies of a key in other formats, now that it has been written in the current one.
+     */
+    private void removeOtherFormats(String key) throws IOException {
+        for (var other : formats) {
+            if (other.getExtension().equals(format.getExtension())) {
+                continue;
+            }
+            var old = getChildFile(key, other);
+            if (Files.deleteIfExists(old)) {
+                log.info("Migrated {} to {}", old.toAbsolutePath(), format.getExtension());
+            }
+        }
+    }
+
+    /**
+     * Make the rename itself durable, by syncing the folder it happened in.
+     * Not every platform allows opening a folder, in which case this is skipped.
+     */
+    private static void forceDirectory(Path folder) {
+        try (var channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ex) {
+            log.debug("Unable to sync folder {}", folder.toAbsolutePath(), ex);
+        }
+    }
+
     @Override
     public <T> Mono<T> retrieve(String key, Class<T> clazz) {
-        return Mono.fromCallable(() -> {
-            var child = getChildFile(key);
-            if (!child.exists()) {
-                return null;
-            }
-            log.info("Retrieving from file {}", child.getAbsolutePath());
-            return om.readValue(child, clazz);
-        });
+        return Mono.fromCallable(() -> read(key, (format, data) -> format.read(data, clazz)));
     }
 
     @Override
     public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
-        return Mono.fromCallable(() -> {
-            var child = getChildFile(key);
-            if (!child.exists()) {
-                return null;
-            }
-            log.info("Retrieving from file {}", child.getAbsolutePath());
-            return om.readValue(child, clazz);
-        });
+        return Mono.fromCallable(() -> read(key, (format, data) -> format.read(data, clazz)));
     }
 
     @Override
     public Mono<Boolean> hasKey(String key) {
+        return Mono.fromCallable(() -> findChildFile(key) != null);
+    }
+
+    /**
+     * Get the version of a key's file, from its attributes.
+     * Since every store replaces the file, the file's identity changes along with its modification time and size.
+     */
+    @Override
+    public Mono<Object> getVersion(String key) {
         return Mono.fromCallable(() -> {
-            var child = getChildFile(key);
-            return child.exists() && child.isFile();
+            var child = findChildFile(key);
+            if (child == null) {
+                return null;
+            }
+            try {
+                var attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                return new FileVersion(attributes.lastModifiedTime(), attributes.size(), attributes.fileKey());
+            } catch (NoSuchFileException ex) {
+                return null;
+            }
         });
     }
+
+    private record FileVersion(FileTime modified, long size, Object fileKey) {}
+
+    @FunctionalInterface
+    private interface FormatReader<T> {
+        T read(PersistenceFormat format, byte[] data) throws IOException;
+    }
+
+    /**
+     * How hard a store tries to make sure its value survives a crash.
+     * Either way, a store never leaves a partially written file behind.
+     */
+    public enum Durability {
+        /**
+         * Flush the value and the rename to disk before the store completes.
+         * A completed store survives power loss.
+         */
+        FSYNC,
+        /**
+         * Leave flushing to the operating system.
+         * Faster, but a store may be lost, in favor of the previous value, if the machine crashes soon after.
+         */
+        BEST_EFFORT
+    }
 }
@@ -2,49 +2,77 @@ package com.github.milomarten.fracktail4.persistence;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
-import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
-import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
-@RequiredArgsConstructor
+/**
+ * A Persistence which keeps everything in memory.
+ * Values are serialized when stored, so later changes to the stored object are not seen, and every
+ * retrieve gets its own copy, just like a real backend. Safe to use from any number of threads at once.
+ * <p>
+ * To benchmark the rest of the pipeline against realistic I/O, every operation can be delayed by a fixed
+ * latency, plus a random jitter of up to the given amount.
+ */
 public class HashmapPersistence implements Persistence {
-    private final Map<String, String> store = new HashMap<>();
+    private final Map<String, byte[]> store = new ConcurrentHashMap<>();
     private final ObjectMapper om;
+    private final long latencyNanos;
+    private final long jitterNanos;
+
+    public HashmapPersistence(ObjectMapper om) {
+        this(om, Duration.ZERO, Duration.ZERO);
+    }
+
+    /**
+     * Create a HashmapPersistence which simulates I/O delays.
+     * @param om The mapper to serialize values with.
+     * @param latency The minimum time each operation takes.
+     * @param jitter The most extra time, chosen at random, each operation can take.
+     */
+    public HashmapPersistence(ObjectMapper om, Duration latency, Duration jitter) {
+        this.om = om;
+        this.latencyNanos = latency.toNanos();
+        this.jitterNanos = jitter.toNanos();
+    }
 
     @Override
     public Mono<Void> store(String key, Object value) {
-        return Mono.fromCallable(() -> store.put(key, om.writeValueAsString(value)))
+        return delayed(Mono.fromCallable(() -> store.put(key, om.writeValueAsBytes(value))))
                 .then();
     }
 
     @Override
     public <T> Mono<T> retrieve(String key, Class<T> clazz) {
-        return Mono.fromCallable(() -> {
-            if (store.containsKey(key)) {
-                return om.readValue(store.get(key), clazz);
-            } else {
-                return null;
-            }
-        });
+        return delayed(Mono.fromCallable(() -> {
+            var data = store.get(key);
+            return data == null ? null : om.readValue(data, clazz);
+        }));
     }
 
     @Override
     public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
-        return Mono.fromCallable(() -> {
-            if (store.containsKey(key)) {
-                return om.readValue(store.get(key), clazz);
-            } else {
-                return null;
-            }
-        });
+        return delayed(Mono.fromCallable(() -> {
+            var data = store.get(key);
+            return data == null ? null : om.readValue(data, clazz);
+        }));
     }
 
     @Override
     public Mono<Boolean> hasKey(String key) {
-        return Mono.fromSupplier(() -> store.containsKey(key));
+        return delayed(Mono.fromSupplier(() -> store.containsKey(key)));
+    }
+
+    private <T> Mono<T> delayed(Mono<T> operation) {
+        if (latencyNanos == 0 && jitterNanos == 0) {
+            return operation;
+        }
+        return Mono.defer(() -> {
+            long delay = latencyNanos + (jitterNanos == 0 ? 0 : ThreadLocalRandom.current().nextLong(jitterNanos + 1));
+            return Mono.delay(Duration.ofNanos(delay)).then(operation);
+        });
     }
 }
@@ -0,0 +1,65 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.format.InputAccessor;
+import com.fasterxml.jackson.core.format.MatchStrength;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+
+/**
+ * A PersistenceFormat backed by a Jackson ObjectMapper.
+ * The binary formats are copies of an existing mapper, so any modules registered on it, such as
+ * the Discord serializers, work the same in every format.
+ */
+@RequiredArgsConstructor
+public class JacksonFormat implements PersistenceFormat {
+    private final ObjectMapper mapper;
+    @Getter private final String extension;
+
+    /**
+     * Plain JSON, which is easy to read and edit by hand.
+     * @param om The mapper to use.
+     * @return The JSON format.
+     */
+    public static JacksonFormat json(ObjectMapper om) {
+        return new JacksonFormat(om, ".json");
+    }
+
+    /**
+     * Smile, Jackson's binary form of JSON, which is smaller and faster to read and write.
+     * @param om The mapper to copy configuration and modules from.
+     * @return The Smile format.
+     */
+    public static JacksonFormat smile(ObjectMapper om) {
+        return new JacksonFormat(om.copyWith(new SmileFactory()), ".smile");
+    }
+
+    @Override
+    public boolean isFormatOf(byte[] data) {
+        try {
+            var strength = mapper.getFactory().hasFormat(new InputAccessor.Std(data));
+            return strength != null && strength.ordinal() >= MatchStrength.WEAK_MATCH.ordinal();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public byte[] write(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public <T> T read(byte[] data, Class<T> clazz) throws IOException {
+        return mapper.readValue(data, clazz);
+    }
+
+    @Override
+    public <T> T read(byte[] data, TypeReference<T> clazz) throws IOException {
+        return mapper.readValue(data, clazz);
+    }
+}
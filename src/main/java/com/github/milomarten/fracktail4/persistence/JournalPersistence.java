@@ -0,0 +1,419 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A Persistence which records every change to a key as a line appended to that key's journal,
+ * rather than rewriting the whole value.
+ * Collections stored with {@link #storeEntries(String, Map)} can then be changed one entry at a time,
+ * so adding or removing an entry costs one small append, no matter how large the collection is.
+ * <p>
+ * Each key's state is replayed from its snapshot and journal the first time the key is used, and kept in memory
+ * after that. Once a journal grows past a threshold, it is compacted in the background: the current state is written
+ * as a new snapshot, and the journal is emptied. A journal whose last line was cut off by a crash is truncated
+ * back to its last complete change.
+ * <p>
+ * Keys which have never been written can be seeded from another Persistence, which allows switching over
+ * from a different storage without losing anything.
+ * <p>
+ * All file work happens on a separate scheduler, so callers on an event loop are never blocked.
+ */
+@Slf4j
+public class JournalPersistence implements Persistence, AutoCloseable {
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper om;
+    private final Path folder;
+    private final long compactThreshold;
+    private final FilePersistence.Durability durability;
+    private final Persistence seed;
+    private final Scheduler scheduler;
+    private final Map<String, Journal> journals = new ConcurrentHashMap<>();
+
+    public JournalPersistence(ObjectMapper om, String folderName, long compactThreshold) {
+        this(om, folderName, compactThreshold, FilePersistence.Durability.FSYNC, null, Schedulers.boundedElastic());
+    }
+
+    /**
+     * Create a JournalPersistence.
+     * @param om The mapper used to write the journal.
+     * @param folderName The folder to keep journals and snapshots in.
+     * @param compactThreshold The size, in bytes, a journal can reach before it is compacted.
+     * @param durability Whether each change is flushed to disk before it completes.
+     * @param seed A Persistence to load keys from the first time they are used, or null if there is none.
+     * @param scheduler The scheduler to read, write and compact journals on, since all of them block.
+     */
+    public JournalPersistence(ObjectMapper om, String folderName, long compactThreshold,
+                              FilePersistence.Durability durability, Persistence seed, Scheduler scheduler) {
+        this.om = om;
+        this.folder = Path.of(folderName);
+        this.compactThreshold = compactThreshold;
+        this.durability = durability;
+        this.seed = seed;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Mono<Void> store(String key, Object value) {
+        return getJournal(key)
+                .flatMap(journal -> append(journal, new JournalRecord(Operation.SET, null, toTree(value))));
+    }
+
+    @Override
+    public Mono<Void> storeEntries(String key, Map<String, ?> entries) {
+        return getJournal(key)
+                .flatMap(journal -> append(journal, new JournalRecord(Operation.REPLACE, null, toTree(entries))));
+    }
+
+    @Override
+    public Mono<Void> storeEntry(String key, String id, Object value, Supplier<Map<String, ?>> entries) {
+        return getJournal(key)
+                .flatMap(journal -> appendEntry(journal, new JournalRecord(Operation.PUT, id, toTree(value)), entries));
+    }
+
+    @Override
+    public Mono<Void> removeEntry(String key, String id, Supplier<Map<String, ?>> entries) {
+        return getJournal(key)
+                .flatMap(journal -> appendEntry(journal, new JournalRecord(Operation.REMOVE, id, null), entries));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+        return getJournal(key)
+                .flatMap(journal -> Mono.justOrEmpty(journal.current()))
+                .flatMap(tree -> Mono.fromCallable(() -> om.readerFor(clazz).readValue(tree)));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+        return getJournal(key)
+                .flatMap(journal -> Mono.justOrEmpty(journal.current()))
+                .flatMap(tree -> Mono.fromCallable(() -> om.readerFor(clazz).readValue(tree)));
+    }
+
+    @Override
+    public Mono<Boolean> hasKey(String key) {
+        return getJournal(key)
+                .map(journal -> journal.current() != null);
+    }
+
+    /**
+     * Compact every journal which has anything in it, regardless of size.
+     */
+    public void compactAll() {
+        journals.values().forEach(Journal::compact);
+    }
+
+    @Override
+    public void close() {
+        journals.values().forEach(Journal::close);
+    }
+
+    /**
+     * Open the channel a journal is written through.
+     */
+    FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private JsonNode toTree(Object value) {
+        return value == null ? NullNode.getInstance() : om.valueToTree(value);
+    }
+
+    private JsonNode toTree(Map<String, ?> entries) {
+        var tree = om.createObjectNode();
+        entries.forEach((id, value) -> tree.set(id, toTree(value)));
+        return tree;
+    }
+
+    private Mono<Void> append(Journal journal, JournalRecord change) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        journal.append(change);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .subscribeOn(scheduler);
+    }
+
+    private Mono<Void> appendEntry(Journal journal, JournalRecord change, Supplier<Map<String, ?>> entries) {
+        return Mono.<Void>fromRunnable(() -> {
+                    try {
+                        journal.appendEntry(change, () -> toTree(entries.get()));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .subscribeOn(scheduler);
+    }
+
+    /**
+     * Get the journal for a key, opening and replaying it if this is the first time the key is used.
+     * A key with no journal yet is seeded from the seed Persistence, if there is one.
+     */
+    private Mono<Journal> getJournal(String key) {
+        return Mono.fromCallable(() -> journals.computeIfAbsent(key, k -> {
+                    try {
+                        return new Journal(k);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }))
+                .subscribeOn(scheduler)
+                .flatMap(journal -> {
+                    if (seed == null || !journal.needsSeed()) {
+                        return Mono.just(journal);
+                    }
+                    return seed.retrieve(key, JsonNode.class)
+                            .flatMap(tree -> Mono.fromCallable(() -> {
+                                journal.seed(tree);
+                                return null;
+                            }).subscribeOn(scheduler))
+                            .then(Mono.fromRunnable(journal::markSeeded))
+                            .thenReturn(journal);
+                });
+    }
+
+    /**
+     * The state of a single key, and the journal it is recorded in.
+     * A key either holds a single value, set with store, or a collection of entries.
+     */
+    private class Journal {
+        private final String key;
+        private final Path journalFile;
+        private final Path snapshotFile;
+        private final FileChannel channel;
+
+        private JsonNode value;
+        private LinkedHashMap<String, JsonNode> entries;
+        private long size;
+        private boolean compacting;
+        private boolean unseeded;
+        private boolean broken;
+
+        Journal(String key) throws IOException {
+            this.key = key;
+            Files.createDirectories(folder);
+            this.journalFile = folder.resolve(key + JOURNAL_SUFFIX);
+            this.snapshotFile = folder.resolve(key + SNAPSHOT_SUFFIX);
+
+            if (Files.exists(snapshotFile)) {
+                apply(om.readValue(snapshotFile.toFile(), JournalRecord.class));
+            }
+            this.channel = openChannel(journalFile);
+            this.size = replay();
+            channel.position(size);
+            this.unseeded = size == 0 && !Files.exists(snapshotFile);
+        }
+
+        synchronized boolean needsSeed() {
+            return unseeded;
+        }
+
+        synchronized void markSeeded() {
+            unseeded = false;
+        }
+
+        /**
+         * Use a value from the seed Persistence, unless something has already been stored.
+         */
+        synchronized void seed(JsonNode tree) throws IOException {
+            if (unseeded && value == null && entries == null) {
+                log.info("Seeding journal for {} from existing persistence", key);
+                append(new JournalRecord(Operation.SET, null, tree));
+            }
+            unseeded = false;
+        }
+
+        /**
+         * Apply every complete change in the journal.
+         * @return The length of the journal, up to the end of its last complete change.
+         */
+        private long replay() throws IOException {
+            var data = Files.readAllBytes(journalFile);
+            int start = 0;
+            int count = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] == NEWLINE) {
+                    JournalRecord change;
+                    try {
+                        change = om.readValue(data, start, i - start, JournalRecord.class);
+                    } catch (IOException ex) {
+                        log.warn("Corrupt change in journal {} at byte {}, discarding the rest", journalFile.toAbsolutePath(), start, ex);
+                        break;
+                    }
+                    if (canApply(change)) {
+                        apply(change);
+                    } else {
+                        log.warn("Skipping {} of entry {} in journal {} at byte {}, since the key doesn't hold entries",
+                                change.operation(), change.id(), journalFile.toAbsolutePath(), start);
+                    }
+                    start = i + 1;
+                    count++;
+                }
+            }
+            if (start < data.length) {
+                log.warn("Truncating journal {} from {} to {} bytes", journalFile.toAbsolutePath(), data.length, start);
+                channel.truncate(start);
+            }
+            log.info("Replayed {} changes for {}", count, key);
+            return start;
+        }
+
+        /**
+         * Check whether a change makes sense for the current state.
+         * Changes to single entries only apply to a key which holds a collection of entries.
+         */
+        private boolean canApply(JournalRecord change) {
+            return switch (change.operation()) {
+                case SET, REPLACE -> true;
+                case PUT, REMOVE -> entries != null;
+            };
+        }
+
+        private void apply(JournalRecord change) {
+            switch (change.operation()) {
+                case SET -> {
+                    value = change.value();
+                    entries = null;
+                }
+                case REPLACE -> {
+                    value = null;
+                    entries = new LinkedHashMap<>();
+                    change.value().fields().forEachRemaining(e -> entries.put(e.getKey(), e.getValue()));
+                }
+                case PUT -> entries.put(change.id(), change.value());
+                case REMOVE -> entries.remove(change.id());
+            }
+        }
+
+
+        /**
+         * Get the key's current value. A collection is returned as an array of its entries.
+         */
+        synchronized JsonNode current() {
+            if (entries != null) {
+                var array = om.createArrayNode();
+                entries.values().forEach(array::add);
+                return array;
+            }
+            return value;
+        }
+
+        /**
+         * Record a change to a single entry. If the key doesn't hold entries, the whole collection is recorded instead.
+         * Checking and appending happen under the same lock, so a concurrent store can't get in between.
+         */
+        synchronized void appendEntry(JournalRecord change, Supplier<JsonNode> entries) throws IOException {
+            append(canApply(change) ? change : new JournalRecord(Operation.REPLACE, null, entries.get()));
+        }
+
+        synchronized void append(JournalRecord change) throws IOException {
+            if (!canApply(change)) {
+                throw new IllegalStateException("Can't " + change.operation() + " an entry of " + key + ", which doesn't hold entries");
+            }
+            if (broken) {
+                throw new IOException("Journal for " + key + " couldn't recover from an earlier failed write");
+            }
+            var line = om.writeValueAsBytes(change);
+            var buffer = ByteBuffer.allocate(line.length + 1).put(line).put(NEWLINE).flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (durability == FilePersistence.Durability.FSYNC) {
+                    channel.force(false);
+                }
+            } catch (IOException | RuntimeException ex) {
+                rollBack(ex);
+                throw ex;
+            }
+            apply(change);
+            size += line.length + 1;
+            if (size > compactThreshold && !compacting) {
+                compacting = true;
+                scheduler.schedule(this::compact);
+            }
+        }
+
+        /**
+         * Cut a failed append back off the journal, so the next append doesn't land on the same line as its remains,
+         * and a change which was never applied isn't replayed on restart.
+         * If even that fails, the journal refuses further appends, rather than writing changes which replay would discard.
+         */
+        private void rollBack(Exception cause) {
+            try {
+                channel.truncate(size);
+                channel.position(size);
+                if (durability == FilePersistence.Durability.FSYNC) {
+                    channel.force(false);
+                }
+            } catch (IOException | RuntimeException ex) {
+                log.error("Unable to roll back failed append to journal for {}, refusing further changes", key, ex);
+                cause.addSuppressed(ex);
+                broken = true;
+            }
+        }
+
+        /**
+         * Write the current state as a snapshot, and empty the journal.
+         * If this is interrupted after the snapshot is written, replaying the old journal on top of it
+         * gives the same state, since every change overwrites what it touches.
+         */
+        synchronized void compact() {
+            compacting = false;
+            if (size == 0) {
+                return;
+            }
+            try {
+                var snapshot = entries != null ?
+                        new JournalRecord(Operation.REPLACE, null, om.valueToTree(entries)) :
+                        new JournalRecord(Operation.SET, null, value);
+                FilePersistence.writeAtomically(snapshotFile, om.writeValueAsBytes(snapshot), FilePersistence.Durability.FSYNC);
+                channel.truncate(0);
+                channel.position(0);
+                channel.force(true);
+                log.info("Compacted journal for {} from {} bytes", key, size);
+                size = 0;
+            } catch (IOException ex) {
+                log.error("Unable to compact journal for {}", key, ex);
+            }
+        }
+
+        synchronized void close() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Unable to close journal for {}", key, ex);
+            }
+        }
+    }
+
+    private enum Operation {
+        SET, REPLACE, PUT, REMOVE
+    }
+
+    private record JournalRecord(Operation operation, String id, JsonNode value) {}
+}
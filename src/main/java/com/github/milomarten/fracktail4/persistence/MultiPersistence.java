@@ -1,22 +1,53 @@
 package com.github.milomarten.fracktail4.persistence;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * A fallback-chain type of Persistence that checks multiple places.
- * Retrieval will sequentially check each persistence supplied until one with the requested
- * object is present, which will be returned.
+ * Retrieval tries each persistence supplied in order, with a single retrieve each, until one
+ * has the requested object, which will be returned. An empty result, or an error, counts as a miss.
  * Storing will store in all persistence levels.
  * This is useful for migrating between persistence layers.
+ * <p>
+ * Optionally, lookups can be hedged: if the first persistence hasn't answered within a timeout,
+ * all the others are queried at once, rather than one after the other. Their results are still
+ * taken in priority order, so a hedged lookup returns the same value as a plain one, just sooner.
+ * <p>
+ * With read-repair on, a value found in a later persistence is copied into every earlier one which
+ * had nothing, so the next lookup is answered by the first. Earlier persistences which failed are left alone.
  */
-@RequiredArgsConstructor
+@Slf4j
 public class MultiPersistence implements Persistence {
     private final List<Persistence> persistences;
+    private final Duration hedgeAfter;
+    private final boolean readRepair;
+
+    public MultiPersistence(List<Persistence> persistences) {
+        this(persistences, null, true);
+    }
+
+    /**
+     * Create a MultiPersistence.
+     * @param persistences The persistences to use, in priority order.
+     * @param hedgeAfter How long to wait for the first persistence before querying the rest at once, or null to never hedge.
+     * @param readRepair If true, values found in a later persistence are stored in the earlier ones.
+     */
+    public MultiPersistence(List<Persistence> persistences, Duration hedgeAfter, boolean readRepair) {
+        this.persistences = List.copyOf(persistences);
+        this.hedgeAfter = hedgeAfter;
+        this.readRepair = readRepair;
+    }
 
     @Override
     public Mono<Void> store(String key, Object value) {
@@ -26,25 +57,138 @@ public class MultiPersistence implements Persistence {
     }
 
     @Override
-    public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+    public Mono<Void> storeEntries(String key, Map<String, ?> entries) {
         return Flux.fromIterable(persistences)
-                .filterWhen(p -> p.hasKey(key))
-                .next()
-                .flatMap(p -> p.retrieve(key, clazz));
+                .flatMap(p -> p.storeEntries(key, entries))
+                .then();
     }
 
     @Override
-    public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+    public Mono<Void> storeEntry(String key, String id, Object value, Supplier<Map<String, ?>> entries) {
+        return Flux.fromIterable(persistences)
+                .flatMap(p -> p.storeEntry(key, id, value, entries))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> removeEntry(String key, String id, Supplier<Map<String, ?>> entries) {
         return Flux.fromIterable(persistences)
-                .filterWhen(p -> p.hasKey(key))
-                .next()
-                .flatMap(p -> p.retrieve(key, clazz));
+                .flatMap(p -> p.removeEntry(key, id, entries))
+                .then();
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+        return lookup(key, p -> p.retrieve(key, clazz))
+                .doOnNext(hit -> repair(key, hit))
+                .map(Hit::value);
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+        return lookup(key, p -> p.retrieve(key, clazz))
+                .doOnNext(hit -> repair(key, hit))
+                .map(Hit::value);
     }
 
     @Override
     public Mono<Boolean> hasKey(String key) {
+        return lookup(key, p -> p.hasKey(key).filter(b -> b))
+                .hasElement();
+    }
+
+    @Override
+    public Mono<Void> flush(String key) {
+        return Flux.fromIterable(this.persistences)
+                .flatMap(p -> p.flush(key))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> flush() {
         return Flux.fromIterable(this.persistences)
-                .flatMap(p -> p.hasKey(key))
-                .any(p -> p);
+                .flatMap(Persistence::flush)
+                .then();
     }
+
+    /**
+     * Find the first persistence, in priority order, which has a result.
+     * @param fetch The query to make of each persistence. Empty means a miss.
+     * @return The result, along with which persistence it came from and which ones before it missed,
+     * or empty if every persistence missed.
+     */
+    private <T> Mono<Hit<T>> lookup(String key, Function<Persistence, Mono<T>> fetch) {
+        return Mono.defer(() -> {
+            var attempts = new ArrayList<Mono<Outcome<T>>>(persistences.size());
+            for (int i = 0; i < persistences.size(); i++) {
+                int layer = i;
+                var attempt = fetch.apply(persistences.get(i))
+                        .map(value -> new Outcome<>(layer, value, false))
+                        .defaultIfEmpty(new Outcome<>(layer, null, false))
+                        .onErrorResume(ex -> {
+                            log.warn("Error looking up {} in persistence layer {}, treating as a miss", key, layer, ex);
+                            return Mono.just(new Outcome<>(layer, null, true));
+                        });
+                attempts.add(hedgeAfter == null ? attempt : attempt.cache());
+            }
+            if (hedgeAfter == null || attempts.size() < 2) {
+                return firstHit(Flux.concat(attempts));
+            }
+            var hedges = Disposables.composite();
+            hedges.add(Mono.delay(hedgeAfter)
+                    .subscribe(tick -> attempts.subList(1, attempts.size())
+                            .forEach(attempt -> hedges.add(attempt.subscribe()))));
+            return firstHit(Flux.concat(attempts))
+                    .doFinally(signal -> hedges.dispose());
+        });
+    }
+
+    /**
+     * Take outcomes until the first hit, noting which layers before it had nothing.
+     * Layers which errored are not counted as having nothing, since they may have a newer value.
+     */
+    private static <T> Mono<Hit<T>> firstHit(Flux<Outcome<T>> outcomes) {
+        return outcomes
+                .takeUntil(Outcome::isHit)
+                .collectList()
+                .flatMap(list -> {
+                    if (list.isEmpty()) {
+                        return Mono.empty();
+                    }
+                    var last = list.get(list.size() - 1);
+                    if (!last.isHit()) {
+                        return Mono.empty();
+                    }
+                    var missed = list.subList(0, list.size() - 1).stream()
+                            .filter(outcome -> !outcome.errored())
+                            .map(Outcome::layer)
+                            .toList();
+                    return Mono.just(new Hit<>(last.layer(), last.value(), missed));
+                });
+    }
+
+    /**
+     * Copy a value found in a later persistence into the earlier ones which had nothing.
+     * Earlier persistences which failed are skipped, so a value they couldn't return isn't overwritten with an older one.
+     */
+    private <T> void repair(String key, Hit<T> hit) {
+        if (!readRepair || hit.missed().isEmpty()) {
+            return;
+        }
+        Flux.fromIterable(hit.missed())
+                .flatMap(layer -> persistences.get(layer).store(key, hit.value()))
+                .then()
+                .subscribe(
+                        null,
+                        ex -> log.warn("Unable to repair {} in earlier persistence layers", key, ex),
+                        () -> log.info("Repaired {} in persistence layers {} from layer {}", key, hit.missed(), hit.layer()));
+    }
+
+    private record Outcome<T>(int layer, T value, boolean errored) {
+        boolean isHit() {
+            return value != null;
+        }
+    }
+
+    private record Hit<T>(int layer, T value, List<Integer> missed) {}
 }
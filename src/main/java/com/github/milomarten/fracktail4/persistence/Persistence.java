@@ -3,6 +3,10 @@ package com.github.milomarten.fracktail4.persistence;
 import com.fasterxml.jackson.core.type.TypeReference;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.function.Supplier;
+
 public interface Persistence {
     Mono<Void> store(String key, Object value);
 
@@ -11,4 +15,73 @@ public interface Persistence {
     <T> Mono<T> retrieve(String key, TypeReference<T> clazz);
 
     Mono<Boolean> hasKey(String key);
+
+    /**
+     * Store a collection made of entries, each with its own ID.
+     * The collection is retrieved as a list of its values, in the order of the map.
+     * By default, this simply stores that list.
+     * @param key The key to store under.
+     * @param entries The entries, by ID.
+     * @return A Mono that completes when the entries are stored.
+     */
+    default Mono<Void> storeEntries(String key, Map<String, ?> entries) {
+        return store(key, new ArrayList<>(entries.values()));
+    }
+
+    /**
+     * Add or replace a single entry in a collection.
+     * Persistences which can record changes to single entries do so; the rest store the whole collection again.
+     * @param key The key of the collection.
+     * @param id The ID of the entry.
+     * @param value The new value of the entry.
+     * @param entries Supplies a snapshot of the whole collection, including this change, if it needs to be stored in full.
+     * @return A Mono that completes when the change is stored.
+     */
+    default Mono<Void> storeEntry(String key, String id, Object value, Supplier<Map<String, ?>> entries) {
+        return Mono.defer(() -> storeEntries(key, entries.get()));
+    }
+
+    /**
+     * Remove a single entry from a collection.
+     * Persistences which can record changes to single entries do so; the rest store the whole collection again.
+     * @param key The key of the collection.
+     * @param id The ID of the entry.
+     * @param entries Supplies a snapshot of the whole collection, including this change, if it needs to be stored in full.
+     * @return A Mono that completes when the change is stored.
+     */
+    default Mono<Void> removeEntry(String key, String id, Supplier<Map<String, ?>> entries) {
+        return Mono.defer(() -> storeEntries(key, entries.get()));
+    }
+
+    /**
+     * Get the current version of a key's stored value.
+     * A version is any value, compared with equals, which changes whenever the stored value does,
+     * such as a file's modification time. This lets callers cheaply check whether a value they already
+     * loaded is still current.
+     * By default, versions are not tracked, and this is always empty.
+     * @param key The key to check.
+     * @return The key's version, or empty if the key has no value, or versions are not tracked.
+     */
+    default Mono<Object> getVersion(String key) {
+        return Mono.empty();
+    }
+
+    /**
+     * Wait until everything stored under a key so far is durable.
+     * By default, stores are durable as soon as they complete, so this does nothing.
+     * @param key The key to wait on.
+     * @return A Mono that completes when the key's stores are durable.
+     */
+    default Mono<Void> flush(String key) {
+        return Mono.empty();
+    }
+
+    /**
+     * Wait until everything stored so far is durable.
+     * By default, stores are durable as soon as they complete, so this does nothing.
+     * @return A Mono that completes when all stores are durable.
+     */
+    default Mono<Void> flush() {
+        return Mono.empty();
+    }
 }
@@ -0,0 +1,30 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+import java.io.IOException;
+
+/**
+ * A way of turning values into bytes, and back again, for Persistences which store raw bytes.
+ * Formats can recognize their own output, so stored data can be read back without knowing
+ * ahead of time which format it was written in.
+ */
+public interface PersistenceFormat {
+    /**
+     * The file extension for data in this format, including the dot.
+     */
+    String getExtension();
+
+    /**
+     * Check if some data looks like it was written in this format.
+     * @param data The data to check.
+     * @return True if this format can likely read the data.
+     */
+    boolean isFormatOf(byte[] data);
+
+    byte[] write(Object value) throws IOException;
+
+    <T> T read(byte[] data, Class<T> clazz) throws IOException;
+
+    <T> T read(byte[] data, TypeReference<T> clazz) throws IOException;
+}
@@ -0,0 +1,245 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A Persistence that buffers stores, and writes them to another Persistence in the background.
+ * Stores to the same key within a window of each other are coalesced, so only the latest value is written.
+ * Storing completes as soon as the value is buffered; use {@link #flush(String)} or {@link #flush()}
+ * to wait until values are actually written. Retrieving a key waits for its pending value to be written first,
+ * so reads always see the latest store.
+ * Writes to a single key never overlap, and always happen in the order they were stored.
+ * If a write fails, it is retried after another window, unless a newer value was stored in the meantime.
+ * Closing this Persistence writes everything that is still buffered.
+ */
+@Slf4j
+public class WriteBehindPersistence implements Persistence, AutoCloseable {
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Persistence delegate;
+    private final Duration window;
+    private final Scheduler scheduler;
+    private final Map<String, KeyBuffer> buffers = new ConcurrentHashMap<>();
+
+    public WriteBehindPersistence(Persistence delegate, Duration window) {
+        this(delegate, window, Schedulers.boundedElastic());
+    }
+
+    public WriteBehindPersistence(Persistence delegate, Duration window, Scheduler scheduler) {
+        this.delegate = delegate;
+        this.window = window;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Mono<Void> store(String key, Object value) {
+        return Mono.fromRunnable(() -> buffers.computeIfAbsent(key, KeyBuffer::new).store(new Pending(value, false)));
+    }
+
+    @Override
+    public Mono<Void> storeEntries(String key, Map<String, ?> entries) {
+        return Mono.fromRunnable(() -> buffers.computeIfAbsent(key, KeyBuffer::new).store(new Pending(entries, true)));
+    }
+
+    /**
+     * Single entry changes are buffered as a snapshot of the whole collection, so they coalesce like any other store.
+     */
+    @Override
+    public Mono<Void> storeEntry(String key, String id, Object value, Supplier<Map<String, ?>> entries) {
+        return Mono.defer(() -> storeEntries(key, entries.get()));
+    }
+
+    @Override
+    public Mono<Void> removeEntry(String key, String id, Supplier<Map<String, ?>> entries) {
+        return Mono.defer(() -> storeEntries(key, entries.get()));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+        return flush(key).then(delegate.retrieve(key, clazz));
+    }
+
+    @Override
+    public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+        return flush(key).then(delegate.retrieve(key, clazz));
+    }
+
+    @Override
+    public Mono<Boolean> hasKey(String key) {
+        return Mono.defer(() -> {
+            var buffer = buffers.get(key);
+            if (buffer != null && buffer.hasPendingValue()) {
+                return Mono.just(true);
+            }
+            return delegate.hasKey(key);
+        });
+    }
+
+    @Override
+    public Mono<Object> getVersion(String key) {
+        return flush(key).then(delegate.getVersion(key));
+    }
+
+    /**
+     * Write the latest value of a key now, rather than waiting for its window to close.
+     * @param key The key to write.
+     * @return A Mono that completes once everything stored under the key so far has been written.
+     */
+    @Override
+    public Mono<Void> flush(String key) {
+        return Mono.defer(() -> {
+            var buffer = buffers.get(key);
+            return buffer == null ? Mono.empty() : buffer.flush();
+        });
+    }
+
+    /**
+     * Write every buffered value now.
+     * @return A Mono that completes once everything stored so far has been written.
+     */
+    @Override
+    public Mono<Void> flush() {
+        return Flux.fromIterable(buffers.values())
+                .flatMap(KeyBuffer::flush)
+                .then();
+    }
+
+    @Override
+    public void close() {
+        flush().block(CLOSE_TIMEOUT);
+    }
+
+    /**
+     * The buffered state of a single key.
+     * A buffer is either idle, waiting for its window to close, or writing. While writing, new stores
+     * wait for the write to finish, then a new window is started for them.
+     */
+    private class KeyBuffer {
+        private final String key;
+
+        private Pending latest;
+        private boolean dirty;
+        private boolean scheduled;
+        /**
+         * Completes when the currently running write does, or null if nothing is being written.
+         */
+        private Sinks.Empty<Void> writing;
+        /**
+         * Completes when the latest value is written.
+         */
+        private Sinks.Empty<Void> durable = Sinks.empty();
+
+        KeyBuffer(String key) {
+            this.key = key;
+        }
+
+        synchronized void store(Pending value) {
+            latest = value;
+            dirty = true;
+            if (!scheduled && writing == null) {
+                scheduleWrite();
+            }
+        }
+
+        synchronized boolean hasPendingValue() {
+            return dirty || writing != null;
+        }
+
+        Mono<Void> flush() {
+            return Mono.defer(() -> {
+                Mono<Void> inProgress;
+                synchronized (this) {
+                    if (writing == null && !dirty) {
+                        return Mono.empty();
+                    }
+                    inProgress = writing == null ? null : writing.asMono();
+                }
+                if (inProgress == null) {
+                    var started = tryStartWrite();
+                    // If another thread started writing first, check again.
+                    return started == null ? flush() : started;
+                }
+                // Wait for the current write, then check again for anything stored since.
+                return inProgress.onErrorResume(ex -> Mono.empty()).then(flush());
+            });
+        }
+
+        private void scheduleWrite() {
+            scheduled = true;
+            scheduler.schedule(this::onWindowClosed, window.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        private void onWindowClosed() {
+            synchronized (this) {
+                scheduled = false;
+            }
+            tryStartWrite();
+        }
+
+        /**
+         * Start writing the latest value, if there is one, and nothing else is being written.
+         * @return A Mono that completes when the write does, or null if no write was started.
+         */
+        private Mono<Void> tryStartWrite() {
+            Pending value;
+            Sinks.Empty<Void> sink;
+            synchronized (this) {
+                if (writing != null || !dirty) {
+                    return null;
+                }
+                value = latest;
+                latest = null;
+                dirty = false;
+                sink = durable;
+                writing = sink;
+                durable = Sinks.empty();
+            }
+            value.writeTo(delegate, key)
+                    .subscribe(null,
+                            ex -> onWriteFinished(value, sink, ex),
+                            () -> onWriteFinished(value, sink, null));
+            return sink.asMono();
+        }
+
+        private void onWriteFinished(Pending value, Sinks.Empty<Void> sink, Throwable error) {
+            synchronized (this) {
+                writing = null;
+                if (error != null && !dirty) {
+                    log.error("Error writing key {}, retrying", key, error);
+                    latest = value;
+                    dirty = true;
+                }
+                if (dirty && !scheduled) {
+                    scheduleWrite();
+                }
+            }
+            if (error == null) {
+                sink.tryEmitEmpty();
+            } else {
+                sink.tryEmitError(error);
+            }
+        }
+    }
+
+    /**
+     * A value waiting to be written, and whether it is a whole value or a collection of entries.
+     */
+    private record Pending(Object value, boolean entries) {
+        @SuppressWarnings("unchecked")
+        Mono<Void> writeTo(Persistence delegate, String key) {
+            return entries ? delegate.storeEntries(key, (Map<String, ?>) value) : delegate.store(key, value);
+        }
+    }
+}
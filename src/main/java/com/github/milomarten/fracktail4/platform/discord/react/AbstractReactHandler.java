@@ -90,6 +90,15 @@ public abstract class AbstractReactHandler<ID> implements DiscordHookSource {
 
     protected abstract Mono<Void> updatePersistence();
 
+    /**
+     * Persist a change to a single message.
+     * By default, this persists every message.
+     * @param idx The ID of the message which changed.
+     */
+    protected Mono<Void> updatePersistence(int idx) {
+        return updatePersistence();
+    }
+
     public Mono<Integer> publish(ReactMessage<ID> message) {
         if (message.getMessageId() != null) {
             for (int idx = 0; idx < this.roleReactMessages.size(); idx++) {
@@ -117,6 +126,7 @@ public abstract class AbstractReactHandler<ID> implements DiscordHookSource {
                                 String messageBody = getMessageBody(message); // Update the first's text message with a link to the second
                                 return connector.updateMessage(message.getChannelId(), message.getMessageId(), messageBody);
                             })
+                            .then(updatePersistence(firstIdx)) // Persist the first's new link.
                             .thenReturn(firstIdx)); // Return the root.
         }
 
@@ -126,7 +136,8 @@ public abstract class AbstractReactHandler<ID> implements DiscordHookSource {
                 .flatMap(id -> {
                     message.setMessageId(id);
                     this.roleReactMessages.add(message);
-                    return updatePersistence().thenReturn(this.roleReactMessages.size() - 1);
+                    var idx = this.roleReactMessages.size() - 1;
+                    return updatePersistence(idx).thenReturn(idx);
                 });
     }
 
@@ -151,6 +162,7 @@ public abstract class AbstractReactHandler<ID> implements DiscordHookSource {
                                     String messageBody = getMessageBody(nu); // Update the first's text message with a link to the second
                                     return connector.updateMessage(nu.getChannelId(), nu.getMessageId(), messageBody);
                                 })
+                                .then(updatePersistence(firstIdx))
                                 .thenReturn(firstIdx));
             }
         }
@@ -165,7 +177,7 @@ public abstract class AbstractReactHandler<ID> implements DiscordHookSource {
                 .thenReturn(idx)
                 .flatMap(i -> {
                     this.roleReactMessages.set(i, nu);
-                    return updatePersistence().thenReturn(i);
+                    return updatePersistence(i).thenReturn(i);
                 });
     }
 
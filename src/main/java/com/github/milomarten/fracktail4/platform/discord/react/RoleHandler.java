@@ -11,7 +11,9 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Component
 @Slf4j
@@ -19,6 +21,7 @@ import java.util.List;
 public class RoleHandler extends AbstractReactHandler<Snowflake> implements PersistenceBean {
     private final Persistence persistence;
 
+    private static final String ROLE_REACTS_KEY = "role-reacts";
     private static final TypeReference<List<ReactMessage<Snowflake>>> ROLE_REACT_TYPE = new TypeReference<>() {  };
 
     @PostConstruct
@@ -38,12 +41,35 @@ public class RoleHandler extends AbstractReactHandler<Snowflake> implements Pers
 
     @Override
     protected Mono<Void> updatePersistence() {
-        return persistence.store("role-reacts", this.getRoleReactMessages());
+        return persistence.storeEntries(ROLE_REACTS_KEY, entries());
+    }
+
+    @Override
+    protected Mono<Void> updatePersistence(int idx) {
+        return persistence.storeEntry(ROLE_REACTS_KEY, String.valueOf(idx), copy(this.getRoleReactMessages().get(idx)), this::entries);
+    }
+
+    /**
+     * Get a snapshot of the messages, keyed by their ID.
+     * Deleted messages are kept as nulls, so the IDs of the others don't change when reloaded.
+     * The messages are copied, since persistence may write them later, while the originals keep changing.
+     */
+    private Map<String, ReactMessage<Snowflake>> entries() {
+        var entries = new LinkedHashMap<String, ReactMessage<Snowflake>>();
+        var messages = this.getRoleReactMessages();
+        for (int idx = 0; idx < messages.size(); idx++) {
+            entries.put(String.valueOf(idx), copy(messages.get(idx)));
+        }
+        return entries;
+    }
+
+    private static ReactMessage<Snowflake> copy(ReactMessage<Snowflake> message) {
+        return message == null ? null : new ReactMessage<>(message);
     }
 
     @Override
     public Mono<Void> load() {
-        return this.persistence.retrieve("role-reacts", ROLE_REACT_TYPE)
+        return this.persistence.retrieve(ROLE_REACTS_KEY, ROLE_REACT_TYPE)
                 .doOnSuccess(reacts -> {
                     if (reacts != null) {
                         log.info("Loaded {} existing role reacts from persistence", reacts.size());
@@ -56,6 +82,6 @@ public class RoleHandler extends AbstractReactHandler<Snowflake> implements Pers
 
     @Override
     public Mono<Void> store() {
-        return updatePersistence();
+        return updatePersistence().then(persistence.flush(ROLE_REACTS_KEY));
     }
 }
@@ -0,0 +1,176 @@
+package com.github.milomarten.fracktail4.birthday;
+
+import com.github.milomarten.fracktail4.birthday.v2.BirthdayEventInstance;
+import com.github.milomarten.fracktail4.birthday.v2.HardCodedBirthdayEventInstance;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BirthdayCalendarTest {
+    private static BirthdayEventInstance birthday(String name, int month, int day) {
+        return new HardCodedBirthdayEventInstance(MonthDay.of(month, day), null, name, Set.of());
+    }
+
+    @Test
+    public void emptyCalendarHasNoNextOrPrevious() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        assertTrue(calendar.getNextBirthday(LocalDate.of(2023, 6, 1)).isEmpty());
+        assertTrue(calendar.getPreviousBirthday(LocalDate.of(2023, 6, 1)).isEmpty());
+    }
+
+    @Test
+    public void nextBirthdayLaterThisYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var jan = birthday("Jan", 1, 1);
+        var oct = birthday("Oct", 10, 1);
+        var dec = birthday("Dec", 12, 31);
+        calendar.addBirthday(jan);
+        calendar.addBirthday(oct);
+        calendar.addBirthday(dec);
+
+        var next = calendar.getNextBirthday(LocalDate.of(2023, 7, 1)).orElseThrow();
+        assertEquals(List.of(oct), next.celebrators());
+        assertEquals(LocalDate.of(2023, 10, 1), next.when());
+
+        var afterOct = calendar.getNextBirthday(LocalDate.of(2023, 10, 1)).orElseThrow();
+        assertEquals(List.of(dec), afterOct.celebrators());
+        assertEquals(LocalDate.of(2023, 12, 31), afterOct.when());
+    }
+
+    @Test
+    public void nextBirthdayWrapsToNextYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var jan = birthday("Jan", 1, 1);
+        calendar.addBirthday(jan);
+
+        var next = calendar.getNextBirthday(LocalDate.of(2023, 12, 31)).orElseThrow();
+        assertEquals(LocalDate.of(2024, 1, 1), next.when());
+
+        var sameDay = calendar.getNextBirthday(LocalDate.of(2023, 1, 1)).orElseThrow();
+        assertEquals(LocalDate.of(2024, 1, 1), sameDay.when());
+    }
+
+    @Test
+    public void previousBirthdayWrapsToLastYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var dec = birthday("Dec", 12, 31);
+        calendar.addBirthday(dec);
+
+        var previous = calendar.getPreviousBirthday(LocalDate.of(2023, 6, 1)).orElseThrow();
+        assertEquals(List.of(dec), previous.celebrators());
+        assertEquals(LocalDate.of(2022, 12, 31), previous.when());
+    }
+
+    @Test
+    public void removingUpdatesNextAndPrevious() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var mar = birthday("Mar", 3, 6);
+        var apr = birthday("Apr", 4, 2);
+        var may = birthday("May", 5, 20);
+        calendar.addBirthday(mar);
+        calendar.addBirthday(apr);
+        calendar.addBirthday(may);
+
+        assertTrue(calendar.removeBirthday(apr));
+        assertFalse(calendar.removeBirthday(apr));
+
+        assertEquals(List.of(may), calendar.getNextBirthday(LocalDate.of(2023, 3, 6)).orElseThrow().celebrators());
+        assertEquals(List.of(mar), calendar.getPreviousBirthday(LocalDate.of(2023, 5, 20)).orElseThrow().celebrators());
+
+        calendar.removeBirthday(mar);
+        calendar.removeBirthday(may);
+        assertTrue(calendar.getNextBirthday(LocalDate.of(2023, 1, 1)).isEmpty());
+        assertTrue(calendar.getPreviousBirthday(LocalDate.of(2023, 1, 1)).isEmpty());
+    }
+
+    @Test
+    public void birthdaysOnADayAreAnImmutableSnapshot() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var first = birthday("First", 4, 2);
+        var second = birthday("Second", 4, 2);
+        calendar.addBirthday(first);
+
+        var onDay = calendar.getBirthdaysOn(MonthDay.of(4, 2));
+        calendar.addBirthday(second);
+
+        assertEquals(List.of(first), onDay);
+        assertThrows(UnsupportedOperationException.class, () -> onDay.add(second));
+        assertEquals(List.of(first, second), calendar.getBirthdaysOn(LocalDate.of(2023, 4, 2)));
+    }
+
+    @Test
+    public void leapDayAndMonthLookups() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var leap = birthday("Leap", 2, 29);
+        var march = birthday("March", 3, 1);
+        calendar.addBirthday(leap);
+        calendar.addBirthday(march);
+
+        assertEquals(List.of(leap), calendar.getBirthdaysOn(Month.FEBRUARY));
+        assertEquals(List.of(leap, march), calendar.getBirthdays());
+        var next = calendar.getNextBirthday(LocalDate.of(2023, 2, 1)).orElseThrow();
+        assertEquals(LocalDate.of(2023, 2, 28), next.when());
+    }
+
+    @Test
+    public void birthdaysBetweenWithinAYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var mar = birthday("Mar", 3, 6);
+        var apr = birthday("Apr", 4, 2);
+        var apr2 = birthday("Apr2", 4, 2);
+        var may = birthday("May", 5, 20);
+        List.of(may, apr, mar, apr2).forEach(calendar::addBirthday);
+
+        assertEquals(List.of(mar, apr, apr2), calendar.getBirthdaysBetween(MonthDay.of(3, 6), MonthDay.of(4, 30)));
+        assertEquals(3, calendar.countBirthdaysBetween(MonthDay.of(3, 6), MonthDay.of(4, 30)));
+        assertEquals(0, calendar.countBirthdaysBetween(MonthDay.of(6, 1), MonthDay.of(12, 31)));
+        assertEquals(List.of(), calendar.getBirthdaysBetween(MonthDay.of(6, 1), MonthDay.of(12, 31)));
+    }
+
+    @Test
+    public void birthdaysBetweenWrapAroundNewYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var dec = birthday("Dec", 12, 30);
+        var jan = birthday("Jan", 1, 2);
+        var feb = birthday("Feb", 2, 1);
+        List.of(jan, feb, dec).forEach(calendar::addBirthday);
+
+        assertEquals(List.of(dec, jan), calendar.getBirthdaysBetween(MonthDay.of(12, 28), MonthDay.of(1, 3)));
+        assertEquals(2, calendar.countBirthdaysBetween(MonthDay.of(12, 28), MonthDay.of(1, 3)));
+    }
+
+    @Test
+    public void nextKGroupsByDayAndWraps() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var nov = birthday("Nov", 11, 1);
+        var dec = birthday("Dec", 12, 31);
+        var dec2 = birthday("Dec2", 12, 31);
+        var jan = birthday("Jan", 1, 15);
+        List.of(nov, dec, dec2, jan).forEach(calendar::addBirthday);
+
+        var next = calendar.getNextK(LocalDate.of(2023, 11, 1), 3);
+        assertEquals(2, next.size());
+        assertEquals(List.of(dec, dec2), next.get(0).celebrators());
+        assertEquals(LocalDate.of(2023, 12, 31), next.get(0).when());
+        assertEquals(List.of(jan), next.get(1).celebrators());
+        assertEquals(LocalDate.of(2024, 1, 15), next.get(1).when());
+    }
+
+    @Test
+    public void nextKSearchesAtMostAYear() {
+        var calendar = new BirthdayCalendar<BirthdayEventInstance>();
+        var only = birthday("Only", 6, 1);
+        calendar.addBirthday(only);
+
+        var next = calendar.getNextK(LocalDate.of(2023, 6, 1), 5);
+        assertEquals(1, next.size());
+        assertEquals(LocalDate.of(2024, 6, 1), next.get(0).when());
+        assertTrue(new BirthdayCalendar<BirthdayEventInstance>().getNextK(LocalDate.of(2023, 6, 1), 5).isEmpty());
+    }
+}
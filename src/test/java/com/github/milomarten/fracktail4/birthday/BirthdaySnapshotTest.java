@@ -0,0 +1,69 @@
+package com.github.milomarten.fracktail4.birthday;
+
+import com.github.milomarten.fracktail4.birthday.v2.HardCodedBirthdayEventInstance;
+import com.github.milomarten.fracktail4.birthday.v2.UserBirthdayEventInstance;
+import discord4j.common.util.Snowflake;
+import org.junit.jupiter.api.Test;
+
+import java.time.Month;
+import java.time.MonthDay;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BirthdaySnapshotTest {
+    private static final Snowflake ONE = Snowflake.of(1);
+    private static final Snowflake TWO = Snowflake.of(2);
+
+    private static UserBirthdayEventInstance user(Snowflake id, Month month, int day) {
+        return new UserBirthdayEventInstance(MonthDay.of(month, day), null, id, null);
+    }
+
+    @Test
+    public void ofIncludesUsersAndOthers() {
+        var one = user(ONE, Month.MAY, 1);
+        var other = new HardCodedBirthdayEventInstance(MonthDay.of(Month.MAY, 1), null, "Other", Set.of());
+        var snapshot = BirthdaySnapshot.of(List.of(one), List.of(other));
+
+        assertEquals(Optional.of(one), snapshot.getBirthday(ONE));
+        assertEquals(1, snapshot.getNumberOfBirthdays());
+        assertEquals(List.of(one, other), snapshot.getBirthdaysOn(MonthDay.of(Month.MAY, 1)));
+    }
+
+    @Test
+    public void withBirthdayLeavesOriginalUnchanged() {
+        var one = user(ONE, Month.MAY, 1);
+        var original = BirthdaySnapshot.EMPTY.withBirthday(one);
+        var changed = original.withBirthday(user(TWO, Month.JUNE, 2));
+
+        assertFalse(original.hasBirthday(TWO));
+        assertTrue(original.getBirthdaysOn(Month.JUNE).isEmpty());
+        assertTrue(changed.hasBirthday(ONE));
+        assertTrue(changed.hasBirthday(TWO));
+        assertEquals(2, changed.getBirthdays().size());
+    }
+
+    @Test
+    public void withBirthdayReplacesPreviousDay() {
+        var snapshot = BirthdaySnapshot.EMPTY
+                .withBirthday(user(ONE, Month.MAY, 1))
+                .withBirthday(user(ONE, Month.JULY, 4));
+
+        assertTrue(snapshot.getBirthdaysOn(MonthDay.of(Month.MAY, 1)).isEmpty());
+        assertEquals(1, snapshot.getBirthdaysOn(MonthDay.of(Month.JULY, 4)).size());
+        assertEquals(1, snapshot.getBirthdays().size());
+    }
+
+    @Test
+    public void withoutBirthdaysIgnoresMissingUsers() {
+        var original = BirthdaySnapshot.EMPTY.withBirthday(user(ONE, Month.MAY, 1));
+
+        assertSame(original, original.withoutBirthdays(List.of(TWO)));
+        var removed = original.withoutBirthdays(List.of(ONE, TWO));
+        assertFalse(removed.hasBirthday(ONE));
+        assertTrue(removed.getBirthdays().isEmpty());
+        assertTrue(original.hasBirthday(ONE));
+    }
+}
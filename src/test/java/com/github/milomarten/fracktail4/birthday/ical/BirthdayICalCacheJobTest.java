@@ -0,0 +1,68 @@
+package com.github.milomarten.fracktail4.birthday.ical;
+
+import net.fortuna.ical4j.model.Calendar;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BirthdayICalCacheJobTest {
+    private final BirthdayICalService service = mock(BirthdayICalService.class);
+    private final List<Sinks.One<Calendar>> builds = new ArrayList<>();
+
+    BirthdayICalCacheJobTest() {
+        when(service.createCalendar()).thenAnswer(invocation -> {
+            Sinks.One<Calendar> build = Sinks.one();
+            builds.add(build);
+            return build.asMono();
+        });
+    }
+
+    @Test
+    public void onlyOneRebuildRunsAtATime() {
+        var job = new BirthdayICalCacheJob(service);
+        job.updateCalendar();
+        job.updateCalendar();
+        job.updateCalendar();
+        assertEquals(1, builds.size());
+
+        var first = RenderedCalendarTest.calendar("First");
+        builds.get(0).tryEmitValue(first);
+        assertSame(first, job.getCurrentCalendar());
+        // The requests made during the first build are combined into one more.
+        assertEquals(2, builds.size());
+
+        var second = RenderedCalendarTest.calendar("Second");
+        builds.get(1).tryEmitValue(second);
+        assertSame(second, job.getCurrentCalendar());
+        assertEquals(2, builds.size());
+    }
+
+    @Test
+    public void failedRebuildDoesNotBlockTheNext() {
+        var job = new BirthdayICalCacheJob(service);
+        job.updateCalendar();
+        builds.get(0).tryEmitError(new IllegalStateException("Discord is down"));
+
+        job.updateCalendar();
+        assertEquals(2, builds.size());
+        var calendar = RenderedCalendarTest.calendar("Recovered");
+        builds.get(1).tryEmitValue(calendar);
+        assertSame(calendar, job.getCurrentCalendar());
+    }
+
+    @Test
+    public void idleJobRebuildsImmediately() {
+        var job = new BirthdayICalCacheJob(service);
+        when(service.createCalendar()).thenReturn(Mono.just(RenderedCalendarTest.calendar("Now")));
+        job.updateCalendar();
+        job.updateCalendar();
+        assertNotNull(job.getRenderedCalendar());
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.milomarten.fracktail4.birthday.ical;
+
+import com.github.milomarten.fracktail4.birthday.BirthdayHandler;
+import com.github.milomarten.fracktail4.birthday.v2.BirthdayEventInstance;
+import discord4j.common.util.Snowflake;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Summary;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.MonthDay;
+import java.time.Year;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BirthdayICalServiceTest {
+    private final BirthdayHandler handler = mock(BirthdayHandler.class);
+
+    /**
+     * A birthday which counts how many times its name is looked up.
+     */
+    private static class CountingBirthday implements BirthdayEventInstance {
+        private final MonthDay day;
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile Mono<String> name;
+
+        CountingBirthday(String name, MonthDay day) {
+            this.name = Mono.just(name);
+            this.day = day;
+        }
+
+        @Override
+        public Mono<String> getName() {
+            lookups.incrementAndGet();
+            return name;
+        }
+
+        @Override
+        public MonthDay getDayOfCelebration() {
+            return day;
+        }
+
+        @Override
+        public Optional<Year> getStartYear() {
+            return Optional.empty();
+        }
+
+        @Override
+        public Mono<Boolean> shouldDisplayForGuild(Snowflake guildId) {
+            return Mono.just(true);
+        }
+    }
+
+    private static List<String> summaries(net.fortuna.ical4j.model.Calendar calendar) {
+        return calendar.<VEvent>getComponents(Component.VEVENT).stream()
+                .map(event -> event.<Summary>getProperty(Summary.SUMMARY).orElseThrow().getValue())
+                .toList();
+    }
+
+    @Test
+    public void unchangedBirthdaysAreNotLookedUpAgain() {
+        var one = new CountingBirthday("One", MonthDay.of(1, 1));
+        var two = new CountingBirthday("Two", MonthDay.of(2, 2));
+        when(handler.getBirthdays()).thenReturn(List.of(one, two));
+        var service = new BirthdayICalService(handler, null, Duration.ofDays(1));
+
+        service.createCalendar().block();
+        var calendar = service.createCalendar().block();
+
+        assertEquals(List.of("One's Birthday", "Two's Birthday"), summaries(calendar));
+        assertEquals(1, one.lookups.get());
+        assertEquals(1, two.lookups.get());
+    }
+
+    @Test
+    public void onlyNewBirthdaysAreLookedUp() {
+        var one = new CountingBirthday("One", MonthDay.of(1, 1));
+        var two = new CountingBirthday("Two", MonthDay.of(2, 2));
+        var service = new BirthdayICalService(handler, null, Duration.ofDays(1));
+
+        when(handler.getBirthdays()).thenReturn(List.of(one));
+        service.createCalendar().block();
+        when(handler.getBirthdays()).thenReturn(List.of(one, two));
+        var calendar = service.createCalendar().block();
+
+        assertEquals(List.of("One's Birthday", "Two's Birthday"), summaries(calendar));
+        assertEquals(1, one.lookups.get());
+        assertEquals(1, two.lookups.get());
+    }
+
+    @Test
+    public void removedBirthdaysAreDropped() {
+        var one = new CountingBirthday("One", MonthDay.of(1, 1));
+        var two = new CountingBirthday("Two", MonthDay.of(2, 2));
+        var service = new BirthdayICalService(handler, null, Duration.ofDays(1));
+
+        when(handler.getBirthdays()).thenReturn(List.of(one, two));
+        service.createCalendar().block();
+        when(handler.getBirthdays()).thenReturn(List.of(two));
+
+        assertEquals(List.of("Two's Birthday"), summaries(service.createCalendar().block()));
+    }
+
+    @Test
+    public void expiredNamesAreLookedUpAgain() {
+        var one = new CountingBirthday("One", MonthDay.of(1, 1));
+        when(handler.getBirthdays()).thenReturn(List.of(one));
+        var service = new BirthdayICalService(handler, null, Duration.ZERO);
+
+        service.createCalendar().block();
+        one.name = Mono.just("Renamed");
+        var calendar = service.createCalendar().block();
+
+        assertEquals(List.of("Renamed's Birthday"), summaries(calendar));
+        assertEquals(2, one.lookups.get());
+    }
+
+    @Test
+    public void failedLookupKeepsOldEvent() {
+        var one = new CountingBirthday("One", MonthDay.of(1, 1));
+        when(handler.getBirthdays()).thenReturn(List.of(one));
+        var service = new BirthdayICalService(handler, null, Duration.ZERO);
+
+        service.createCalendar().block();
+        one.name = Mono.error(new IllegalStateException("Discord is down"));
+
+        assertEquals(List.of("One's Birthday"), summaries(service.createCalendar().block()));
+    }
+}
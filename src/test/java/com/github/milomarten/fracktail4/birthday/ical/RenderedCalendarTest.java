@@ -0,0 +1,68 @@
+package com.github.milomarten.fracktail4.birthday.ical;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.Summary;
+import net.fortuna.ical4j.model.property.Uid;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderedCalendarTest {
+    static Calendar calendar(String summary) {
+        var calendar = new Calendar()
+                .withProdId("-//Test//Test//EN")
+                .withDefaults()
+                .getFluentTarget();
+        VEvent event = new VEvent()
+                .add(new DtStart<>(LocalDate.of(2023, 4, 2)))
+                .add(new Uid("birthday"))
+                .add(new Summary(summary));
+        calendar.add(event);
+        return calendar;
+    }
+
+    private static byte[] bytes(java.nio.ByteBuffer buffer) {
+        var bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void rendersCalendar() throws IOException {
+        var rendered = RenderedCalendar.render(calendar("Birthday"), false, null);
+        var body = new String(bytes(rendered.getBody()), StandardCharsets.UTF_8);
+        assertTrue(body.startsWith("BEGIN:VCALENDAR"));
+        assertTrue(body.contains("SUMMARY:Birthday"));
+        assertTrue(rendered.getGzippedBody().isEmpty());
+        assertTrue(rendered.getBody().isReadOnly());
+    }
+
+    @Test
+    public void unchangedCalendarKeepsEtagAndLastModified() throws IOException {
+        var first = RenderedCalendar.render(calendar("Birthday"), false, null);
+        var same = RenderedCalendar.render(calendar("Birthday"), false, first);
+        var different = RenderedCalendar.render(calendar("Other Birthday"), false, first);
+
+        assertEquals(first.getEtag(), same.getEtag());
+        assertSame(first.getLastModified(), same.getLastModified());
+        assertNotEquals(first.getEtag(), different.getEtag());
+    }
+
+    @Test
+    public void gzippedBodyMatchesPlainBody() throws IOException {
+        var rendered = RenderedCalendar.render(calendar("Birthday"), true, null);
+        var gzipped = bytes(rendered.getGzippedBody().orElseThrow());
+        try (var in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            assertArrayEquals(bytes(rendered.getBody()), in.readAllBytes());
+        }
+        assertNotEquals(rendered.getEtag(), rendered.getGzippedEtag());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.milomarten.fracktail4.commands;
+
+import com.github.milomarten.fracktail4.commands.dnd.DefenseParameters;
+import com.github.milomarten.fracktail4.commands.dnd.Type;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AreaBattleRollCommandTest {
+    private static DefenseParameters defender(Type primary, Type secondary, int defense, int cs) {
+        return DefenseParameters.builder()
+                .defenderPrimaryType(primary)
+                .defenderSecondaryType(secondary)
+                .defenseStat(defense)
+                .defenseCS(cs)
+                .build();
+    }
+
+    @Test
+    public void parsesSingleAndDualTypes() {
+        var defenders = AreaBattleRollCommand.parseDefenders("grass/flying 12; FIRE 8");
+        assertEquals(List.of(
+                defender(Type.GRASS, Type.FLYING, 12, 0),
+                defender(Type.FIRE, Type.NONE, 8, 0)), defenders);
+    }
+
+    @Test
+    public void parsesSignedCombatStages() {
+        var defenders = AreaBattleRollCommand.parseDefenders("water 10 +2 ; rock/ground  9 -6;;");
+        assertEquals(List.of(
+                defender(Type.WATER, Type.NONE, 10, 2),
+                defender(Type.ROCK, Type.GROUND, 9, -6)), defenders);
+    }
+
+    @Test
+    public void allowsUpToTheDefenderLimit() {
+        assertEquals(12, AreaBattleRollCommand.parseDefenders("normal 5;".repeat(12)).size());
+        var ex = assertThrows(IllegalArgumentException.class,
+                () -> AreaBattleRollCommand.parseDefenders("normal 5;".repeat(13)));
+        assertTrue(ex.getMessage().startsWith("Too many defenders"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            " ; ",
+            "grass",
+            "grass 10 1 2",
+            "grass/fire/water 10",
+            "plasma 10",
+            "grass ten",
+            "grass 10 +x",
+            "grass 0",
+            "grass 10 7",
+            "grass 10 -7"
+    })
+    public void rejectsMalformedDefenders(String text) {
+        assertThrows(IllegalArgumentException.class, () -> AreaBattleRollCommand.parseDefenders(text));
+    }
+}
@@ -213,6 +213,21 @@ class DiceExpressionTest {
         assertEquals(BigDecimal.valueOf(18), response.value()); // 8 + 9 + (reroll 100 1's) 1
     }
 
+    @Test
+    public void testRerollThenKeep() {
+        mockRolls(8, 9, 1, 5);
+        var dice = DiceExpression.builder()
+                .numberOfSides(10)
+                .numberOfDice(3)
+                .rerollAt(1)
+                .numberToKeep(2)
+                .randomSource(random)
+                .build();
+
+        var response = dice.evaluate(OPTS);
+        assertEquals(BigDecimal.valueOf(17), response.value()); // 8 + 9, the reroll of 1 into 5 is discarded
+    }
+
     @Test
     public void testNegativeNumberOfDice() {
         mockRolls(8, 9, 1);
@@ -226,6 +241,53 @@ class DiceExpressionTest {
         assertEquals(-1, response.value().signum());
     }
 
+    @Test
+    public void testRepresentation() {
+        var dice = DiceExpression.builder()
+                .numberOfSides(20)
+                .numberOfDice(mockRolls(18, 12, 9))
+                .numberToDrop(1)
+                .randomSource(random)
+                .build();
+        var plain = DiceEvaluatorOptions.builder().outputType(DiceEvaluatorOptions.OutputType.PLAIN).build();
+        var response = dice.evaluate(plain);
+
+        assertEquals("\uD83C\uDFB2(18 + 12 + ~~9~~)", response.representation());
+        // Rendering again gives the same text
+        assertEquals(response.representation(), response.breakdown().render());
+    }
+
+    @Test
+    public void testKeepManySmallDiceWithTies() {
+        var dice = DiceExpression.builder()
+                .numberOfSides(4)
+                .numberOfDice(mockRolls(2, 4, 2, 1, 4, 3, 2, 4))
+                .numberToKeep(4)
+                .randomSource(random)
+                .build();
+        var plain = DiceEvaluatorOptions.builder().outputType(DiceEvaluatorOptions.OutputType.PLAIN).build();
+        var response = dice.evaluate(plain);
+
+        assertEquals(BigDecimal.valueOf(15), response.value());
+        assertEquals("\uD83C\uDFB2(~~2~~ + 4 + ~~2~~ + ~~1~~ + 4 + 3 + ~~2~~ + 4)", response.representation());
+    }
+
+    @Test
+    public void testKeepLowestManySmallDiceWithTies() {
+        var dice = DiceExpression.builder()
+                .numberOfSides(4)
+                .numberOfDice(mockRolls(2, 4, 2, 1, 4, 3, 2, 4))
+                .numberToKeep(3)
+                .keepLowest(true)
+                .randomSource(random)
+                .build();
+        var plain = DiceEvaluatorOptions.builder().outputType(DiceEvaluatorOptions.OutputType.PLAIN).build();
+        var response = dice.evaluate(plain);
+
+        assertEquals(BigDecimal.valueOf(5), response.value());
+        assertEquals("\uD83C\uDFB2(~~2~~ + ~~4~~ + 2 + 1 + ~~4~~ + ~~3~~ + 2 + ~~4~~)", response.representation());
+    }
+
     private int mockRolls(int value, int... more) {
         when(random.nextInt(anyInt())).thenReturn(value - 1, IntStream.of(more).mapToObj(i -> i - 1).toArray(Integer[]::new));
         return more.length + 1;
@@ -0,0 +1,66 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiceNumberTest {
+    @Test
+    public void testWholeNumberArithmeticStaysIntegral() {
+        var result = DiceNumber.of(6).add(DiceNumber.of(4)).multiply(DiceNumber.of(3)).subtract(DiceNumber.of(1));
+
+        assertEquals(DiceNumber.of(29), result);
+        assertInstanceOf(DiceNumber.Integral.class, result);
+    }
+
+    @Test
+    public void testDivisionPromotesToDecimal() {
+        var result = DiceNumber.of(2).divide(DiceNumber.of(5));
+
+        assertInstanceOf(DiceNumber.Decimal.class, result);
+        assertEquals(BigDecimal.valueOf(0.4), result.toBigDecimal());
+    }
+
+    @Test
+    public void testEvenDivisionDemotesToIntegral() {
+        var result = DiceNumber.of(10).divide(DiceNumber.of(5));
+
+        assertEquals(DiceNumber.of(2), result);
+    }
+
+    @Test
+    public void testCeilDemotesToIntegral() {
+        var result = DiceNumber.of(new BigDecimal("5.2")).ceil();
+
+        assertEquals(DiceNumber.of(6), result);
+    }
+
+    @Test
+    public void testAddOverflowPromotesToDecimal() {
+        var result = DiceNumber.of(Long.MAX_VALUE).add(DiceNumber.of(1));
+
+        assertInstanceOf(DiceNumber.Decimal.class, result);
+        assertEquals(BigDecimal.valueOf(Long.MAX_VALUE).add(BigDecimal.ONE), result.toBigDecimal());
+    }
+
+    @Test
+    public void testMultiplyOverflowIsRejected() {
+        var big = DiceNumber.of(Long.MAX_VALUE / 2);
+        assertThrows(ExpressionSyntaxError.class, () -> big.multiply(DiceNumber.of(3)));
+    }
+
+    @Test
+    public void testDivideByZero() {
+        assertThrows(ExpressionSyntaxError.class, () -> DiceNumber.of(5).divide(DiceNumber.of(0)));
+    }
+
+    @Test
+    public void testMixedComparison() {
+        assertTrue(DiceNumber.of(3).compareTo(DiceNumber.of(new BigDecimal("2.5"))) > 0);
+        assertTrue(DiceNumber.of(new BigDecimal("2.5")).compareTo(DiceNumber.of(3)) < 0);
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiceRandomProviderTest {
+    private final StringDiceExpressionEvaluator eval = new StringDiceExpressionEvaluator();
+
+    @ParameterizedTest
+    @EnumSource(DiceRandomProvider.Algorithm.class)
+    public void testSameSeedSameRoll(DiceRandomProvider.Algorithm algorithm) {
+        var provider = new DiceRandomProvider(algorithm);
+        var first = eval.evaluate("8d20k4 + 4d6x1", options(provider, 12345));
+        var second = eval.evaluate("8d20k4 + 4d6x1", options(provider, 12345));
+
+        assertEquals(first.representation(), second.representation());
+        assertEquals(first.value(), second.value());
+    }
+
+    @Test
+    public void testNewSeedInRange() {
+        var provider = new DiceRandomProvider();
+        for (int i = 0; i < 1000; i++) {
+            var seed = provider.newSeed();
+            assertTrue(seed >= 0 && seed < DiceRandomProvider.MAX_SEED);
+        }
+    }
+
+    @Test
+    public void testGeneratorPerThread() throws Exception {
+        var provider = new DiceRandomProvider();
+        var mine = provider.current();
+        var theirs = CompletableFuture.supplyAsync(provider::current).get();
+
+        assertSame(mine, provider.current());
+        assertNotSame(mine, theirs);
+    }
+
+    private static DiceEvaluatorOptions options(DiceRandomProvider provider, long seed) {
+        return DiceEvaluatorOptions.builder()
+                .randomSource(provider.seeded(seed))
+                .build();
+    }
+}
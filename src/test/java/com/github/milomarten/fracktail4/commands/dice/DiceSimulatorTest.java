@@ -0,0 +1,69 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiceSimulatorTest {
+    private final StringDiceExpressionEvaluator eval = new StringDiceExpressionEvaluator();
+    private final DiceSimulator simulator = new DiceSimulator();
+
+    @Test
+    public void testMatchesExactDistribution() {
+        var plan = eval.compile("4d6k3");
+        var exact = plan.distribution(DiceEvaluatorOptions.builder().build());
+        var result = simulator.simulate(plan, 200_000, 12345L);
+
+        assertEquals(200_000, result.trials());
+        assertEquals(exact.mean(), result.mean(), 0.05);
+        assertEquals(exact.standardDeviation(), result.standardDeviation(), 0.05);
+        assertEquals(DiceNumber.of(3), result.min());
+        assertEquals(DiceNumber.of(18), result.max());
+
+        var interval = result.meanConfidenceInterval(SimulationResult.Z_95);
+        assertTrue(interval.low() < result.mean() && result.mean() < interval.high());
+    }
+
+    @Test
+    public void testSameSeedSameResults() {
+        var plan = eval.compile("3d10e10 + 1d4");
+        var first = simulator.simulate(plan, 50_000, 42L);
+        var second = simulator.simulate(plan, 50_000, 42L);
+
+        assertEquals(first.histogram(), second.histogram());
+        assertEquals(first.mean(), second.mean(), 1e-9);
+    }
+
+    @Test
+    public void testRandomParameters() {
+        // Exact statistics can't handle these, but a simulation can.
+        var plan = eval.compile("4d6x(1d2) - 10");
+        var result = simulator.simulate(plan, 20_000, 7L);
+
+        assertEquals(20_000, result.histogram().values().stream().mapToLong(l -> l).sum());
+        assertTrue(result.min().compareTo(DiceNumber.of(-8)) >= 0);
+        assertTrue(result.max().compareTo(DiceNumber.of(8)) <= 0);
+    }
+
+    @Test
+    public void testDecimalResults() {
+        var plan = eval.compile("1d4 / 2");
+        var result = simulator.simulate(plan, 20_000, 99L);
+
+        assertEquals(DiceNumber.of(new BigDecimal("0.5")), result.min());
+        assertEquals(DiceNumber.of(2), result.max());
+        assertEquals(1.25, result.mean(), 0.05);
+        assertEquals(0.5, result.probabilityAtLeast(DiceNumber.of(new BigDecimal("1.5"))), 0.05);
+    }
+
+    @Test
+    public void testErrorsArePropagated() {
+        var plan = eval.compile("1d6 / 0");
+
+        assertThrows(ExpressionSyntaxError.class, () -> simulator.simulate(plan, 1_000, 1L));
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.TermEvaluationResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiceVolleyTest {
+    private static TermEvaluationResult[] results(int count, String breakdown) {
+        var results = new TermEvaluationResult[count];
+        Arrays.fill(results, new TermEvaluationResult(3, breakdown));
+        return results;
+    }
+
+    @Test
+    public void splitDropsBlankExpressions() {
+        assertArrayEquals(new String[]{"1d20+5", "2d6"}, DiceVolley.split(" 1d20+5 ;; 2d6 ; "));
+        assertArrayEquals(new String[0], DiceVolley.split(" ; "));
+    }
+
+    @Test
+    public void singleRollsAreLabeledByExpression() {
+        assertArrayEquals(new String[]{"1d20", "2d6"}, DiceVolley.labels(new String[]{"1d20", "2d6"}, 1));
+    }
+
+    @Test
+    public void repeatsAreLabeledByNumber() {
+        assertArrayEquals(new String[]{"1d20 #1", "#2", "#3", "2d6 #1", "#2", "#3"},
+                DiceVolley.labels(new String[]{"1d20", "2d6"}, 3));
+    }
+
+    @Test
+    public void longLabelsAreShortened() {
+        var labels = DiceVolley.labels(new String[]{"1+".repeat(100) + "1"}, 2);
+        assertTrue(labels[0].length() <= DiceVolley.MAX_LABEL_LENGTH + " #1".length());
+        assertTrue(labels[0].endsWith("... #1"));
+        assertEquals("#2", labels[1]);
+    }
+
+    @Test
+    public void shortVolleyShowsBreakdowns() {
+        var reply = DiceVolley.format(Optional.of("Attack"), new String[]{"a", "b"}, results(2, "[1, 2]"), 5).orElseThrow();
+        assertEquals("Attack\n```ansi\na: [1, 2] = 3\nb: [1, 2] = 3\nTotal: 6\n```Seed: `5`", reply);
+    }
+
+    @Test
+    public void longVolleyFallsBackToValues() {
+        var labels = DiceVolley.labels(new String[]{"20d6"}, 20);
+        var reply = DiceVolley.format(Optional.empty(), labels, results(20, "x".repeat(200)), 5).orElseThrow();
+        assertTrue(reply.length() <= DiceVolley.MAX_MESSAGE_LENGTH);
+        assertTrue(reply.contains("#20: 3\n"));
+        assertFalse(reply.contains("xxx"));
+    }
+
+    @Test
+    public void singleRollFallsBackToValue() {
+        var reply = DiceVolley.format(Optional.empty(), new String[]{"1d6"}, results(1, "x".repeat(3000)), 5).orElseThrow();
+        assertEquals("```ansi\n1d6 = 3\n```Seed: `5`", reply);
+    }
+
+    @Test
+    public void volleyTooLongEvenForValuesIsEmpty() {
+        var labels = new String[20];
+        Arrays.fill(labels, "y".repeat(150));
+        assertTrue(DiceVolley.format(Optional.empty(), labels, results(20, "[3]"), 5).isEmpty());
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.milomarten.fracktail4.commands.dice;
+
+import com.github.milomarten.fracktail4.commands.dice.term.DiceExpression;
+import com.github.milomarten.fracktail4.commands.dice.term.DiceNumber;
+import com.github.milomarten.fracktail4.commands.dice.term.ExpressionSyntaxError;
+import com.github.milomarten.fracktail4.commands.dice.term.NoExactStatisticsError;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistributionTest {
+    private static final double DELTA = 1e-9;
+    private static final DiceEvaluatorOptions OPTS = DiceEvaluatorOptions.builder().build();
+    private final StringDiceExpressionEvaluator eval = new StringDiceExpressionEvaluator();
+
+    @Test
+    public void testConstant() {
+        var dist = eval.distribution("5");
+
+        assertEquals(DiceNumber.of(5), dist.asConstant().orElseThrow());
+    }
+
+    @Test
+    public void testSingleDie() {
+        var dist = eval.distribution("d20");
+
+        assertEquals(DiceNumber.of(1), dist.min());
+        assertEquals(DiceNumber.of(20), dist.max());
+        assertEquals(10.5, dist.mean(), DELTA);
+        assertEquals(DiceNumber.of(10), dist.percentile(0.5));
+        assertEquals(0.55, dist.probabilityAtLeast(DiceNumber.of(10)), DELTA);
+    }
+
+    @Test
+    public void testSumOfDice() {
+        var dist = eval.distribution("2d6");
+
+        assertEquals(6.0 / 36, dist.probabilityOf(DiceNumber.of(7)), DELTA);
+        assertEquals(1.0 / 36, dist.probabilityOf(DiceNumber.of(12)), DELTA);
+        assertEquals(7, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testArithmetic() {
+        var dist = eval.distribution("1d20 + 5");
+
+        assertEquals(DiceNumber.of(6), dist.min());
+        assertEquals(DiceNumber.of(25), dist.max());
+        assertEquals(15.5, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testSubtractDice() {
+        var dist = eval.distribution("1d6 - 1d6");
+
+        assertEquals(DiceNumber.of(-5), dist.min());
+        assertEquals(DiceNumber.of(5), dist.max());
+        assertEquals(0, dist.mean(), DELTA);
+        assertEquals(6.0 / 36, dist.probabilityOf(DiceNumber.of(0)), DELTA);
+    }
+
+    @Test
+    public void testNegativeDice() {
+        var dist = eval.distribution("-2d4");
+
+        assertEquals(DiceNumber.of(-8), dist.min());
+        assertEquals(DiceNumber.of(-2), dist.max());
+    }
+
+    @Test
+    public void testDivisionAndCeil() {
+        var half = eval.distribution("1d4 / 2");
+        assertEquals(1.25, half.mean(), DELTA);
+        assertEquals(0.25, half.probabilityOf(DiceNumber.of(new BigDecimal("0.5"))), DELTA);
+
+        var rounded = eval.distribution("(1d4 / 2)^");
+        assertEquals(0.5, rounded.probabilityOf(DiceNumber.of(1)), DELTA);
+        assertEquals(0.5, rounded.probabilityOf(DiceNumber.of(2)), DELTA);
+    }
+
+    @Test
+    public void testCaps() {
+        var dist = eval.distribution("1d6 < 3");
+
+        assertEquals(DiceNumber.of(3), dist.min());
+        assertEquals(0.5, dist.probabilityOf(DiceNumber.of(3)), DELTA);
+    }
+
+    @Test
+    public void testKeepHighest() {
+        var dist = eval.distribution("2d20k1");
+
+        assertEquals(13.825, dist.mean(), DELTA);
+        assertEquals(39.0 / 400, dist.probabilityOf(DiceNumber.of(20)), DELTA);
+    }
+
+    @Test
+    public void testKeepLowest() {
+        var dist = eval.distribution("2d20l1");
+
+        assertEquals(7.175, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testDropMatchesKeep() {
+        var drop = eval.distribution("4d6x1");
+        var keep = eval.distribution("4d6k3");
+
+        assertEquals(15869.0 / 1296, drop.mean(), DELTA);
+        assertEquals(keep.mean(), drop.mean(), DELTA);
+        assertEquals(keep.probabilityOf(DiceNumber.of(18)), drop.probabilityOf(DiceNumber.of(18)), DELTA);
+    }
+
+    @Test
+    public void testReroll() {
+        var dist = eval.distribution("d6r1");
+
+        assertEquals(1.0 / 36, dist.probabilityOf(DiceNumber.of(1)), DELTA);
+        assertEquals(7.0 / 36, dist.probabilityOf(DiceNumber.of(6)), DELTA);
+    }
+
+    @Test
+    public void testExplodeOnce() {
+        var dist = eval.distribution("d6e6");
+
+        assertEquals(0, dist.probabilityOf(DiceNumber.of(6)), DELTA);
+        assertEquals(1.0 / 36, dist.probabilityOf(DiceNumber.of(12)), DELTA);
+        assertEquals(3.5 + 3.5 / 6, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testExplodeInfinite() {
+        var dice = DiceExpression.builder()
+                .numberOfSides(6)
+                .explodeAt(6)
+                .infiniteExplode(true)
+                .build();
+        var dist = dice.distribution(OPTS);
+
+        // Each dice adds 3.5, and on average 1/(1 - 1/6) dice are rolled.
+        assertEquals(4.2, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testSuccessCounting() {
+        var dist = eval.distribution("3d6s5");
+
+        assertEquals(8.0 / 27, dist.probabilityOf(DiceNumber.of(0)), DELTA);
+        assertEquals(1.0 / 27, dist.probabilityOf(DiceNumber.of(3)), DELTA);
+        assertEquals(1, dist.mean(), DELTA);
+    }
+
+    @Test
+    public void testManyLargeDice() {
+        var dist = eval.distribution("32d1000");
+
+        assertEquals(DiceNumber.of(32), dist.min());
+        assertEquals(DiceNumber.of(32000), dist.max());
+        assertEquals(16016, dist.mean(), 1e-6);
+    }
+
+    @Test
+    public void testMatchesRolls() {
+        var expression = "4d6r1k3 + 2";
+        var dist = eval.distribution(expression);
+        var sampled = IntStream.range(0, 50_000)
+                .mapToDouble(i -> eval.evaluate(expression).value().doubleValue())
+                .average()
+                .orElseThrow();
+
+        assertEquals(dist.mean(), sampled, 0.1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"4d6x(1d2)", "(1d4)d6", "d(1d6)"})
+    public void testRandomParametersNotSupported(String expression) {
+        assertThrows(ExpressionSyntaxError.class, () -> eval.distribution(expression));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"4d6x(1d2)", "(1d4)d6", "d(1d6)", "4d6e6x1", "32d1000x1"})
+    public void testNoExactStatisticsCanBeSimulated(String expression) {
+        assertThrows(NoExactStatisticsError.class, () -> eval.distribution(expression));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1d6/0", "2d6+", "100d6"})
+    public void testInvalidExpressionsAreNotSimulated(String expression) {
+        var ex = assertThrows(ExpressionSyntaxError.class, () -> eval.distribution(expression));
+        assertFalse(ex instanceof NoExactStatisticsError);
+    }
+}
@@ -100,4 +100,52 @@ class StringDiceExpressionEvaluatorTest {
             var e = eval.evaluate("d0.5");
         });
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompiledPlanIsCached() {
+        var first = eval.compile("1d20 + 5");
+        var second = eval.compile("  1d20   +  5 ");
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void testCompiledPlanRollsFreshDiceEachTime() {
+        var plan = eval.compile("4d6x1");
+
+        for (int i = 0; i < 100; i++) {
+            var value = plan.evaluate(DiceEvaluatorOptions.builder().build()).valueAsInt();
+            assertTrue(value >= 3 && value <= 18);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "3 +",
+            "(3 + 4",
+            "3 + 4)"
+    })
+    public void testStructuralErrorsCaughtAtCompile(String expression) {
+        assertThrows(ExpressionSyntaxError.class, () -> eval.compile(expression));
+    }
+
+    @Test
+    public void testNumberTooLongForPrimitive() {
+        var value = eval.evaluate("1234567890123456789 - 1234567890123456788");
+
+        assertEquals(1, value.valueAsInt());
+    }
+
+    @Test
+    public void testLeadingZeroes() {
+        var value = eval.evaluate("007 + -0.50");
+
+        assertEquals(new BigDecimal("6.50"), value.value());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1.2.3", "- (1)", "2 + \u00e9", "5 ? 3"})
+    public void testMalformedTokens(String expression) {
+        assertThrows(ExpressionSyntaxError.class, () -> eval.evaluate(expression));
+    }
+}
@@ -3,11 +3,18 @@ package com.github.milomarten.fracktail4.commands.dnd;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class BattleRollTest {
+    private static final double DELTA = 1e-9;
+
     @Test
     public void range_JustDamageBaseBasically() {
         var attacker = AttackParameters.builder()
@@ -64,6 +71,171 @@ class BattleRollTest {
         assertTrue(isInRange(result.getValue(), result.getRange().low(), result.getRange().high()));
     }
 
+    @Test
+    public void profile_MeanAndKO() {
+        var attacker = AttackParameters.builder()
+                .damageBase(3)
+                .attackStat(10)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(10)
+                .build();
+
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        assertEquals(8.5, profile.mean(), DELTA);
+        assertEquals(1, profile.probabilityOfKO(6), DELTA);
+        assertEquals(1.0 / 6, profile.probabilityOfKO(11), DELTA);
+        assertEquals(0, profile.probabilityOfKO(12), DELTA);
+    }
+
+    @Test
+    public void profile_CritMean() {
+        var attacker = AttackParameters.builder()
+                .damageBase(3)
+                .attackStat(10)
+                .attackerPrimaryType(Type.NORMAL)
+                .criticalHit(true)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(10)
+                .build();
+
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        assertEquals(17, profile.mean(), DELTA);
+        assertEquals(1.0 / 36, profile.probabilityOfKO(22), DELTA);
+    }
+
+    @Test
+    public void profile_KOWithMultiplierAndStats() {
+        var attacker = AttackParameters.builder()
+                .damageBase(3)
+                .attackStat(10)
+                .attackCS(1)
+                .attackType(Type.FIRE)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.GRASS)
+                .defenseStat(10)
+                .build();
+
+        // (1d6 + 5 + 12 - 10) * 2, so even the lowest roll deals 16
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        assertEquals(1, profile.probabilityOfKO(15), DELTA);
+        // 23 HP needs 1d6 + 7 >= 11.5, or 5 and up
+        assertEquals(2.0 / 6, profile.probabilityOfKO(23), DELTA);
+    }
+
+    @Test
+    public void profile_KOWithHugeHPAndResistance() {
+        var attacker = AttackParameters.builder()
+                .damageBase(3)
+                .attackStat(10)
+                .attackType(Type.FIRE)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.WATER)
+                .defenderSecondaryType(Type.ROCK)
+                .defenseStat(10)
+                .build();
+
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        assertEquals(0, profile.probabilityOfKO(Integer.MAX_VALUE), DELTA);
+        assertEquals(1, profile.probabilityOfKO(Integer.MIN_VALUE), DELTA);
+    }
+
+    @Test
+    public void profile_Immune() {
+        var attacker = AttackParameters.builder()
+                .damageBase(10)
+                .attackStat(10)
+                .attackType(Type.NORMAL)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.GHOST)
+                .defenseStat(10)
+                .build();
+
+        var profile = BattleRoll.getDamageProfile(attacker, defender);
+        assertEquals(0, profile.probabilityOfKO(1), DELTA);
+        assertEquals(0, profile.roll(new SplittableRandom(1)).getValue().signum());
+    }
+
+    @Test
+    public void roll_AllValuesReachable() {
+        var attacker = AttackParameters.builder()
+                .damageBase(1)
+                .attackStat(10)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(10)
+                .build();
+
+        var random = new SplittableRandom(12345);
+        var seen = new HashSet<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            seen.add(BattleRoll.doAttackRoll(attacker, defender, random).getValue().intValueExact());
+        }
+        // 1d6 + 1
+        assertEquals(Set.of(2, 3, 4, 5, 6, 7), seen);
+    }
+
+    @Test
+    public void area_SharedRollAppliesEachDefender() {
+        var attacker = AttackParameters.builder()
+                .damageBase(8)
+                .attackStat(10)
+                .attackType(Type.FIRE)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var normal = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(10)
+                .build();
+        var grass = DefenseParameters.builder()
+                .defenderPrimaryType(Type.GRASS)
+                .defenseStat(10)
+                .build();
+        var tougher = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(15)
+                .build();
+
+        var random = new SplittableRandom(7);
+        for (int i = 0; i < 100; i++) {
+            var results = BattleRoll.doAreaAttackRoll(attacker, List.of(normal, grass, tougher), false, random);
+            var base = results.get(0).getValue();
+            assertEquals(0, base.multiply(BigDecimal.valueOf(2)).compareTo(results.get(1).getValue()));
+            assertEquals(0, base.subtract(BigDecimal.valueOf(5)).compareTo(results.get(2).getValue()));
+        }
+    }
+
+    @Test
+    public void area_RollPerTarget() {
+        var attacker = AttackParameters.builder()
+                .damageBase(20)
+                .attackStat(10)
+                .attackerPrimaryType(Type.NORMAL)
+                .build();
+        var defender = DefenseParameters.builder()
+                .defenderPrimaryType(Type.NORMAL)
+                .defenseStat(10)
+                .build();
+
+        var results = BattleRoll.doAreaAttackRoll(attacker, Collections.nCopies(8, defender), true, new SplittableRandom(7));
+        assertEquals(8, results.size());
+        var distinct = results.stream().map(r -> r.getValue()).distinct().count();
+        assertTrue(distinct > 1);
+        results.forEach(r -> assertTrue(isInRange(r.getValue(), r.getRange().low(), r.getRange().high())));
+    }
+
     private boolean isInRange(BigDecimal val, BigDecimal low, BigDecimal high) {
         // return val >= low && val <= high
         return val.compareTo(low) >= 0 && val.compareTo(high) <= 0;
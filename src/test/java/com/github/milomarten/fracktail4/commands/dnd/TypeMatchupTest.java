@@ -0,0 +1,47 @@
+package com.github.milomarten.fracktail4.commands.dnd;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeMatchupTest {
+    @Test
+    public void singleMatchups() {
+        assertEquals(TypeMatchup.Matchup.SUPER, TypeMatchup.getMatchup(Type.FIRE, Type.GRASS));
+        assertEquals(TypeMatchup.Matchup.HALF, TypeMatchup.getMatchup(Type.FIRE, Type.WATER));
+        assertEquals(TypeMatchup.Matchup.IMMUNE, TypeMatchup.getMatchup(Type.NORMAL, Type.GHOST));
+        assertEquals(TypeMatchup.Matchup.NORMAL, TypeMatchup.getMatchup(Type.FIRE, Type.NORMAL));
+        assertEquals(TypeMatchup.Matchup.NORMAL, TypeMatchup.getMatchup(Type.NONE, Type.GHOST));
+    }
+
+    @Test
+    public void dualTypeMultipliers() {
+        assertEquals(0, new BigDecimal("4").compareTo(TypeMatchup.getMultiplier(Type.ICE, Type.GRASS, Type.FLYING)));
+        assertEquals(0, new BigDecimal("0.25").compareTo(TypeMatchup.getMultiplier(Type.GRASS, Type.FIRE, Type.DRAGON)));
+        assertEquals(0, BigDecimal.ONE.compareTo(TypeMatchup.getMultiplier(Type.FIRE, Type.WATER, Type.GRASS)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(TypeMatchup.getMultiplier(Type.GROUND, Type.STEEL, Type.FLYING)));
+        assertEquals(0, new BigDecimal("2").compareTo(TypeMatchup.getMultiplier(Type.FIRE, Type.GRASS, Type.NONE)));
+    }
+
+    @Test
+    public void multipliersAreShared() {
+        assertSame(TypeMatchup.getMultiplier(Type.FIRE, Type.WATER, Type.NONE),
+                TypeMatchup.getMultiplier(Type.GRASS, Type.FIRE, Type.NONE));
+    }
+
+    @Test
+    public void rankAttackers() {
+        var ranking = TypeMatchup.rankAttackers(Type.GRASS, Type.FLYING);
+
+        assertEquals(Type.values().length - 1, ranking.size());
+        assertEquals(Type.ICE, ranking.get(0).attack());
+        assertEquals(0, new BigDecimal("4").compareTo(ranking.get(0).multiplier()));
+        assertEquals(0, BigDecimal.ZERO.compareTo(ranking.get(ranking.size() - 1).multiplier()));
+        assertEquals(Type.GROUND, ranking.get(ranking.size() - 1).attack());
+        for (int i = 1; i < ranking.size(); i++) {
+            assertTrue(ranking.get(i - 1).multiplier().compareTo(ranking.get(i).multiplier()) >= 0);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.milomarten.fracktail4.endpoints;
+
+import com.github.milomarten.fracktail4.birthday.ical.BirthdayICalCacheJob;
+import com.github.milomarten.fracktail4.birthday.ical.RenderedCalendar;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.DtStart;
+import net.fortuna.ical4j.model.property.Summary;
+import net.fortuna.ical4j.model.property.Uid;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BirthdayCalEndpointTest {
+    private RenderedCalendar rendered;
+    private WebTestClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        var calendar = new Calendar()
+                .withProdId("-//Test//Test//EN")
+                .withDefaults()
+                .getFluentTarget();
+        VEvent event = new VEvent()
+                .add(new DtStart<>(LocalDate.of(2023, 4, 2)))
+                .add(new Uid("birthday"))
+                .add(new Summary("Birthday"));
+        calendar.add(event);
+        rendered = RenderedCalendar.render(calendar, true, null);
+
+        var job = mock(BirthdayICalCacheJob.class);
+        when(job.getRenderedCalendar()).thenReturn(rendered);
+        client = WebTestClient.bindToController(new BirthdayCalEndpoint(job)).build();
+    }
+
+    @Test
+    public void servesCalendarWithEtag() {
+        client.get().uri("/birthday/calendar.ics")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith("text/calendar")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + rendered.getEtag() + "\"")
+                .expectHeader().doesNotExist(HttpHeaders.CONTENT_ENCODING)
+                .expectBody(String.class)
+                .value(body -> assertTrue(body.contains("SUMMARY:Birthday")));
+    }
+
+    @Test
+    public void matchingEtagIsNotModified() {
+        client.get().uri("/birthday/calendar.ics")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + rendered.getEtag() + "\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    public void servesGzipWhenAccepted() {
+        client.get().uri("/birthday/calendar.ics")
+                .header(HttpHeaders.ACCEPT_ENCODING, "deflate, gzip")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"" + rendered.getGzippedEtag() + "\"");
+    }
+
+    @Test
+    public void acceptsGzip() {
+        assertTrue(BirthdayCalEndpoint.acceptsGzip("gzip"));
+        assertTrue(BirthdayCalEndpoint.acceptsGzip("br, GZIP;q=0.5"));
+        assertFalse(BirthdayCalEndpoint.acceptsGzip("gzip;q=0"));
+        assertFalse(BirthdayCalEndpoint.acceptsGzip("deflate"));
+        assertFalse(BirthdayCalEndpoint.acceptsGzip(null));
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingPersistenceTest {
+    private static final TypeReference<List<Integer>> LIST_TYPE = new TypeReference<>() {};
+    private final ObjectMapper om = new ObjectMapper();
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void repeatedRetrievesHitTheCache() {
+        var cache = new CachingPersistence(new FilePersistence(om, folder.toString()), om);
+        cache.store("key", List.of(1, 2, 3)).block();
+
+        assertEquals(List.of(1, 2, 3), cache.retrieve("key", LIST_TYPE).block());
+        assertEquals(List.of(1, 2, 3), cache.retrieve("key", LIST_TYPE).block());
+        assertTrue(cache.hasKey("key").block());
+        assertEquals(2, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void hasKeyIsNotCounted() {
+        var files = new FilePersistence(om, folder.toString());
+        files.store("key", List.of(1)).block();
+        var cache = new CachingPersistence(files, om);
+
+        assertTrue(cache.hasKey("key").block());
+        assertFalse(cache.hasKey("other").block());
+        assertEquals(0, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void firstRetrieveMissesThenHits() {
+        var files = new FilePersistence(om, folder.toString());
+        files.store("key", List.of(1)).block();
+        var cache = new CachingPersistence(files, om);
+
+        assertEquals(List.of(1), cache.retrieve("key", LIST_TYPE).block());
+        assertEquals(List.of(1), cache.retrieve("key", LIST_TYPE).block());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void retrievesAreIndependentCopies() {
+        var cache = new CachingPersistence(new HashmapPersistence(om), om);
+        var original = new ArrayList<>(List.of(1, 2));
+        cache.store("key", original).block();
+        original.add(3);
+
+        var first = cache.retrieve("key", LIST_TYPE).block();
+        first.add(4);
+
+        assertEquals(List.of(1, 2), cache.retrieve("key", LIST_TYPE).block());
+    }
+
+    @Test
+    public void outsideChangesInvalidateTheCache() throws IOException {
+        var cache = new CachingPersistence(new FilePersistence(om, folder.toString()), om);
+        cache.store("key", List.of(1)).block();
+
+        var file = folder.resolve("key.json");
+        var replacement = folder.resolve("replacement");
+        Files.writeString(replacement, "[1,2,3,4]");
+        Files.move(replacement, file, StandardCopyOption.REPLACE_EXISTING);
+
+        assertEquals(List.of(1, 2, 3, 4), cache.retrieve("key", LIST_TYPE).block());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void deletedFilesAreNotServedFromCache() throws IOException {
+        var cache = new CachingPersistence(new FilePersistence(om, folder.toString()), om);
+        cache.store("key", List.of(1)).block();
+        Files.delete(folder.resolve("key.json"));
+
+        assertFalse(cache.hasKey("key").block());
+        assertNull(cache.retrieve("key", LIST_TYPE).block());
+    }
+}
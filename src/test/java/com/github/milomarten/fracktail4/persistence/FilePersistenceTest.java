@@ -0,0 +1,107 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilePersistenceTest {
+    private static final TypeReference<List<Integer>> LIST_TYPE = new TypeReference<>() {};
+
+    @TempDir
+    Path folder;
+
+    @Test
+    public void storeAndRetrieve() {
+        var persistence = new FilePersistence(new ObjectMapper(), folder.toString());
+        assertFalse(persistence.hasKey("key").block());
+
+        persistence.store("key", List.of(1, 2, 3)).block();
+
+        assertTrue(persistence.hasKey("key").block());
+        assertEquals(List.of(1, 2, 3), persistence.retrieve("key", LIST_TYPE).block());
+    }
+
+    @Test
+    public void overwriteLeavesNoTemporaryFiles() throws IOException {
+        var persistence = new FilePersistence(new ObjectMapper(), folder.toString(), FilePersistence.Durability.BEST_EFFORT);
+        persistence.store("key", List.of(1, 2, 3)).block();
+        persistence.store("key", List.of(4)).block();
+
+        assertEquals(List.of(4), persistence.retrieve("key", LIST_TYPE).block());
+        try (var files = Files.list(folder)) {
+            assertEquals(List.of(folder.resolve("key.json")), files.toList());
+        }
+    }
+
+    @Test
+    public void concurrentStoresNeverInterleave() {
+        var persistence = new FilePersistence(new ObjectMapper(), folder.toString());
+        var values = IntStream.range(0, 20)
+                .mapToObj(i -> IntStream.range(0, 100 * (i + 1)).map(x -> i).boxed().toList())
+                .toList();
+
+        Flux.fromIterable(values)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(v -> persistence.store("key", v))
+                .then()
+                .block();
+
+        var result = persistence.retrieve("key", LIST_TYPE).block();
+        assertTrue(values.contains(result));
+    }
+
+    @Test
+    public void missingKeyRetrievesEmpty() {
+        var persistence = new FilePersistence(new ObjectMapper(), folder.toString());
+        assertNull(persistence.retrieve("missing", LIST_TYPE).block());
+    }
+
+    @Test
+    public void durabilityIsPerKey() {
+        var persistence = new FilePersistence(new ObjectMapper(), folder.toString());
+        persistence.setDurability("hot", FilePersistence.Durability.BEST_EFFORT);
+
+        assertEquals(FilePersistence.Durability.BEST_EFFORT, persistence.getDurability("hot"));
+        assertEquals(FilePersistence.Durability.FSYNC, persistence.getDurability("cold"));
+    }
+
+    @Test
+    public void existingJsonIsMigratedOnNextStore() throws IOException {
+        var om = new ObjectMapper();
+        Files.writeString(folder.resolve("key.json"), "[1,2,3]");
+        var persistence = new FilePersistence(folder.toString(), FilePersistence.Durability.FSYNC,
+                JacksonFormat.smile(om), JacksonFormat.json(om));
+
+        assertTrue(persistence.hasKey("key").block());
+        assertEquals(List.of(1, 2, 3), persistence.retrieve("key", LIST_TYPE).block());
+
+        persistence.store("key", List.of(4, 5)).block();
+
+        assertFalse(Files.exists(folder.resolve("key.json")));
+        assertTrue(JacksonFormat.smile(om).isFormatOf(Files.readAllBytes(folder.resolve("key.smile"))));
+        assertEquals(List.of(4, 5), persistence.retrieve("key", LIST_TYPE).block());
+    }
+
+    @Test
+    public void formatIsDetectedFromContents() throws IOException {
+        var om = new ObjectMapper();
+        var smile = JacksonFormat.smile(om);
+        Files.write(folder.resolve("key.json"), smile.write(List.of(7)));
+        var persistence = new FilePersistence(folder.toString(), FilePersistence.Durability.FSYNC,
+                JacksonFormat.json(om), smile);
+
+        assertEquals(List.of(7), persistence.retrieve("key", LIST_TYPE).block());
+    }
+}
@@ -0,0 +1,53 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashmapPersistenceTest {
+    private static final TypeReference<List<Integer>> LIST_TYPE = new TypeReference<>() {};
+
+    @Test
+    public void storedValuesAreCopies() {
+        var persistence = new HashmapPersistence(new ObjectMapper());
+        var value = new ArrayList<>(List.of(1, 2));
+        persistence.store("key", value).block();
+        value.add(3);
+
+        assertEquals(List.of(1, 2), persistence.retrieve("key", LIST_TYPE).block());
+        assertNull(persistence.retrieve("missing", LIST_TYPE).block());
+    }
+
+    @Test
+    public void concurrentStoresToDifferentKeysAreAllKept() {
+        var persistence = new HashmapPersistence(new ObjectMapper());
+        Flux.range(0, 1000)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .flatMap(i -> persistence.store("key" + i, List.of(i)))
+                .then()
+                .block();
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(List.of(i), persistence.retrieve("key" + i, LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void latencyIsSimulated() {
+        var persistence = new HashmapPersistence(new ObjectMapper(), Duration.ofMillis(50), Duration.ofMillis(10));
+        long start = System.nanoTime();
+        persistence.store("key", List.of(1)).block();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofMillis(50)) >= 0);
+        assertTrue(persistence.hasKey("key").block());
+    }
+}
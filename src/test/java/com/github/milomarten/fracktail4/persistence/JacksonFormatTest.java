@@ -0,0 +1,52 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.milomarten.fracktail4.platform.discord.utils.DiscordModule;
+import discord4j.common.util.Snowflake;
+import discord4j.core.object.reaction.ReactionEmoji;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonFormatTest {
+    private static final ObjectMapper OM = new ObjectMapper().registerModule(new DiscordModule());
+    private static final JacksonFormat JSON = JacksonFormat.json(OM);
+    private static final JacksonFormat SMILE = JacksonFormat.smile(OM);
+
+    @Test
+    public void formatsRecognizeOnlyTheirOwnOutput() throws IOException {
+        var json = JSON.write(List.of(1, 2));
+        var smile = SMILE.write(List.of(1, 2));
+
+        assertTrue(JSON.isFormatOf(json));
+        assertFalse(JSON.isFormatOf(smile));
+        assertTrue(SMILE.isFormatOf(smile));
+        assertFalse(SMILE.isFormatOf(json));
+    }
+
+    @Test
+    public void discordTypesRoundTripInJson() throws IOException {
+        roundTrip(JSON);
+    }
+
+    @Test
+    public void discordTypesRoundTripInSmile() throws IOException {
+        roundTrip(SMILE);
+    }
+
+    private void roundTrip(JacksonFormat format) throws IOException {
+        var snowflakes = List.of(Snowflake.of(248612704019808258L));
+        var snowflakeData = format.write(snowflakes);
+        assertEquals(snowflakes, format.read(snowflakeData, new TypeReference<List<Snowflake>>() {}));
+
+        var emoji = List.of(
+                ReactionEmoji.unicode("\uD83C\uDFB2"),
+                ReactionEmoji.custom(Snowflake.of(1234L), "marten", true));
+        var emojiData = format.write(emoji);
+        assertEquals(emoji, format.read(emojiData, new TypeReference<List<ReactionEmoji>>() {}));
+    }
+}
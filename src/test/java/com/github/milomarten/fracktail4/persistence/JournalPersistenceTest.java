@@ -0,0 +1,374 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalPersistenceTest {
+    private static final TypeReference<List<String>> LIST_TYPE = new TypeReference<>() {};
+    private static final long NEVER_COMPACT = Long.MAX_VALUE;
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @TempDir
+    Path folder;
+
+    private JournalPersistence create(long threshold) {
+        return new JournalPersistence(om, folder.toString(), threshold,
+                FilePersistence.Durability.BEST_EFFORT, null, Schedulers.immediate());
+    }
+
+    @Test
+    public void entryChangesAreReplayed() {
+        var entries = new LinkedHashMap<String, String>(Map.of("a", "alpha"));
+        try (var journal = create(NEVER_COMPACT)) {
+            journal.storeEntries("key", entries).block();
+            entries.put("b", "beta");
+            journal.storeEntry("key", "b", "beta", () -> entries).block();
+            entries.remove("a");
+            journal.removeEntry("key", "a", () -> entries).block();
+
+            assertEquals(List.of("beta"), journal.retrieve("key", LIST_TYPE).block());
+        }
+
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertTrue(reopened.hasKey("key").block());
+            assertEquals(List.of("beta"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void singleEntryChangesAppendOnlyTheEntry() throws IOException {
+        var entries = new LinkedHashMap<String, String>();
+        for (int i = 0; i < 100; i++) {
+            entries.put(String.valueOf(i), "value number " + i);
+        }
+        try (var journal = create(NEVER_COMPACT)) {
+            journal.storeEntries("key", entries).block();
+            long before = Files.size(folder.resolve("key.journal"));
+            journal.storeEntry("key", "100", "new", () -> {
+                throw new AssertionError("Should not need the whole collection");
+            }).block();
+            long after = Files.size(folder.resolve("key.journal"));
+
+            assertTrue(after - before < 100, "Appended " + (after - before) + " bytes");
+        }
+    }
+
+    @Test
+    public void plainValuesRoundTrip() {
+        try (var journal = create(NEVER_COMPACT)) {
+            assertFalse(journal.hasKey("key").block());
+            journal.store("key", List.of("one", "two")).block();
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("one", "two"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void largeJournalsAreCompacted() throws IOException {
+        var entries = new LinkedHashMap<String, String>();
+        try (var journal = create(200)) {
+            journal.storeEntries("key", entries).block();
+            for (int i = 0; i < 20; i++) {
+                entries.put(String.valueOf(i), "value " + i);
+                journal.storeEntry("key", String.valueOf(i), "value " + i, () -> entries).block();
+            }
+            assertTrue(Files.exists(folder.resolve("key.snapshot")));
+            assertTrue(Files.size(folder.resolve("key.journal")) <= 200);
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.copyOf(entries.values()), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void tornLastChangeIsDiscarded() throws IOException {
+        var entries = new LinkedHashMap<String, String>(Map.of("a", "alpha"));
+        try (var journal = create(NEVER_COMPACT)) {
+            journal.storeEntries("key", entries).block();
+        }
+        var file = folder.resolve("key.journal");
+        long intact = Files.size(file);
+        Files.writeString(file, "{\"operation\":\"PUT\",\"id\":\"b\",\"val", StandardOpenOption.APPEND);
+
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("alpha"), reopened.retrieve("key", LIST_TYPE).block());
+            assertEquals(intact, Files.size(file));
+            entries.put("c", "gamma");
+            reopened.storeEntry("key", "c", "gamma", () -> entries).block();
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("alpha", "gamma"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void newKeysAreSeeded() {
+        var seed = new HashmapPersistence(om);
+        seed.store("key", List.of("seeded")).block();
+        try (var journal = new JournalPersistence(om, folder.toString(), NEVER_COMPACT,
+                FilePersistence.Durability.BEST_EFFORT, seed, Schedulers.immediate())) {
+            assertEquals(List.of("seeded"), journal.retrieve("key", LIST_TYPE).block());
+            journal.store("key", List.of("changed")).block();
+        }
+        try (var reopened = new JournalPersistence(om, folder.toString(), NEVER_COMPACT,
+                FilePersistence.Durability.BEST_EFFORT, seed, Schedulers.immediate())) {
+            assertEquals(List.of("changed"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void entryChangesToPlainValuesAreSkippedOnReplay() throws IOException {
+        try (var journal = create(NEVER_COMPACT)) {
+            journal.store("key", List.of("plain")).block();
+        }
+        var file = folder.resolve("key.journal");
+        Files.writeString(file, "{\"operation\":\"PUT\",\"id\":\"b\",\"value\":\"beta\"}\n", StandardOpenOption.APPEND);
+        Files.writeString(file, "{\"operation\":\"SET\",\"id\":null,\"value\":[\"later\"]}\n", StandardOpenOption.APPEND);
+
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("later"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void entryChangesToPlainValuesRecordTheWholeCollection() {
+        var entries = new LinkedHashMap<String, String>(Map.of("a", "alpha"));
+        try (var journal = create(NEVER_COMPACT)) {
+            journal.store("key", List.of("plain")).block();
+            journal.storeEntry("key", "a", "alpha", () -> entries).block();
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("alpha"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void concurrentStoresAndEntryChangesReplay() throws InterruptedException {
+        var entries = Map.of("a", "alpha");
+        try (var journal = new JournalPersistence(om, folder.toString(), NEVER_COMPACT,
+                FilePersistence.Durability.BEST_EFFORT, null, Schedulers.boundedElastic())) {
+            var threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++) {
+                boolean stores = t % 2 == 0;
+                var thread = new Thread(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        if (stores) {
+                            journal.store("key", List.of("plain")).block();
+                        } else {
+                            journal.storeEntry("key", "a", "alpha", () -> entries).block();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (var thread : threads) {
+                thread.join();
+            }
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            var value = reopened.retrieve("key", LIST_TYPE).block();
+            assertTrue(List.of("plain").equals(value) || List.of("alpha").equals(value), "Got " + value);
+        }
+    }
+
+    @Test
+    public void tornAppendIsRolledBack() throws IOException {
+        var entries = new LinkedHashMap<String, String>(Map.of("a", "alpha"));
+        var channel = new AtomicReference<FailingChannel>();
+        try (var journal = failing(FilePersistence.Durability.BEST_EFFORT, channel)) {
+            journal.storeEntries("key", entries).block();
+            long intact = Files.size(folder.resolve("key.journal"));
+
+            channel.get().tearNextWrite = true;
+            assertThrows(RuntimeException.class, () -> journal.storeEntry("key", "b", "beta", () -> entries).block());
+            assertEquals(intact, Files.size(folder.resolve("key.journal")));
+            assertEquals(List.of("alpha"), journal.retrieve("key", LIST_TYPE).block());
+
+            entries.put("c", "gamma");
+            journal.storeEntry("key", "c", "gamma", () -> entries).block();
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("alpha", "gamma"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void failedForceIsRolledBack() {
+        var channel = new AtomicReference<FailingChannel>();
+        try (var journal = failing(FilePersistence.Durability.FSYNC, channel)) {
+            journal.store("key", List.of("first")).block();
+
+            channel.get().failNextForce = true;
+            assertThrows(RuntimeException.class, () -> journal.store("key", List.of("lost")).block());
+            assertEquals(List.of("first"), journal.retrieve("key", LIST_TYPE).block());
+        }
+        try (var reopened = create(NEVER_COMPACT)) {
+            assertEquals(List.of("first"), reopened.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    @Test
+    public void journalWhichCantRollBackRefusesChanges() {
+        var channel = new AtomicReference<FailingChannel>();
+        try (var journal = failing(FilePersistence.Durability.BEST_EFFORT, channel)) {
+            journal.store("key", List.of("first")).block();
+
+            channel.get().tearNextWrite = true;
+            channel.get().failTruncate = true;
+            assertThrows(RuntimeException.class, () -> journal.store("key", List.of("torn")).block());
+            channel.get().failTruncate = false;
+            assertThrows(RuntimeException.class, () -> journal.store("key", List.of("later")).block());
+            assertEquals(List.of("first"), journal.retrieve("key", LIST_TYPE).block());
+        }
+    }
+
+    private JournalPersistence failing(FilePersistence.Durability durability, AtomicReference<FailingChannel> opened) {
+        return new JournalPersistence(om, folder.toString(), NEVER_COMPACT, durability, null, Schedulers.immediate()) {
+            @Override
+            FileChannel openChannel(Path file) throws IOException {
+                var channel = new FailingChannel(super.openChannel(file));
+                opened.set(channel);
+                return channel;
+            }
+        };
+    }
+
+    /**
+     * A channel which can be told to write only part of the next buffer and then fail, or to fail its next force.
+     */
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel delegate;
+        volatile boolean tearNextWrite;
+        volatile boolean failNextForce;
+        volatile boolean failTruncate;
+
+        FailingChannel(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (tearNextWrite) {
+                tearNextWrite = false;
+                var half = src.duplicate().limit(src.position() + src.remaining() / 2);
+                int written = delegate.write(half);
+                src.position(src.position() + written);
+                throw new IOException("Disk full");
+            }
+            return delegate.write(src);
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failNextForce) {
+                failNextForce = false;
+                throw new IOException("Unable to sync");
+            }
+            delegate.force(metaData);
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            if (failTruncate) {
+                throw new IOException("Unable to truncate");
+            }
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}
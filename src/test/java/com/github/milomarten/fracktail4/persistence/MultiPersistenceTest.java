@@ -0,0 +1,178 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiPersistenceTest {
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Test
+    public void retrievesFromFirstLayerWithValue() {
+        var first = new TestPersistence(Duration.ZERO);
+        var second = new TestPersistence(Duration.ZERO);
+        first.backing.store("key", "first").block();
+        second.backing.store("key", "second").block();
+        var multi = new MultiPersistence(List.of(first, second));
+
+        assertEquals("first", multi.retrieve("key", String.class).block());
+        assertEquals(1, first.retrieves.get());
+        assertEquals(0, second.retrieves.get());
+        assertEquals(0, first.hasKeys.get());
+    }
+
+    @Test
+    public void emptyIsTreatedAsMiss() {
+        var first = new TestPersistence(Duration.ZERO);
+        var second = new TestPersistence(Duration.ZERO);
+        second.backing.store("key", "second").block();
+        var multi = new MultiPersistence(List.of(first, second), null, false);
+
+        assertEquals("second", multi.retrieve("key", String.class).block());
+        assertEquals(1, first.retrieves.get());
+        assertEquals(1, second.retrieves.get());
+        assertFalse(first.backing.hasKey("key").block());
+    }
+
+    @Test
+    public void noLayersIsAMiss() {
+        var multi = new MultiPersistence(List.of());
+
+        assertNull(multi.retrieve("key", String.class).block());
+        assertFalse(multi.hasKey("key").block());
+    }
+
+    @Test
+    public void readRepairBackfillsEarlierLayers() {
+        var first = new TestPersistence(Duration.ZERO);
+        var second = new TestPersistence(Duration.ZERO);
+        second.backing.store("key", "second").block();
+        var multi = new MultiPersistence(List.of(first, second));
+
+        assertEquals("second", multi.retrieve("key", String.class).block());
+        assertEquals("second", first.backing.retrieve("key", String.class).block());
+    }
+
+    @Test
+    public void readRepairSkipsLayersWhichErrored() {
+        var first = new TestPersistence(Duration.ZERO);
+        var second = new TestPersistence(Duration.ZERO);
+        first.backing.store("key", "newer").block();
+        first.failRetrieves = true;
+        second.backing.store("key", "older").block();
+        var multi = new MultiPersistence(List.of(first, second));
+
+        assertEquals("older", multi.retrieve("key", String.class).block());
+        assertEquals("newer", first.backing.retrieve("key", String.class).block());
+    }
+
+    @Test
+    public void readRepairStillBackfillsLayersWhichMissed() {
+        var broken = new TestPersistence(Duration.ZERO);
+        var empty = new TestPersistence(Duration.ZERO);
+        var full = new TestPersistence(Duration.ZERO);
+        broken.failRetrieves = true;
+        full.backing.store("key", "full").block();
+        var multi = new MultiPersistence(List.of(broken, empty, full));
+
+        assertEquals("full", multi.retrieve("key", String.class).block());
+        assertFalse(broken.backing.hasKey("key").block());
+        assertEquals("full", empty.backing.retrieve("key", String.class).block());
+    }
+
+    @Test
+    public void hasKeyStopsAtFirstHit() {
+        var first = new TestPersistence(Duration.ZERO);
+        var second = new TestPersistence(Duration.ZERO);
+        first.backing.store("key", "first").block();
+        var multi = new MultiPersistence(List.of(first, second));
+
+        assertTrue(multi.hasKey("key").block());
+        assertFalse(multi.hasKey("missing").block());
+        assertEquals(2, first.hasKeys.get());
+        assertEquals(1, second.hasKeys.get());
+    }
+
+    @Test
+    public void hedgedLookupQueriesSlowerLayersInParallel() {
+        var slow = new TestPersistence(Duration.ofMillis(500));
+        var other = new TestPersistence(Duration.ofMillis(500));
+        other.backing.store("key", "other").block();
+        var multi = new MultiPersistence(List.of(slow, other), Duration.ofMillis(50), false);
+
+        long start = System.nanoTime();
+        assertEquals("other", multi.retrieve("key", String.class).block());
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        assertTrue(elapsed.compareTo(Duration.ofMillis(900)) < 0, "Took " + elapsed);
+    }
+
+    @Test
+    public void hedgedLookupKeepsPriorityOrder() {
+        var slow = new TestPersistence(Duration.ofMillis(200));
+        var fast = new TestPersistence(Duration.ZERO);
+        slow.backing.store("key", "slow").block();
+        fast.backing.store("key", "fast").block();
+        var multi = new MultiPersistence(List.of(slow, fast), Duration.ofMillis(10), false);
+
+        assertEquals("slow", multi.retrieve("key", String.class).block());
+        assertEquals(1, fast.retrieves.get());
+    }
+
+    private class TestPersistence implements Persistence {
+        private final Persistence backing = new HashmapPersistence(om);
+        private final Duration latency;
+        final AtomicInteger retrieves = new AtomicInteger();
+        final AtomicInteger hasKeys = new AtomicInteger();
+        volatile boolean failRetrieves;
+
+        TestPersistence(Duration latency) {
+            this.latency = latency;
+        }
+
+        private <T> Mono<T> delayed(Mono<T> mono) {
+            return latency.isZero() ? mono : Mono.delay(latency).then(mono);
+        }
+
+        @Override
+        public Mono<Void> store(String key, Object value) {
+            return backing.store(key, value);
+        }
+
+        @Override
+        public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+            return delayed(Mono.defer(() -> {
+                retrieves.incrementAndGet();
+                if (failRetrieves) {
+                    return Mono.error(new IllegalStateException("Corrupt read"));
+                }
+                return backing.retrieve(key, clazz);
+            }));
+        }
+
+        @Override
+        public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+            return delayed(Mono.defer(() -> {
+                retrieves.incrementAndGet();
+                if (failRetrieves) {
+                    return Mono.error(new IllegalStateException("Corrupt read"));
+                }
+                return backing.retrieve(key, clazz);
+            }));
+        }
+
+        @Override
+        public Mono<Boolean> hasKey(String key) {
+            return delayed(Mono.defer(() -> {
+                hasKeys.incrementAndGet();
+                return backing.hasKey(key);
+            }));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.milomarten.fracktail4.persistence;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindPersistenceTest {
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+    private final CountingPersistence delegate = new CountingPersistence(new HashmapPersistence(new ObjectMapper()));
+
+    @Test
+    public void storesAreBufferedUntilFlushed() {
+        var persistence = new WriteBehindPersistence(delegate, LONG_WINDOW);
+        persistence.store("key", "one").block();
+
+        assertEquals(0, delegate.stores.get());
+        assertTrue(persistence.hasKey("key").block());
+        assertFalse(delegate.hasKey("key").block());
+    }
+
+    @Test
+    public void storesToTheSameKeyAreCoalesced() {
+        var persistence = new WriteBehindPersistence(delegate, LONG_WINDOW);
+        persistence.store("key", "one").block();
+        persistence.store("key", "two").block();
+        persistence.store("key", "three").block();
+        persistence.flush("key").block();
+
+        assertEquals(1, delegate.stores.get());
+        assertEquals("three", delegate.retrieve("key", String.class).block());
+    }
+
+    @Test
+    public void retrieveSeesLatestStore() {
+        var persistence = new WriteBehindPersistence(delegate, LONG_WINDOW);
+        persistence.store("key", "one").block();
+        persistence.store("key", "two").block();
+
+        assertEquals("two", persistence.retrieve("key", String.class).block());
+        assertEquals(1, delegate.stores.get());
+    }
+
+    @Test
+    public void flushWritesEveryKey() {
+        var persistence = new WriteBehindPersistence(delegate, LONG_WINDOW);
+        persistence.store("a", "one").block();
+        persistence.store("b", "two").block();
+        persistence.close();
+
+        assertEquals(2, delegate.stores.get());
+        assertEquals("one", delegate.retrieve("a", String.class).block());
+        assertEquals("two", delegate.retrieve("b", String.class).block());
+    }
+
+    @Test
+    public void windowClosingWritesInBackground() {
+        var persistence = new WriteBehindPersistence(delegate, Duration.ofMillis(10));
+        persistence.store("key", "one").block();
+
+        Mono.delay(Duration.ofMillis(10))
+                .repeat(() -> delegate.stores.get() == 0)
+                .blockLast(Duration.ofSeconds(5));
+        assertEquals("one", delegate.retrieve("key", String.class).block());
+    }
+
+    @Test
+    public void flushReportsFailedWrite() {
+        var failing = new CountingPersistence(delegate) {
+            @Override
+            public Mono<Void> store(String key, Object value) {
+                return super.store(key, value).then(Mono.error(new IllegalStateException("Disk full")));
+            }
+        };
+        var persistence = new WriteBehindPersistence(failing, LONG_WINDOW);
+        persistence.store("key", "one").block();
+
+        assertThrows(IllegalStateException.class, () -> persistence.flush("key").block());
+    }
+
+    private static class CountingPersistence implements Persistence {
+        private final Persistence delegate;
+        final AtomicInteger stores = new AtomicInteger();
+
+        CountingPersistence(Persistence delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public Mono<Void> store(String key, Object value) {
+            return Mono.defer(() -> {
+                stores.incrementAndGet();
+                return delegate.store(key, value);
+            });
+        }
+
+        @Override
+        public <T> Mono<T> retrieve(String key, Class<T> clazz) {
+            return delegate.retrieve(key, clazz);
+        }
+
+        @Override
+        public <T> Mono<T> retrieve(String key, TypeReference<T> clazz) {
+            return delegate.retrieve(key, clazz);
+        }
+
+        @Override
+        public Mono<Boolean> hasKey(String key) {
+            return delegate.hasKey(key);
+        }
+    }
+}